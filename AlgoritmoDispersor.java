@@ -9,5 +9,17 @@ public enum AlgoritmoDispersor {
     /** Algoritmo de Bob Jenkins para cadenas. */
     BJ_STRING,
     /** Algoritmo de Daniel J. Bernstein para cadenas. */
-    DJB_STRING;
+    DJB_STRING,
+    /** Algoritmo xxHash64 para cadenas. */
+    XXH64_STRING,
+    /** Algoritmo MurmurHash3 de 32 bits para cadenas. */
+    MURMUR3_32_STRING,
+    /** Algoritmo MurmurHash3 de 128 bits para cadenas. */
+    MURMUR3_128_STRING,
+    /** Algoritmo wyhash para cadenas. */
+    WYHASH_STRING,
+    /** Algoritmo SipHash-1-3 para cadenas; usa una llave secreta. */
+    SIPHASH_13_STRING,
+    /** Algoritmo SipHash-2-4 para cadenas; usa una llave secreta. */
+    SIPHASH_24_STRING;
 }
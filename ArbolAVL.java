@@ -45,20 +45,15 @@ public class ArbolAVL<T extends Comparable<T>>
         }
 
         /**
-         * Compara el vértice con otro objeto. La comparación es
-         * <em>recursiva</em>.
-         * @param o el objeto con el cual se comparará el vértice.
-         * @return <code>true</code> si el objeto es instancia de la clase
-         *         {@link VerticeAVL}, su elemento es igual al elemento de éste
-         *         vértice, los descendientes de ambos son recursivamente
-         *         iguales, y las alturas son iguales; <code>false</code> en
-         *         otro caso.
+         * Nos dice si el vértice tiene el mismo contenido que otro vértice
+         * AVL, sin comparar a sus descendientes.
+         * @param vertice el vértice con el cual se comparará éste.
+         * @return <code>true</code> si los elementos y las alturas de ambos
+         *         vértices son iguales; <code>false</code> en otro caso.
          */
-        @Override public boolean equals(Object o) {
-            if (o == null || getClass() != o.getClass())
-                return false;
-            @SuppressWarnings("unchecked") VerticeAVL vertice = (VerticeAVL)o;
-          return (altura == vertice.altura && super.equals(o));
+        @Override protected boolean mismoContenido(Vertice vertice) {
+          return altura == verticeAVL(vertice).altura &&
+            super.mismoContenido(vertice);
         }
     }
 
@@ -72,11 +67,14 @@ public class ArbolAVL<T extends Comparable<T>>
 
     /**
      * Construye un árbol AVL a partir de una colección. El árbol AVL tiene los
-     * mismos elementos que la colección recibida.
+     * mismos elementos que la colección recibida. El árbol se construye en
+     * bloque, sin giros: si la colección está ordenada la construcción es
+     * lineal, y si no, se ordena primero.
      * @param coleccion la colección a partir de la cual creamos el árbol AVL.
      */
     public ArbolAVL(Coleccion<T> coleccion) {
-      super(coleccion);
+      super();
+      construyeBalanceado(coleccion);
     }
 
     /**
@@ -88,6 +86,17 @@ public class ArbolAVL<T extends Comparable<T>>
         return new VerticeAVL(elemento);
     }
 
+    /**
+     * Asigna la altura de un vértice construido en bloque a partir de las de
+     * sus hijos.
+     * @param vertice el vértice construido.
+     * @param profundidad la profundidad del vértice en el árbol.
+     */
+    @Override protected void ajustaConstruido(Vertice vertice,
+                                              int profundidad) {
+      actualizarAltura(verticeAVL(vertice));
+    }
+
     /**
      * Agrega un nuevo elemento al árbol. El método invoca al método {@link
      * ArbolBinarioOrdenado#agrega}, y después balancea el árbol girándolo como
@@ -124,6 +133,7 @@ public class ArbolAVL<T extends Comparable<T>>
         auxiliar.elemento = vertice.elemento;
       }
       /** Si el vértice es una hoja */
+      descuentaAncestros(vertice);
       if(vertice.izquierdo == null && vertice.derecho == null)
         eliminarHoja(vertice);
       else
@@ -0,0 +1,764 @@
+package mx.unam.ciencias.edd;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Clase para árboles B+ en memoria. Los elementos viven ordenados en
+ * arreglos dentro de las hojas, y los vértices internos sólo guardan llaves
+ * separadoras para guiar la búsqueda; así cada búsqueda recorre pocos
+ * arreglos contiguos en lugar de un vértice por elemento como en {@link
+ * ArbolRojinegro}.</p>
+ *
+ * <p>El <em>orden</em> del árbol es el máximo número de hijos de un vértice
+ * interno y el máximo número de elementos de una hoja. Todos los vértices,
+ * salvo la raíz, están al menos medio llenos, y todas las hojas están a la
+ * misma profundidad. Las hojas están ligadas en ambas direcciones, por lo que
+ * recorrer un rango de <em>k</em> elementos cuesta <em>O</em>(log
+ * <em>n</em> + <em>k</em>).</p>
+ *
+ * <p>Como {@link ArbolRojinegro}, el árbol admite elementos repetidos.</p>
+ */
+public class ArbolBMas<T extends Comparable<T>> implements Coleccion<T> {
+
+    /* Clase privada para los vértices del árbol. */
+    private abstract class Nodo {
+        /* Las llaves del vértice; tienen espacio para una de más, para
+         * partir el vértice después de que se desborda. */
+        public T[] llaves;
+        /* El número de llaves en el vértice. */
+        public int n;
+
+        /* Construye un vértice con espacio para el número de llaves. */
+        public Nodo(int capacidad) {
+            llaves = arregloLlaves(capacidad);
+        }
+    }
+
+    /* Clase privada para las hojas, que guardan los elementos. */
+    private class Hoja extends Nodo {
+        /* La hoja anterior. */
+        public Hoja anterior;
+        /* La hoja siguiente. */
+        public Hoja siguiente;
+
+        /* Construye una hoja vacía. */
+        public Hoja() {
+            super(orden + 1);
+        }
+    }
+
+    /* Clase privada para los vértices internos. Las llaves del hijo i son
+     * menores o iguales que llaves[i], que a su vez es menor o igual que las
+     * llaves del hijo i + 1. */
+    private class Interno extends Nodo {
+        /* Los hijos del vértice; siempre hay uno más que llaves. */
+        public Nodo[] hijos;
+
+        /* Construye un vértice interno vacío. */
+        public Interno() {
+            super(orden);
+            hijos = arregloNodos(orden + 1);
+        }
+    }
+
+    /* Clase privada para iteradores de rangos sobre las hojas ligadas. */
+    private class Iterador implements Iterator<T> {
+
+        /* La hoja actual. */
+        private Hoja hoja;
+        /* La posición del siguiente elemento en la hoja. */
+        private int posicion;
+        /* Si el recorrido es descendente. */
+        private boolean descendente;
+        /* El límite donde se detiene el recorrido, o null si no hay. */
+        private T limite;
+
+        /* Construye un iterador para el rango [desde, hasta]; los límites
+         * nulos no acotan. */
+        public Iterador(T desde, T hasta, boolean descendente) {
+            this.descendente = descendente;
+            if (descendente) {
+                limite = desde;
+                if (hasta == null) {
+                    hoja = ultima;
+                    posicion = hoja.n - 1;
+                } else {
+                    hoja = busca(hasta, true);
+                    posicion = cotaSuperior(hoja, hasta) - 1;
+                }
+                if (posicion < 0 && (hoja = hoja.anterior) != null)
+                    posicion = hoja.n - 1;
+            } else {
+                limite = hasta;
+                if (desde == null) {
+                    hoja = primera;
+                    posicion = 0;
+                } else {
+                    hoja = busca(desde, false);
+                    posicion = cotaInferior(hoja, desde);
+                }
+                if (posicion == hoja.n) {
+                    hoja = hoja.siguiente;
+                    posicion = 0;
+                }
+            }
+        }
+
+        /* Nos dice si hay un elemento siguiente dentro del rango. */
+        @Override public boolean hasNext() {
+            if (hoja == null || hoja.n == 0)
+                return false;
+            if (limite == null)
+                return true;
+            int c = hoja.llaves[posicion].compareTo(limite);
+            return descendente ? c >= 0 : c <= 0;
+        }
+
+        /* Regresa el siguiente elemento del rango. */
+        @Override public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            T elemento = hoja.llaves[posicion];
+            if (descendente) {
+                if (--posicion < 0 && (hoja = hoja.anterior) != null)
+                    posicion = hoja.n - 1;
+            } else {
+                if (++posicion == hoja.n) {
+                    hoja = hoja.siguiente;
+                    posicion = 0;
+                }
+            }
+            return elemento;
+        }
+    }
+
+    /* Clase privada para vistas de rangos del árbol. */
+    private class Vista implements VistaRango<T> {
+
+        /* El límite inferior, o null si no hay. */
+        private T desde;
+        /* El límite superior, o null si no hay. */
+        private T hasta;
+
+        /* Construye la vista del rango [desde, hasta]. */
+        public Vista(T desde, T hasta) {
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        /* Regresa un iterador ascendente del rango. */
+        @Override public Iterator<T> iterator() {
+            return new Iterador(desde, hasta, false);
+        }
+
+        /* Regresa un iterador descendente del rango. */
+        @Override public Iterator<T> iteradorDescendente() {
+            return new Iterador(desde, hasta, true);
+        }
+
+        /* Regresa el rango en orden descendente. */
+        @Override public Iterable<T> descendente() {
+            return this::iteradorDescendente;
+        }
+
+        /* Nos dice si el elemento está en el rango y en el árbol. */
+        @Override public boolean contiene(T elemento) {
+            if (elemento == null)
+                return false;
+            if (desde != null && elemento.compareTo(desde) < 0)
+                return false;
+            if (hasta != null && elemento.compareTo(hasta) > 0)
+                return false;
+            return ArbolBMas.this.contiene(elemento);
+        }
+
+        /* Regresa el número de elementos en el rango, recorriéndolo. */
+        @Override public int getElementos() {
+            if (desde == null && hasta == null)
+                return elementos;
+            int n = 0;
+            for (Iterator<T> i = iterator(); i.hasNext(); i.next())
+                n++;
+            return n;
+        }
+
+        /* Nos dice si el rango es vacío. */
+        @Override public boolean esVacia() {
+            return !iterator().hasNext();
+        }
+    }
+
+    /** El orden predeterminado del árbol. */
+    public static final int ORDEN_PREDETERMINADO = 64;
+
+    /* El máximo número de hijos de un vértice interno y de elementos de una
+     * hoja. */
+    private int orden;
+    /* La raíz del árbol. */
+    private Nodo raiz;
+    /* El número de niveles de vértices internos; cero si la raíz es hoja. */
+    private int altura;
+    /* La primera hoja. */
+    private Hoja primera;
+    /* La última hoja. */
+    private Hoja ultima;
+    /* El número de elementos. */
+    private int elementos;
+    /* El camino de la última búsqueda con camino: ruta[0] es la raíz y
+     * ruta[altura] la hoja. */
+    private Nodo[] ruta;
+    /* El hijo que se tomó en cada vértice interno de la ruta. */
+    private int[] indices;
+
+    /**
+     * Construye un árbol B+ vacío con el orden predeterminado.
+     */
+    public ArbolBMas() {
+        this(ORDEN_PREDETERMINADO);
+    }
+
+    /**
+     * Construye un árbol B+ vacío con el orden recibido.
+     * @param orden el máximo número de hijos de un vértice interno y de
+     *              elementos de una hoja.
+     * @throws IllegalArgumentException si el orden es menor que 3.
+     */
+    public ArbolBMas(int orden) {
+        if (orden < 3)
+            throw new IllegalArgumentException("Orden inválido: " + orden);
+        this.orden = orden;
+        limpia();
+    }
+
+    /**
+     * Construye un árbol B+ con el orden predeterminado a partir de una
+     * colección. El árbol tiene los mismos elementos que la colección.
+     * @param coleccion la colección a partir de la cual creamos el árbol.
+     * @throws IllegalArgumentException si la colección contiene a
+     *         <code>null</code>.
+     */
+    public ArbolBMas(Coleccion<T> coleccion) {
+        this(coleccion, ORDEN_PREDETERMINADO);
+    }
+
+    /**
+     * Construye un árbol B+ del orden recibido a partir de una colección. El
+     * árbol se carga en bloque de abajo hacia arriba, con las hojas llenas:
+     * si la colección está ordenada la carga es lineal, y si no, se ordena
+     * primero con {@link Arreglos#quickSort}.
+     * @param coleccion la colección a partir de la cual creamos el árbol.
+     * @param orden el máximo número de hijos de un vértice interno y de
+     *              elementos de una hoja.
+     * @throws IllegalArgumentException si el orden es menor que 3, o si la
+     *         colección contiene a <code>null</code>.
+     */
+    public ArbolBMas(Coleccion<T> coleccion, int orden) {
+        this(orden);
+        int n = coleccion.getElementos();
+        if (n == 0)
+            return;
+        T[] arreglo = arregloLlaves(n);
+        boolean ordenado = true;
+        int i = 0;
+        for (T e : coleccion) {
+            if (e == null)
+                throw new IllegalArgumentException();
+            if (i > 0 && arreglo[i - 1].compareTo(e) > 0)
+                ordenado = false;
+            arreglo[i++] = e;
+        }
+        if (!ordenado)
+            Arreglos.quickSort(arreglo);
+        cargaEnBloque(arreglo);
+    }
+
+    /**
+     * Agrega un elemento al árbol.
+     * @param elemento el elemento a agregar.
+     * @throws IllegalArgumentException si el elemento es <code>null</code>.
+     */
+    @Override public void agrega(T elemento) {
+        if (elemento == null)
+            throw new IllegalArgumentException();
+        Hoja hoja = buscaConRuta(elemento);
+        inserta(hoja, cotaSuperior(hoja, elemento), elemento);
+        elementos++;
+        if (hoja.n <= orden)
+            return;
+        /* La hoja se desbordó: la partimos y subimos la primera llave de la
+         * nueva hoja, partiendo los vértices internos que se desborden. */
+        Hoja nueva = new Hoja();
+        mueve(hoja, (orden + 1) / 2, nueva);
+        nueva.siguiente = hoja.siguiente;
+        nueva.anterior = hoja;
+        if (hoja.siguiente != null)
+            hoja.siguiente.anterior = nueva;
+        else
+            ultima = nueva;
+        hoja.siguiente = nueva;
+        T separador = nueva.llaves[0];
+        Nodo derecho = nueva;
+        for (int nivel = altura - 1; nivel >= 0; nivel--) {
+            Interno padre = (Interno)ruta[nivel];
+            int i = indices[nivel];
+            inserta(padre, i, separador);
+            System.arraycopy(padre.hijos, i + 1, padre.hijos, i + 2,
+                             padre.n - i - 1);
+            padre.hijos[i + 1] = derecho;
+            if (padre.n < orden)
+                return;
+            Interno otro = new Interno();
+            int m = orden / 2;
+            separador = padre.llaves[m];
+            System.arraycopy(padre.hijos, m + 1, otro.hijos, 0, padre.n - m);
+            Arrays.fill(padre.hijos, m + 1, padre.n + 1, null);
+            mueve(padre, m + 1, otro);
+            padre.llaves[--padre.n] = null;
+            derecho = otro;
+        }
+        Interno nuevaRaiz = new Interno();
+        nuevaRaiz.llaves[0] = separador;
+        nuevaRaiz.hijos[0] = raiz;
+        nuevaRaiz.hijos[1] = derecho;
+        nuevaRaiz.n = 1;
+        raiz = nuevaRaiz;
+        altura++;
+    }
+
+    /**
+     * Elimina un elemento del árbol. Si el elemento no está en el árbol, no
+     * hace nada; si está varias veces, elimina una de ellas.
+     * @param elemento el elemento a eliminar.
+     */
+    @Override public void elimina(T elemento) {
+        if (elemento == null)
+            return;
+        Hoja hoja = buscaConRuta(elemento);
+        int p = cotaInferior(hoja, elemento);
+        /* Si la hoja no tiene llaves mayores o iguales, el elemento sólo
+         * puede ser la primera llave de la hoja siguiente. */
+        if (p == hoja.n) {
+            if (!avanzaRuta())
+                return;
+            hoja = (Hoja)ruta[altura];
+            p = 0;
+        }
+        if (p == hoja.n || hoja.llaves[p].compareTo(elemento) != 0)
+            return;
+        quita(hoja, p);
+        elementos--;
+        if (altura > 0 && hoja.n < orden / 2)
+            repara(altura);
+    }
+
+    /**
+     * Nos dice si un elemento está en el árbol.
+     * @param elemento el elemento que queremos verificar.
+     * @return <code>true</code> si el elemento está en el árbol,
+     *         <code>false</code> en otro caso.
+     */
+    @Override public boolean contiene(T elemento) {
+        if (elemento == null)
+            return false;
+        Hoja hoja = busca(elemento, false);
+        int p = cotaInferior(hoja, elemento);
+        if (p == hoja.n) {
+            hoja = hoja.siguiente;
+            p = 0;
+        }
+        return hoja != null && p < hoja.n &&
+            hoja.llaves[p].compareTo(elemento) == 0;
+    }
+
+    /**
+     * Regresa una vista de los elementos del árbol que están entre los dos
+     * elementos recibidos, incluyéndolos.
+     * @param desde el límite inferior del rango.
+     * @param hasta el límite superior del rango.
+     * @return una vista de los elementos <em>e</em> del árbol tales que
+     *         <em>desde</em> ≤ <em>e</em> ≤ <em>hasta</em>.
+     * @throws IllegalArgumentException si alguno de los límites es
+     *         <code>null</code>.
+     */
+    public VistaRango<T> rango(T desde, T hasta) {
+        if (desde == null || hasta == null)
+            throw new IllegalArgumentException();
+        return new Vista(desde, hasta);
+    }
+
+    /**
+     * Regresa una vista de los elementos del árbol mayores o iguales que el
+     * elemento recibido.
+     * @param desde el límite inferior de la vista.
+     * @return una vista de los elementos <em>e</em> del árbol tales que
+     *         <em>desde</em> ≤ <em>e</em>.
+     * @throws IllegalArgumentException si el límite es <code>null</code>.
+     */
+    public VistaRango<T> desde(T desde) {
+        if (desde == null)
+            throw new IllegalArgumentException();
+        return new Vista(desde, null);
+    }
+
+    /**
+     * Regresa una vista de los elementos del árbol menores o iguales que el
+     * elemento recibido.
+     * @param hasta el límite superior de la vista.
+     * @return una vista de los elementos <em>e</em> del árbol tales que
+     *         <em>e</em> ≤ <em>hasta</em>.
+     * @throws IllegalArgumentException si el límite es <code>null</code>.
+     */
+    public VistaRango<T> hasta(T hasta) {
+        if (hasta == null)
+            throw new IllegalArgumentException();
+        return new Vista(null, hasta);
+    }
+
+    /**
+     * Regresa el orden del árbol.
+     * @return el máximo número de hijos de un vértice interno y de elementos
+     *         de una hoja.
+     */
+    public int getOrden() {
+        return orden;
+    }
+
+    /**
+     * Regresa la altura del árbol: el número de niveles de vértices internos
+     * sobre las hojas.
+     * @return la altura del árbol.
+     */
+    public int altura() {
+        return altura;
+    }
+
+    /**
+     * Nos dice si el árbol es vacío.
+     * @return <code>true</code> si el árbol es vacío, <code>false</code> en
+     *         otro caso.
+     */
+    @Override public boolean esVacia() {
+        return elementos == 0;
+    }
+
+    /**
+     * Regresa el número de elementos en el árbol.
+     * @return el número de elementos en el árbol.
+     */
+    @Override public int getElementos() {
+        return elementos;
+    }
+
+    /**
+     * Limpia el árbol de elementos, dejándolo vacío.
+     */
+    @Override public void limpia() {
+        primera = ultima = new Hoja();
+        raiz = primera;
+        altura = 0;
+        elementos = 0;
+    }
+
+    /**
+     * Regresa una representación en cadena del árbol.
+     * @return una representación en cadena del árbol.
+     */
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (Hoja h = primera; h != null; h = h.siguiente)
+            for (int i = 0; i < h.n; i++)
+                sb.append(sb.length() > 1 ? ", " : "").append(h.llaves[i]);
+        return sb.append("]").toString();
+    }
+
+    /**
+     * Nos dice si el árbol es igual al objeto recibido.
+     * @param o el objeto que queremos saber si es igual al árbol.
+     * @return <code>true</code> si el objeto recibido es un árbol B+ con los
+     *         mismos elementos en el mismo orden, sin importar la forma de
+     *         los árboles; <code>false</code> en otro caso.
+     */
+    @Override public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass())
+            return false;
+        @SuppressWarnings("unchecked") ArbolBMas<T> arbol = (ArbolBMas<T>)o;
+        if (elementos != arbol.elementos)
+            return false;
+        Iterator<T> i = arbol.iterator();
+        for (T e : this)
+            if (!e.equals(i.next()))
+                return false;
+        return true;
+    }
+
+    /**
+     * Regresa un código de dispersión para el árbol, que depende de sus
+     * elementos y de su orden, y es consistente con {@link #equals}.
+     * @return un código de dispersión para el árbol.
+     */
+    @Override public int hashCode() {
+        int h = 1;
+        for (T e : this)
+            h = 31 * h + e.hashCode();
+        return h;
+    }
+
+    /**
+     * Regresa un iterador para iterar el árbol en orden, recorriendo las
+     * hojas ligadas.
+     * @return un iterador para iterar el árbol.
+     */
+    @Override public Iterator<T> iterator() {
+        return new Iterador(null, null, false);
+    }
+
+    /* Baja a la hoja donde el elemento está o iría. Si superior es false
+     * toma en cada vértice el primer hijo que puede tener al elemento; si es
+     * true, el último. */
+    private Hoja busca(T elemento, boolean superior) {
+        Nodo nodo = raiz;
+        for (int nivel = 0; nivel < altura; nivel++) {
+            int i = superior ? cotaSuperior(nodo, elemento)
+                : cotaInferior(nodo, elemento);
+            nodo = ((Interno)nodo).hijos[i];
+        }
+        return (Hoja)nodo;
+    }
+
+    /* Baja a la primera hoja que puede tener al elemento, guardando el
+     * camino en ruta e indices. */
+    private Hoja buscaConRuta(T elemento) {
+        if (ruta == null || ruta.length <= altura) {
+            ruta = arregloNodos(altura + 4);
+            indices = new int[altura + 4];
+        }
+        Nodo nodo = raiz;
+        for (int nivel = 0; nivel < altura; nivel++) {
+            ruta[nivel] = nodo;
+            int i = cotaInferior(nodo, elemento);
+            indices[nivel] = i;
+            nodo = ((Interno)nodo).hijos[i];
+        }
+        ruta[altura] = nodo;
+        return (Hoja)nodo;
+    }
+
+    /* Cambia la ruta por la de la hoja siguiente; regresa false si la hoja
+     * de la ruta es la última. */
+    private boolean avanzaRuta() {
+        int nivel = altura - 1;
+        while (nivel >= 0 && indices[nivel] == ruta[nivel].n)
+            nivel--;
+        if (nivel < 0)
+            return false;
+        indices[nivel]++;
+        for (int k = nivel + 1; k <= altura; k++) {
+            ruta[k] = ((Interno)ruta[k - 1]).hijos[indices[k - 1]];
+            if (k < altura)
+                indices[k] = 0;
+        }
+        return true;
+    }
+
+    /* Repara el vértice de la ruta en el nivel recibido, que quedó con
+     * menos llaves del mínimo: le presta un hermano con llaves de sobra, o
+     * se fusiona con un hermano y el padre pierde una llave. */
+    private void repara(int nivel) {
+        boolean esHoja = nivel == altura;
+        Interno padre = (Interno)ruta[nivel - 1];
+        int i = indices[nivel - 1];
+        Nodo nodo = ruta[nivel];
+        Nodo izquierdo = (i > 0) ? padre.hijos[i - 1] : null;
+        Nodo derecho = (i < padre.n) ? padre.hijos[i + 1] : null;
+        int minimo = esHoja ? orden / 2 : (orden + 1) / 2 - 1;
+        if (izquierdo != null && izquierdo.n > minimo) {
+            prestaIzquierdo(padre, i, izquierdo, nodo, esHoja);
+            return;
+        }
+        if (derecho != null && derecho.n > minimo) {
+            prestaDerecho(padre, i, nodo, derecho, esHoja);
+            return;
+        }
+        if (izquierdo != null)
+            fusiona(padre, i - 1, esHoja);
+        else
+            fusiona(padre, i, esHoja);
+        if (nivel == 1) {
+            if (padre.n == 0) {
+                raiz = padre.hijos[0];
+                altura--;
+            }
+        } else if (padre.n < (orden + 1) / 2 - 1) {
+            repara(nivel - 1);
+        }
+    }
+
+    /* Pasa la última llave (e hijo) del hermano izquierdo al vértice i. */
+    private void prestaIzquierdo(Interno padre, int i, Nodo izquierdo,
+                                 Nodo nodo, boolean esHoja) {
+        if (esHoja) {
+            inserta(nodo, 0, izquierdo.llaves[izquierdo.n - 1]);
+            quita(izquierdo, izquierdo.n - 1);
+            padre.llaves[i - 1] = nodo.llaves[0];
+            return;
+        }
+        Interno a = (Interno)izquierdo, b = (Interno)nodo;
+        System.arraycopy(b.hijos, 0, b.hijos, 1, b.n + 1);
+        b.hijos[0] = a.hijos[a.n];
+        a.hijos[a.n] = null;
+        inserta(b, 0, padre.llaves[i - 1]);
+        padre.llaves[i - 1] = a.llaves[a.n - 1];
+        quita(a, a.n - 1);
+    }
+
+    /* Pasa la primera llave (e hijo) del hermano derecho al vértice i. */
+    private void prestaDerecho(Interno padre, int i, Nodo nodo,
+                               Nodo derecho, boolean esHoja) {
+        if (esHoja) {
+            inserta(nodo, nodo.n, derecho.llaves[0]);
+            quita(derecho, 0);
+            padre.llaves[i] = derecho.llaves[0];
+            return;
+        }
+        Interno a = (Interno)nodo, b = (Interno)derecho;
+        inserta(a, a.n, padre.llaves[i]);
+        a.hijos[a.n] = b.hijos[0];
+        padre.llaves[i] = b.llaves[0];
+        System.arraycopy(b.hijos, 1, b.hijos, 0, b.n);
+        b.hijos[b.n] = null;
+        quita(b, 0);
+    }
+
+    /* Fusiona el hijo j + 1 del padre en el hijo j, y quita del padre la
+     * llave que los separaba. */
+    private void fusiona(Interno padre, int j, boolean esHoja) {
+        Nodo izquierdo = padre.hijos[j], derecho = padre.hijos[j + 1];
+        if (esHoja) {
+            Hoja a = (Hoja)izquierdo, b = (Hoja)derecho;
+            System.arraycopy(b.llaves, 0, a.llaves, a.n, b.n);
+            a.n += b.n;
+            a.siguiente = b.siguiente;
+            if (b.siguiente != null)
+                b.siguiente.anterior = a;
+            else
+                ultima = a;
+        } else {
+            Interno a = (Interno)izquierdo, b = (Interno)derecho;
+            a.llaves[a.n] = padre.llaves[j];
+            System.arraycopy(b.llaves, 0, a.llaves, a.n + 1, b.n);
+            System.arraycopy(b.hijos, 0, a.hijos, a.n + 1, b.n + 1);
+            a.n += b.n + 1;
+        }
+        quita(padre, j);
+        System.arraycopy(padre.hijos, j + 2, padre.hijos, j + 1,
+                         padre.n - j);
+        padre.hijos[padre.n + 1] = null;
+    }
+
+    /* Carga el árbol vacío con los elementos ordenados del arreglo,
+     * repartiendo las llaves por igual entre hojas y vértices llenos. */
+    private void cargaEnBloque(T[] arreglo) {
+        int n = arreglo.length;
+        int hojas = (n + orden - 1) / orden;
+        Nodo[] nivel = arregloNodos(hojas);
+        T[] minimos = arregloLlaves(hojas);
+        Hoja anterior = null;
+        for (int i = 0, inicio = 0; i < hojas; i++) {
+            int fin = (int)((long)n * (i + 1) / hojas);
+            Hoja hoja = (i == 0) ? primera : new Hoja();
+            System.arraycopy(arreglo, inicio, hoja.llaves, 0, fin - inicio);
+            hoja.n = fin - inicio;
+            hoja.anterior = anterior;
+            if (anterior != null)
+                anterior.siguiente = hoja;
+            anterior = hoja;
+            nivel[i] = hoja;
+            minimos[i] = arreglo[inicio];
+            inicio = fin;
+        }
+        ultima = anterior;
+        int m = hojas;
+        while (m > 1) {
+            int padres = (m + orden - 1) / orden;
+            for (int i = 0, inicio = 0; i < padres; i++) {
+                int fin = (int)((long)m * (i + 1) / padres);
+                Interno interno = new Interno();
+                System.arraycopy(nivel, inicio, interno.hijos, 0, fin - inicio);
+                System.arraycopy(minimos, inicio + 1, interno.llaves, 0,
+                                 fin - inicio - 1);
+                interno.n = fin - inicio - 1;
+                nivel[i] = interno;
+                minimos[i] = minimos[inicio];
+                inicio = fin;
+            }
+            m = padres;
+            altura++;
+        }
+        raiz = nivel[0];
+        elementos = n;
+    }
+
+    /* Regresa el número de llaves del vértice menores que el elemento. */
+    private int cotaInferior(Nodo nodo, T elemento) {
+        int a = 0, b = nodo.n;
+        while (a < b) {
+            int m = (a + b) >>> 1;
+            if (nodo.llaves[m].compareTo(elemento) < 0)
+                a = m + 1;
+            else
+                b = m;
+        }
+        return a;
+    }
+
+    /* Regresa el número de llaves del vértice menores o iguales que el
+     * elemento. */
+    private int cotaSuperior(Nodo nodo, T elemento) {
+        int a = 0, b = nodo.n;
+        while (a < b) {
+            int m = (a + b) >>> 1;
+            if (nodo.llaves[m].compareTo(elemento) <= 0)
+                a = m + 1;
+            else
+                b = m;
+        }
+        return a;
+    }
+
+    /* Inserta la llave en la posición recibida del vértice. */
+    private void inserta(Nodo nodo, int i, T llave) {
+        System.arraycopy(nodo.llaves, i, nodo.llaves, i + 1, nodo.n - i);
+        nodo.llaves[i] = llave;
+        nodo.n++;
+    }
+
+    /* Quita la llave en la posición recibida del vértice. */
+    private void quita(Nodo nodo, int i) {
+        System.arraycopy(nodo.llaves, i + 1, nodo.llaves, i, nodo.n - i - 1);
+        nodo.llaves[--nodo.n] = null;
+    }
+
+    /* Mueve las llaves desde la posición recibida al final del vértice
+     * vacío destino. */
+    private void mueve(Nodo origen, int desde, Nodo destino) {
+        int k = origen.n - desde;
+        System.arraycopy(origen.llaves, desde, destino.llaves, 0, k);
+        Arrays.fill(origen.llaves, desde, origen.n, null);
+        destino.n = k;
+        origen.n = desde;
+    }
+
+    /* Regresa un arreglo de llaves de tamaño n. */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private T[] arregloLlaves(int n) {
+        return (T[])new Comparable[n];
+    }
+
+    /* Regresa un arreglo de vértices de tamaño n. */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Nodo[] arregloNodos(int n) {
+        return (Nodo[])new ArbolBMas.Nodo[n];
+    }
+}
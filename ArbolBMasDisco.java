@@ -0,0 +1,1120 @@
+package mx.unam.ciencias.edd;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Clase para árboles B+ en disco. Es la versión de {@link ArbolBMas}
+ * cuyos vértices son páginas de un {@link ArchivoPaginas}: sólo las páginas
+ * usadas recientemente están en memoria, y cada operación que modifica el
+ * árbol es una transacción del archivo, por lo que el árbol sobrevive a que
+ * el programa o el sistema terminen a la mitad de una operación.</p>
+ *
+ * <p>Los elementos se guardan en las páginas con un {@link CodificadorFijo},
+ * y el árbol compara las codificaciones directamente, sin decodificarlas:
+ * el orden del árbol es el de las codificaciones, que coincide con el de
+ * {@link Comparable#compareTo} si el codificador lo preserva.</p>
+ *
+ * <p>El número de elementos de una hoja y de hijos de un vértice interno
+ * depende del tamaño de página y de la longitud de las codificaciones: con
+ * páginas de 4 KiB y llaves de 8 bytes, las hojas guardan hasta 510
+ * elementos y los vértices internos hasta 340 hijos.</p>
+ *
+ * <p>Las hojas están ligadas en ambas direcciones. Cuando un recorrido pasa
+ * a la hoja de la página contigua, lee de una vez varias de las páginas que
+ * siguen, duplicando la ventana mientras el recorrido siga siendo
+ * secuencial; las hojas de un árbol cargado con {@link #carga} están todas
+ * en páginas consecutivas.</p>
+ *
+ * <p>Como {@link ArbolBMas}, el árbol admite elementos repetidos.</p>
+ */
+public class ArbolBMasDisco<T extends Comparable<T>>
+    implements Coleccion<T>, AutoCloseable {
+
+    /* Clase privada para iteradores de rangos sobre las hojas ligadas. */
+    private class Iterador implements Iterator<T> {
+
+        /* Copia de las llaves de la hoja actual. */
+        private byte[] llaves;
+        /* El número de llaves de la hoja actual; 0 si se acabó. */
+        private int n;
+        /* La posición del siguiente elemento en la hoja. */
+        private int posicion;
+        /* La página de la hoja actual. */
+        private int hoja;
+        /* La página de la hoja anterior, o 0 si no hay. */
+        private int anterior;
+        /* La página de la hoja siguiente, o 0 si no hay. */
+        private int siguiente;
+        /* Si el recorrido es descendente. */
+        private boolean descendente;
+        /* La codificación del límite donde se detiene el recorrido, o null
+         * si no hay. */
+        private byte[] limite;
+        /* El número de páginas a leer de una vez en la siguiente lectura
+         * adelantada. */
+        private int ventana;
+
+        /* Construye un iterador para el rango de codificaciones [desde,
+         * hasta]; los límites nulos no acotan. */
+        public Iterador(byte[] desde, byte[] hasta, boolean descendente) {
+            this.descendente = descendente;
+            llaves = new byte[maxHoja * longitud];
+            ventana = VENTANA_MINIMA;
+            try {
+                if (descendente) {
+                    limite = desde;
+                    carga(hasta == null ? ultima : busca(hasta, true));
+                    posicion = (hasta == null) ? n - 1
+                        : cotaSuperior(llaves, 0, n, hasta) - 1;
+                    if (posicion < 0)
+                        retrocede();
+                } else {
+                    limite = hasta;
+                    carga(desde == null ? primera : busca(desde, false));
+                    posicion = (desde == null) ? 0
+                        : cotaInferior(llaves, 0, n, desde);
+                    if (posicion == n)
+                        avanza();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /* Nos dice si hay un elemento siguiente dentro del rango. */
+        @Override public boolean hasNext() {
+            if (n == 0)
+                return false;
+            if (limite == null)
+                return true;
+            int c = compara(llaves, posicion * longitud, limite);
+            return descendente ? c >= 0 : c <= 0;
+        }
+
+        /* Regresa el siguiente elemento del rango. */
+        @Override public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            T elemento = codificador.decodifica(llaves, posicion * longitud,
+                                                longitud);
+            try {
+                if (descendente) {
+                    if (--posicion < 0)
+                        retrocede();
+                } else {
+                    if (++posicion == n)
+                        avanza();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return elemento;
+        }
+
+        /* Copia las llaves y ligas de la hoja en la página. */
+        private void carga(int pagina) throws IOException {
+            ByteBuffer b = disco.lee(pagina);
+            hoja = pagina;
+            n = b.getInt(N);
+            anterior = b.getInt(ANTERIOR);
+            siguiente = b.getInt(SIGUIENTE);
+            System.arraycopy(b.array(), DATOS, llaves, 0, n * longitud);
+        }
+
+        /* Pasa al principio de la hoja siguiente. */
+        private void avanza() throws IOException {
+            if (siguiente == 0) {
+                n = 0;
+                return;
+            }
+            adelanta(siguiente, siguiente == hoja + 1);
+            carga(siguiente);
+            posicion = 0;
+        }
+
+        /* Pasa al final de la hoja anterior. */
+        private void retrocede() throws IOException {
+            if (anterior == 0) {
+                n = 0;
+                return;
+            }
+            adelanta(anterior, anterior == hoja - 1);
+            carga(anterior);
+            posicion = n - 1;
+        }
+
+        /* Si el recorrido es secuencial y la página no está en el caché, la
+         * lee junto con las que le siguen en la dirección del recorrido. */
+        private void adelanta(int pagina, boolean secuencial)
+            throws IOException {
+            if (!secuencial) {
+                ventana = VENTANA_MINIMA;
+                return;
+            }
+            if (disco.enCache(pagina))
+                return;
+            if (descendente)
+                disco.precarga(pagina - ventana + 1, pagina + 1);
+            else
+                disco.precarga(pagina, pagina + ventana);
+            ventana = Math.min(2 * ventana, ventanaMaxima);
+        }
+    }
+
+    /* Clase privada para vistas de rangos del árbol. */
+    private class Vista implements VistaRango<T> {
+
+        /* La codificación del límite inferior, o null si no hay. */
+        private byte[] desde;
+        /* La codificación del límite superior, o null si no hay. */
+        private byte[] hasta;
+
+        /* Construye la vista del rango [desde, hasta]. */
+        public Vista(byte[] desde, byte[] hasta) {
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        /* Regresa un iterador ascendente del rango. */
+        @Override public Iterator<T> iterator() {
+            return new Iterador(desde, hasta, false);
+        }
+
+        /* Regresa un iterador descendente del rango. */
+        @Override public Iterator<T> iteradorDescendente() {
+            return new Iterador(desde, hasta, true);
+        }
+
+        /* Regresa el rango en orden descendente. */
+        @Override public Iterable<T> descendente() {
+            return this::iteradorDescendente;
+        }
+
+        /* Nos dice si el elemento está en el rango y en el árbol. */
+        @Override public boolean contiene(T elemento) {
+            if (elemento == null)
+                return false;
+            byte[] e = codificador.codifica(elemento);
+            if (desde != null && compara(e, 0, desde) < 0)
+                return false;
+            if (hasta != null && compara(e, 0, hasta) > 0)
+                return false;
+            return ArbolBMasDisco.this.contiene(elemento);
+        }
+
+        /* Regresa el número de elementos en el rango, recorriéndolo. */
+        @Override public int getElementos() {
+            if (desde == null && hasta == null)
+                return elementos;
+            int n = 0;
+            for (Iterator<T> i = iterator(); i.hasNext(); i.next())
+                n++;
+            return n;
+        }
+
+        /* Nos dice si el rango es vacío. */
+        @Override public boolean esVacia() {
+            return !iterator().hasNext();
+        }
+    }
+
+    /* Clase privada para escribir bloques de páginas nuevas al final del
+     * archivo, sin pasar por la bitácora. */
+    private class Escritor {
+
+        /* El bloque de páginas. */
+        private ByteBuffer bloque;
+        /* La primera página del bloque. */
+        private int primera;
+        /* El número de páginas en el bloque. */
+        private int escritas;
+        /* El tamaño de las páginas. */
+        private int tamano;
+
+        /* Construye un escritor que empieza en la página recibida. */
+        public Escritor(int primera) {
+            this.primera = primera;
+            tamano = disco.getTamanoPagina();
+            bloque = ByteBuffer.allocate(PAGINAS_BLOQUE * tamano);
+        }
+
+        /* Regresa el número de la siguiente página. */
+        public int pagina() {
+            return primera + escritas;
+        }
+
+        /* Agrega una página en ceros al bloque y regresa dónde comienza. */
+        public int nueva() throws IOException {
+            if (escritas == PAGINAS_BLOQUE)
+                vuelca();
+            int o = escritas++ * tamano;
+            Arrays.fill(bloque.array(), o, o + tamano, (byte)0);
+            return o;
+        }
+
+        /* Escribe las páginas del bloque en el archivo. */
+        public void vuelca() throws IOException {
+            bloque.clear().limit(escritas * tamano);
+            disco.escribeSinBitacora(primera, bloque);
+            primera += escritas;
+            escritas = 0;
+        }
+    }
+
+    /* El número mágico del árbol; "EDDB" en ASCII. */
+    private static final int MAGIA = 0x45444442;
+    /* El tipo de las páginas de hojas. */
+    private static final int HOJA = 1;
+    /* El tipo de las páginas de vértices internos. */
+    private static final int INTERNO = 2;
+    /* Dónde está el tipo en una página. */
+    private static final int TIPO = 0;
+    /* Dónde está el número de llaves en una página. */
+    private static final int N = 4;
+    /* Dónde está la hoja anterior en una hoja. */
+    private static final int ANTERIOR = 8;
+    /* Dónde está la hoja siguiente en una hoja. */
+    private static final int SIGUIENTE = 12;
+    /* Dónde comienzan las llaves de una hoja y los hijos de un vértice
+     * interno. */
+    private static final int DATOS = 16;
+    /* Dónde comienzan los datos del árbol en la página 0. */
+    private static final int META = ArchivoPaginas.ENCABEZADO;
+    /* El número inicial de páginas de una lectura adelantada. */
+    private static final int VENTANA_MINIMA = 4;
+    /* El máximo número de páginas de una lectura adelantada. */
+    private static final int VENTANA_MAXIMA = 64;
+    /* El número de páginas que se escriben de una vez al cargar en
+     * bloque. */
+    private static final int PAGINAS_BLOQUE = 64;
+
+    /* El archivo de páginas. */
+    private ArchivoPaginas disco;
+    /* El codificador de los elementos. */
+    private CodificadorFijo<T> codificador;
+    /* La longitud de las codificaciones. */
+    private int longitud;
+    /* El máximo número de llaves de una hoja. */
+    private int maxHoja;
+    /* El máximo número de llaves de un vértice interno. */
+    private int maxInterno;
+    /* El mínimo número de llaves de una hoja que no es la raíz. */
+    private int minHoja;
+    /* El mínimo número de llaves de un vértice interno que no es la raíz. */
+    private int minInterno;
+    /* Dónde comienzan las llaves de un vértice interno. */
+    private int baseInterno;
+    /* El máximo número de páginas de una lectura adelantada. */
+    private int ventanaMaxima;
+    /* La página de la raíz. */
+    private int raiz;
+    /* El número de niveles de vértices internos; cero si la raíz es hoja. */
+    private int altura;
+    /* La página de la primera hoja. */
+    private int primera;
+    /* La página de la última hoja. */
+    private int ultima;
+    /* El número de elementos. */
+    private int elementos;
+    /* Las páginas de la última búsqueda con camino: ruta[0] es la raíz y
+     * ruta[altura] la hoja. */
+    private int[] ruta;
+    /* El hijo que se tomó en cada vértice interno de la ruta. */
+    private int[] indices;
+    /* La codificación del elemento de la operación en curso. */
+    private byte[] llave;
+    /* La llave que sube al partir un vértice. */
+    private byte[] separador;
+    /* Espacio para las llaves de un vértice desbordado. */
+    private byte[] auxiliar;
+    /* Espacio para los hijos de un vértice interno desbordado. */
+    private int[] hijos;
+
+    /**
+     * Abre o crea un árbol B+ en el archivo recibido, con el tamaño de
+     * página y el número de marcos predeterminados de {@link
+     * ArchivoPaginas}, esperando a que cada operación esté en disco.
+     * @param archivo la ruta del archivo del árbol.
+     * @param codificador el codificador de los elementos; debe preservar el
+     *                    orden.
+     * @throws IllegalArgumentException si las codificaciones son demasiado
+     *         largas para el tamaño de página.
+     * @throws IOException si ocurre un error al abrir el archivo, o si no es
+     *         un árbol con codificaciones de la misma longitud.
+     */
+    public ArbolBMasDisco(Path archivo, CodificadorFijo<T> codificador)
+        throws IOException {
+        this(archivo, codificador, ArchivoPaginas.TAMANO_PREDETERMINADO,
+             ArchivoPaginas.MARCOS_PREDETERMINADOS, true);
+    }
+
+    /**
+     * Abre o crea un árbol B+ en el archivo recibido.
+     * @param archivo la ruta del archivo del árbol.
+     * @param codificador el codificador de los elementos; debe preservar el
+     *                    orden.
+     * @param tamano el tamaño de las páginas.
+     * @param marcos el número de páginas que se guardan en memoria.
+     * @param sincroniza si cada operación debe esperar a que su registro
+     *                   esté en disco; ver {@link ArchivoPaginas}.
+     * @throws IllegalArgumentException si el tamaño de página o el número de
+     *         marcos son inválidos, o si las codificaciones son demasiado
+     *         largas para el tamaño de página.
+     * @throws IOException si ocurre un error al abrir el archivo, o si no es
+     *         un árbol con el mismo tamaño de página y codificaciones de la
+     *         misma longitud.
+     */
+    public ArbolBMasDisco(Path archivo, CodificadorFijo<T> codificador,
+                          int tamano, int marcos, boolean sincroniza)
+        throws IOException {
+        longitud = codificador.getLongitud();
+        maxHoja = (tamano - DATOS) / longitud;
+        maxInterno = (tamano - DATOS - 4) / (longitud + 4);
+        if (longitud <= 0 || maxHoja < 3 || maxInterno < 2)
+            throw new IllegalArgumentException("Codificaciones demasiado " +
+                                               "largas: " + longitud);
+        minHoja = maxHoja / 2;
+        minInterno = (maxInterno + 2) / 2 - 1;
+        baseInterno = DATOS + 4 * (maxInterno + 1);
+        ventanaMaxima = Math.max(VENTANA_MINIMA,
+                                 Math.min(VENTANA_MAXIMA, marcos / 4));
+        this.codificador = codificador;
+        ruta = new int[8];
+        indices = new int[8];
+        llave = new byte[longitud];
+        separador = new byte[longitud];
+        auxiliar = new byte[(Math.max(maxHoja, maxInterno) + 1) * longitud];
+        hijos = new int[maxInterno + 2];
+        disco = new ArchivoPaginas(archivo, tamano, marcos, sincroniza);
+        try {
+            if (disco.getPaginas() == 1) {
+                disco.comienza();
+                inicia();
+                disco.confirma();
+            } else {
+                leeMeta();
+            }
+        } catch (IOException | RuntimeException e) {
+            disco.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Agrega un elemento al árbol.
+     * @param elemento el elemento a agregar.
+     * @throws IllegalArgumentException si el elemento es <code>null</code>.
+     * @throws UncheckedIOException si ocurre un error al leer o escribir el
+     *         archivo; el árbol queda inservible y hay que volver a abrirlo.
+     */
+    @Override public void agrega(T elemento) {
+        if (elemento == null)
+            throw new IllegalArgumentException();
+        codificador.codifica(elemento, llave, 0);
+        try {
+            disco.comienza();
+            int hoja = buscaConRuta(llave);
+            ByteBuffer b = disco.escribe(hoja);
+            int n = b.getInt(N);
+            int p = cotaSuperior(b.array(), DATOS, n, llave);
+            if (n < maxHoja) {
+                inserta(b.array(), DATOS, n, p, llave, 0);
+                b.putInt(N, n + 1);
+            } else {
+                parte(hoja, b, p);
+            }
+            elementos++;
+            escribeMeta();
+            disco.confirma();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Elimina un elemento del árbol. Si el elemento no está en el árbol, no
+     * hace nada; si está varias veces, elimina una de ellas.
+     * @param elemento el elemento a eliminar.
+     * @throws UncheckedIOException si ocurre un error al leer o escribir el
+     *         archivo; el árbol queda inservible y hay que volver a abrirlo.
+     */
+    @Override public void elimina(T elemento) {
+        if (elemento == null)
+            return;
+        codificador.codifica(elemento, llave, 0);
+        try {
+            disco.comienza();
+            int hoja = buscaConRuta(llave);
+            ByteBuffer b = disco.lee(hoja);
+            int n = b.getInt(N);
+            int p = cotaInferior(b.array(), DATOS, n, llave);
+            /* Si la hoja no tiene llaves mayores o iguales, el elemento
+             * sólo puede ser la primera llave de la hoja siguiente. */
+            if (p == n && avanzaRuta()) {
+                hoja = ruta[altura];
+                b = disco.lee(hoja);
+                n = b.getInt(N);
+                p = 0;
+            }
+            if (p < n && compara(b.array(), DATOS + p * longitud, llave) == 0) {
+                b = disco.escribe(hoja);
+                quita(b.array(), DATOS, n, p);
+                b.putInt(N, n - 1);
+                elementos--;
+                if (altura > 0 && n - 1 < minHoja)
+                    repara(altura);
+                escribeMeta();
+            }
+            disco.confirma();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Nos dice si un elemento está en el árbol.
+     * @param elemento el elemento que queremos verificar.
+     * @return <code>true</code> si el elemento está en el árbol,
+     *         <code>false</code> en otro caso.
+     * @throws UncheckedIOException si ocurre un error al leer el archivo.
+     */
+    @Override public boolean contiene(T elemento) {
+        if (elemento == null)
+            return false;
+        codificador.codifica(elemento, llave, 0);
+        try {
+            ByteBuffer b = disco.lee(busca(llave, false));
+            int n = b.getInt(N);
+            int p = cotaInferior(b.array(), DATOS, n, llave);
+            if (p == n) {
+                int siguiente = b.getInt(SIGUIENTE);
+                if (siguiente == 0)
+                    return false;
+                b = disco.lee(siguiente);
+                n = b.getInt(N);
+                p = 0;
+            }
+            return p < n &&
+                compara(b.array(), DATOS + p * longitud, llave) == 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Carga en bloque los elementos de la colección en el árbol vacío. Las
+     * hojas se escriben llenas y en páginas consecutivas al final del
+     * archivo, directamente y sin pasar por la bitácora, y una sola
+     * transacción las incorpora al árbol: si el programa termina antes, el
+     * árbol sigue vacío. Como el árbol ordena a sus elementos por sus
+     * codificaciones, la colección se revisa y, si hace falta, se ordena con
+     * {@link Arreglos#quickSort} comparando las codificaciones y no con
+     * {@link Comparable#compareTo}.
+     * @param coleccion la colección con los elementos a cargar.
+     * @throws IllegalStateException si el árbol no es vacío.
+     * @throws IllegalArgumentException si la colección contiene a
+     *         <code>null</code>.
+     * @throws UncheckedIOException si ocurre un error al escribir el
+     *         archivo; el árbol queda inservible y hay que volver a abrirlo.
+     */
+    public void carga(Coleccion<T> coleccion) {
+        if (elementos != 0)
+            throw new IllegalStateException("El árbol no es vacío");
+        int n = coleccion.getElementos();
+        if (n == 0)
+            return;
+        byte[][] llaves = new byte[n][];
+        boolean ordenado = true;
+        int i = 0;
+        for (T e : coleccion) {
+            if (e == null)
+                throw new IllegalArgumentException();
+            llaves[i] = codificador.codifica(e);
+            if (i > 0 && Arrays.compareUnsigned(llaves[i - 1], llaves[i]) > 0)
+                ordenado = false;
+            i++;
+        }
+        if (!ordenado)
+            Arreglos.quickSort(llaves, Arrays::compareUnsigned);
+        try {
+            cargaEnBloque(llaves);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Regresa una vista de los elementos del árbol que están entre los dos
+     * elementos recibidos, incluyéndolos.
+     * @param desde el límite inferior del rango.
+     * @param hasta el límite superior del rango.
+     * @return una vista de los elementos <em>e</em> del árbol tales que
+     *         <em>desde</em> ≤ <em>e</em> ≤ <em>hasta</em>.
+     * @throws IllegalArgumentException si alguno de los límites es
+     *         <code>null</code>.
+     */
+    public VistaRango<T> rango(T desde, T hasta) {
+        if (desde == null || hasta == null)
+            throw new IllegalArgumentException();
+        return new Vista(codificador.codifica(desde),
+                         codificador.codifica(hasta));
+    }
+
+    /**
+     * Regresa una vista de los elementos del árbol mayores o iguales que el
+     * elemento recibido.
+     * @param desde el límite inferior de la vista.
+     * @return una vista de los elementos <em>e</em> del árbol tales que
+     *         <em>desde</em> ≤ <em>e</em>.
+     * @throws IllegalArgumentException si el límite es <code>null</code>.
+     */
+    public VistaRango<T> desde(T desde) {
+        if (desde == null)
+            throw new IllegalArgumentException();
+        return new Vista(codificador.codifica(desde), null);
+    }
+
+    /**
+     * Regresa una vista de los elementos del árbol menores o iguales que el
+     * elemento recibido.
+     * @param hasta el límite superior de la vista.
+     * @return una vista de los elementos <em>e</em> del árbol tales que
+     *         <em>e</em> ≤ <em>hasta</em>.
+     * @throws IllegalArgumentException si el límite es <code>null</code>.
+     */
+    public VistaRango<T> hasta(T hasta) {
+        if (hasta == null)
+            throw new IllegalArgumentException();
+        return new Vista(null, codificador.codifica(hasta));
+    }
+
+    /**
+     * Regresa la altura del árbol: el número de niveles de vértices internos
+     * sobre las hojas.
+     * @return la altura del árbol.
+     */
+    public int altura() {
+        return altura;
+    }
+
+    /**
+     * Escribe en el archivo del árbol todas las páginas modificadas y vacía
+     * su bitácora; ver {@link ArchivoPaginas#puntoDeControl}.
+     * @throws UncheckedIOException si ocurre un error al escribir el
+     *         archivo; el árbol queda inservible y hay que volver a abrirlo.
+     */
+    public void puntoDeControl() {
+        try {
+            disco.puntoDeControl();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Nos dice si el árbol es vacío.
+     * @return <code>true</code> si el árbol es vacío, <code>false</code> en
+     *         otro caso.
+     */
+    @Override public boolean esVacia() {
+        return elementos == 0;
+    }
+
+    /**
+     * Regresa el número de elementos en el árbol.
+     * @return el número de elementos en el árbol.
+     */
+    @Override public int getElementos() {
+        return elementos;
+    }
+
+    /**
+     * Limpia el árbol de elementos, dejándolo vacío. Todas las páginas del
+     * árbol se liberan sin leerlas.
+     * @throws UncheckedIOException si ocurre un error al escribir el
+     *         archivo; el árbol queda inservible y hay que volver a abrirlo.
+     */
+    @Override public void limpia() {
+        try {
+            disco.comienza();
+            disco.vacia();
+            inicia();
+            disco.confirma();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Cierra el árbol y su archivo. Después de cerrarlo, el árbol no se
+     * puede usar.
+     * @throws IOException si ocurre un error al escribir o cerrar el
+     *         archivo.
+     */
+    @Override public void close() throws IOException {
+        disco.close();
+    }
+
+    /**
+     * Regresa una representación en cadena del árbol.
+     * @return una representación en cadena del árbol.
+     */
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (T e : this)
+            sb.append(sb.length() > 1 ? ", " : "").append(e);
+        return sb.append("]").toString();
+    }
+
+    /**
+     * Nos dice si el árbol es igual al objeto recibido.
+     * @param o el objeto que queremos saber si es igual al árbol.
+     * @return <code>true</code> si el objeto recibido es un árbol B+ en
+     *         disco con los mismos elementos en el mismo orden, sin importar
+     *         la forma de los árboles; <code>false</code> en otro caso.
+     */
+    @Override public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass())
+            return false;
+        @SuppressWarnings("unchecked") ArbolBMasDisco<T> arbol =
+            (ArbolBMasDisco<T>)o;
+        if (elementos != arbol.elementos)
+            return false;
+        Iterator<T> i = arbol.iterator();
+        for (T e : this)
+            if (!e.equals(i.next()))
+                return false;
+        return true;
+    }
+
+    /**
+     * Regresa un código de dispersión para el árbol, que depende de sus
+     * elementos y de su orden, y es consistente con {@link #equals}.
+     * @return un código de dispersión para el árbol.
+     * @throws UncheckedIOException si ocurre un error al leer el archivo.
+     */
+    @Override public int hashCode() {
+        int h = 1;
+        for (T e : this)
+            h = 31 * h + e.hashCode();
+        return h;
+    }
+
+    /**
+     * Regresa un iterador para iterar el árbol en orden, recorriendo las
+     * hojas ligadas.
+     * @return un iterador para iterar el árbol.
+     * @throws UncheckedIOException si ocurre un error al leer el archivo.
+     */
+    @Override public Iterator<T> iterator() {
+        return new Iterador(null, null, false);
+    }
+
+    /* Crea la raíz vacía del árbol en la transacción en curso. */
+    private void inicia() throws IOException {
+        int hoja = disco.asigna();
+        disco.escribe(hoja).putInt(TIPO, HOJA);
+        raiz = primera = ultima = hoja;
+        altura = 0;
+        elementos = 0;
+        escribeMeta();
+    }
+
+    /* Lee los datos del árbol de la página 0. */
+    private void leeMeta() throws IOException {
+        ByteBuffer b = disco.lee(0);
+        if (b.getInt(META) != MAGIA)
+            throw new IOException("El archivo no es un árbol B+");
+        if (b.getInt(META + 4) != longitud)
+            throw new IOException("Longitud de codificaciones distinta: " +
+                                  b.getInt(META + 4));
+        raiz = b.getInt(META + 8);
+        altura = b.getInt(META + 12);
+        elementos = b.getInt(META + 16);
+        primera = b.getInt(META + 20);
+        ultima = b.getInt(META + 24);
+    }
+
+    /* Escribe los datos del árbol en la página 0. */
+    private void escribeMeta() throws IOException {
+        ByteBuffer b = disco.escribe(0);
+        b.putInt(META, MAGIA);
+        b.putInt(META + 4, longitud);
+        b.putInt(META + 8, raiz);
+        b.putInt(META + 12, altura);
+        b.putInt(META + 16, elementos);
+        b.putInt(META + 20, primera);
+        b.putInt(META + 24, ultima);
+    }
+
+    /* Baja a la hoja donde la llave está o iría. Si superior es false toma
+     * en cada vértice el primer hijo que puede tener a la llave; si es
+     * true, el último. */
+    private int busca(byte[] k, boolean superior) throws IOException {
+        int pagina = raiz;
+        for (int nivel = 0; nivel < altura; nivel++) {
+            ByteBuffer b = disco.lee(pagina);
+            int n = b.getInt(N);
+            int i = superior ? cotaSuperior(b.array(), baseInterno, n, k)
+                : cotaInferior(b.array(), baseInterno, n, k);
+            pagina = b.getInt(DATOS + 4 * i);
+        }
+        return pagina;
+    }
+
+    /* Baja a la primera hoja que puede tener a la llave, guardando el
+     * camino en ruta e indices. */
+    private int buscaConRuta(byte[] k) throws IOException {
+        if (ruta.length <= altura) {
+            ruta = new int[altura + 4];
+            indices = new int[altura + 4];
+        }
+        int pagina = raiz;
+        for (int nivel = 0; nivel < altura; nivel++) {
+            ruta[nivel] = pagina;
+            ByteBuffer b = disco.lee(pagina);
+            int i = cotaInferior(b.array(), baseInterno, b.getInt(N), k);
+            indices[nivel] = i;
+            pagina = b.getInt(DATOS + 4 * i);
+        }
+        ruta[altura] = pagina;
+        return pagina;
+    }
+
+    /* Cambia la ruta por la de la hoja siguiente; regresa false si la hoja
+     * de la ruta es la última. */
+    private boolean avanzaRuta() throws IOException {
+        int nivel = altura - 1;
+        while (nivel >= 0 && indices[nivel] == disco.lee(ruta[nivel]).getInt(N))
+            nivel--;
+        if (nivel < 0)
+            return false;
+        indices[nivel]++;
+        for (int k = nivel + 1; k <= altura; k++) {
+            ruta[k] = disco.lee(ruta[k - 1]).getInt(DATOS + 4 * indices[k - 1]);
+            if (k < altura)
+                indices[k] = 0;
+        }
+        return true;
+    }
+
+    /* Parte la hoja llena de la ruta para insertar la llave en la posición
+     * recibida, y sube la primera llave de la nueva hoja, partiendo los
+     * vértices internos que se desborden. */
+    private void parte(int hoja, ByteBuffer b, int p) throws IOException {
+        byte[] a = b.array();
+        int n = maxHoja, total = n + 1, izquierda = total / 2;
+        System.arraycopy(a, DATOS, auxiliar, 0, p * longitud);
+        System.arraycopy(llave, 0, auxiliar, p * longitud, longitud);
+        System.arraycopy(a, DATOS + p * longitud, auxiliar,
+                         (p + 1) * longitud, (n - p) * longitud);
+        int nueva = disco.asigna();
+        ByteBuffer c = disco.escribe(nueva);
+        c.putInt(TIPO, HOJA);
+        System.arraycopy(auxiliar, 0, a, DATOS, izquierda * longitud);
+        Arrays.fill(a, DATOS + izquierda * longitud, DATOS + n * longitud,
+                    (byte)0);
+        b.putInt(N, izquierda);
+        System.arraycopy(auxiliar, izquierda * longitud, c.array(), DATOS,
+                         (total - izquierda) * longitud);
+        c.putInt(N, total - izquierda);
+        int siguiente = b.getInt(SIGUIENTE);
+        c.putInt(SIGUIENTE, siguiente);
+        c.putInt(ANTERIOR, hoja);
+        if (siguiente != 0)
+            disco.escribe(siguiente).putInt(ANTERIOR, nueva);
+        else
+            ultima = nueva;
+        b.putInt(SIGUIENTE, nueva);
+        System.arraycopy(c.array(), DATOS, separador, 0, longitud);
+        int derecho = nueva;
+        for (int nivel = altura - 1; nivel >= 0; nivel--) {
+            int i = indices[nivel];
+            b = disco.escribe(ruta[nivel]);
+            a = b.array();
+            n = b.getInt(N);
+            if (n < maxInterno) {
+                inserta(a, baseInterno, n, i, separador, 0);
+                System.arraycopy(a, DATOS + 4 * (i + 1), a, DATOS + 4 * (i + 2),
+                                 4 * (n - i));
+                b.putInt(DATOS + 4 * (i + 1), derecho);
+                b.putInt(N, n + 1);
+                return;
+            }
+            System.arraycopy(a, baseInterno, auxiliar, 0, i * longitud);
+            System.arraycopy(separador, 0, auxiliar, i * longitud, longitud);
+            System.arraycopy(a, baseInterno + i * longitud, auxiliar,
+                             (i + 1) * longitud, (n - i) * longitud);
+            for (int j = 0, k = 0; j <= n + 1; j++)
+                hijos[j] = (j == i + 1) ? derecho : b.getInt(DATOS + 4 * k++);
+            int m = (maxInterno + 1) / 2;
+            int otro = disco.asigna();
+            c = disco.escribe(otro);
+            c.putInt(TIPO, INTERNO);
+            System.arraycopy(auxiliar, 0, a, baseInterno, m * longitud);
+            Arrays.fill(a, baseInterno + m * longitud,
+                        baseInterno + n * longitud, (byte)0);
+            for (int j = 0; j <= n; j++)
+                b.putInt(DATOS + 4 * j, j <= m ? hijos[j] : 0);
+            b.putInt(N, m);
+            System.arraycopy(auxiliar, (m + 1) * longitud, c.array(),
+                             baseInterno, (n - m) * longitud);
+            for (int j = 0; j <= n - m; j++)
+                c.putInt(DATOS + 4 * j, hijos[m + 1 + j]);
+            c.putInt(N, n - m);
+            System.arraycopy(auxiliar, m * longitud, separador, 0, longitud);
+            derecho = otro;
+        }
+        int nuevaRaiz = disco.asigna();
+        c = disco.escribe(nuevaRaiz);
+        c.putInt(TIPO, INTERNO);
+        c.putInt(N, 1);
+        System.arraycopy(separador, 0, c.array(), baseInterno, longitud);
+        c.putInt(DATOS, raiz);
+        c.putInt(DATOS + 4, derecho);
+        raiz = nuevaRaiz;
+        altura++;
+    }
+
+    /* Repara el vértice de la ruta en el nivel recibido, que quedó con
+     * menos llaves del mínimo: le presta un hermano con llaves de sobra, o
+     * se fusiona con un hermano y el padre pierde una llave. */
+    private void repara(int nivel) throws IOException {
+        boolean esHoja = nivel == altura;
+        int padre = ruta[nivel - 1];
+        int i = indices[nivel - 1];
+        ByteBuffer b = disco.lee(padre);
+        int n = b.getInt(N);
+        int izquierdo = (i > 0) ? b.getInt(DATOS + 4 * (i - 1)) : 0;
+        int derecho = (i < n) ? b.getInt(DATOS + 4 * (i + 1)) : 0;
+        int minimo = esHoja ? minHoja : minInterno;
+        if (izquierdo != 0 && disco.lee(izquierdo).getInt(N) > minimo) {
+            prestaIzquierdo(padre, i, izquierdo, ruta[nivel], esHoja);
+            return;
+        }
+        if (derecho != 0 && disco.lee(derecho).getInt(N) > minimo) {
+            prestaDerecho(padre, i, ruta[nivel], derecho, esHoja);
+            return;
+        }
+        fusiona(padre, (izquierdo != 0) ? i - 1 : i, esHoja);
+        n = b.getInt(N);
+        if (nivel == 1) {
+            if (n == 0) {
+                raiz = b.getInt(DATOS);
+                altura--;
+                disco.libera(padre);
+            }
+        } else if (n < minInterno) {
+            repara(nivel - 1);
+        }
+    }
+
+    /* Pasa la última llave (e hijo) del hermano izquierdo al vértice i. */
+    private void prestaIzquierdo(int padre, int i, int izquierdo, int nodo,
+                                 boolean esHoja) throws IOException {
+        ByteBuffer bp = disco.escribe(padre);
+        ByteBuffer ba = disco.escribe(izquierdo);
+        ByteBuffer bb = disco.escribe(nodo);
+        byte[] p = bp.array(), a = ba.array(), b = bb.array();
+        int na = ba.getInt(N), nb = bb.getInt(N);
+        int s = baseInterno + (i - 1) * longitud;
+        if (esHoja) {
+            inserta(b, DATOS, nb, 0, a, DATOS + (na - 1) * longitud);
+            quita(a, DATOS, na, na - 1);
+            System.arraycopy(b, DATOS, p, s, longitud);
+        } else {
+            System.arraycopy(b, DATOS, b, DATOS + 4, 4 * (nb + 1));
+            bb.putInt(DATOS, ba.getInt(DATOS + 4 * na));
+            ba.putInt(DATOS + 4 * na, 0);
+            inserta(b, baseInterno, nb, 0, p, s);
+            System.arraycopy(a, baseInterno + (na - 1) * longitud,
+                             p, s, longitud);
+            quita(a, baseInterno, na, na - 1);
+        }
+        ba.putInt(N, na - 1);
+        bb.putInt(N, nb + 1);
+    }
+
+    /* Pasa la primera llave (e hijo) del hermano derecho al vértice i. */
+    private void prestaDerecho(int padre, int i, int nodo, int derecho,
+                               boolean esHoja) throws IOException {
+        ByteBuffer bp = disco.escribe(padre);
+        ByteBuffer ba = disco.escribe(nodo);
+        ByteBuffer bb = disco.escribe(derecho);
+        byte[] p = bp.array(), a = ba.array(), b = bb.array();
+        int na = ba.getInt(N), nb = bb.getInt(N);
+        int s = baseInterno + i * longitud;
+        if (esHoja) {
+            System.arraycopy(b, DATOS, a, DATOS + na * longitud, longitud);
+            quita(b, DATOS, nb, 0);
+            System.arraycopy(b, DATOS, p, s, longitud);
+        } else {
+            System.arraycopy(p, s, a, baseInterno + na * longitud,
+                             longitud);
+            ba.putInt(DATOS + 4 * (na + 1), bb.getInt(DATOS));
+            System.arraycopy(b, baseInterno, p, s, longitud);
+            System.arraycopy(b, DATOS + 4, b, DATOS, 4 * nb);
+            bb.putInt(DATOS + 4 * nb, 0);
+            quita(b, baseInterno, nb, 0);
+        }
+        ba.putInt(N, na + 1);
+        bb.putInt(N, nb - 1);
+    }
+
+    /* Fusiona el hijo j + 1 del padre en el hijo j, quita del padre la
+     * llave que los separaba y libera la página del hijo j + 1. */
+    private void fusiona(int padre, int j, boolean esHoja) throws IOException {
+        ByteBuffer bp = disco.escribe(padre);
+        byte[] p = bp.array();
+        int np = bp.getInt(N);
+        int izquierdo = bp.getInt(DATOS + 4 * j);
+        int derecho = bp.getInt(DATOS + 4 * (j + 1));
+        ByteBuffer ba = disco.escribe(izquierdo);
+        ByteBuffer bb = disco.lee(derecho);
+        byte[] a = ba.array(), b = bb.array();
+        int na = ba.getInt(N), nb = bb.getInt(N);
+        if (esHoja) {
+            System.arraycopy(b, DATOS, a, DATOS + na * longitud,
+                             nb * longitud);
+            na += nb;
+            int siguiente = bb.getInt(SIGUIENTE);
+            ba.putInt(SIGUIENTE, siguiente);
+            if (siguiente != 0)
+                disco.escribe(siguiente).putInt(ANTERIOR, izquierdo);
+            else
+                ultima = izquierdo;
+        } else {
+            System.arraycopy(p, baseInterno + j * longitud,
+                             a, baseInterno + na * longitud, longitud);
+            System.arraycopy(b, baseInterno,
+                             a, baseInterno + (na + 1) * longitud,
+                             nb * longitud);
+            System.arraycopy(b, DATOS, a, DATOS + 4 * (na + 1), 4 * (nb + 1));
+            na += nb + 1;
+        }
+        ba.putInt(N, na);
+        quita(p, baseInterno, np, j);
+        System.arraycopy(p, DATOS + 4 * (j + 2), p, DATOS + 4 * (j + 1),
+                         4 * (np - j - 1));
+        bp.putInt(DATOS + 4 * np, 0);
+        bp.putInt(N, np - 1);
+        disco.libera(derecho);
+    }
+
+    /* Carga el árbol vacío con las codificaciones ordenadas del arreglo,
+     * escribiendo las hojas y luego cada nivel de vértices internos en
+     * páginas nuevas consecutivas, repartiendo las llaves por igual. */
+    private void cargaEnBloque(byte[][] llaves) throws IOException {
+        int n = llaves.length;
+        int hojas = (n + maxHoja - 1) / maxHoja;
+        byte[] minimos = new byte[hojas * longitud];
+        int inicio = disco.getPaginas();
+        Escritor escritor = new Escritor(inicio);
+        byte[] a = escritor.bloque.array();
+        for (int i = 0, desde = 0; i < hojas; i++) {
+            int hasta = (int)((long)n * (i + 1) / hojas);
+            int o = escritor.nueva();
+            ByteBuffer b = escritor.bloque;
+            b.putInt(o + TIPO, HOJA);
+            b.putInt(o + N, hasta - desde);
+            b.putInt(o + ANTERIOR, (i == 0) ? 0 : inicio + i - 1);
+            b.putInt(o + SIGUIENTE, (i == hojas - 1) ? 0 : inicio + i + 1);
+            for (int j = desde; j < hasta; j++)
+                System.arraycopy(llaves[j], 0, a,
+                                 o + DATOS + (j - desde) * longitud, longitud);
+            System.arraycopy(a, o + DATOS, minimos, i * longitud, longitud);
+            desde = hasta;
+        }
+        int m = hojas, nivel = inicio, niveles = 0;
+        while (m > 1) {
+            int padres = (m + maxInterno) / (maxInterno + 1);
+            int siguienteNivel = escritor.pagina();
+            for (int i = 0, desde = 0; i < padres; i++) {
+                int hasta = (int)((long)m * (i + 1) / padres);
+                int o = escritor.nueva();
+                ByteBuffer b = escritor.bloque;
+                b.putInt(o + TIPO, INTERNO);
+                b.putInt(o + N, hasta - desde - 1);
+                for (int j = desde; j < hasta; j++)
+                    b.putInt(o + DATOS + 4 * (j - desde), nivel + j);
+                System.arraycopy(minimos, (desde + 1) * longitud,
+                                 a, o + baseInterno,
+                                 (hasta - desde - 1) * longitud);
+                System.arraycopy(minimos, desde * longitud,
+                                 minimos, i * longitud, longitud);
+                desde = hasta;
+            }
+            nivel = siguienteNivel;
+            m = padres;
+            niveles++;
+        }
+        escritor.vuelca();
+        disco.comienza();
+        disco.incorpora(escritor.pagina() - inicio);
+        disco.libera(raiz);
+        raiz = nivel;
+        altura = niveles;
+        primera = inicio;
+        ultima = inicio + hojas - 1;
+        elementos = n;
+        escribeMeta();
+        disco.confirma();
+    }
+
+    /* Compara la codificación en el arreglo a partir del offset con la
+     * codificación k, como bytes sin signo. */
+    private int compara(byte[] a, int o, byte[] k) {
+        return Arrays.compareUnsigned(a, o, o + longitud, k, 0, longitud);
+    }
+
+    /* Regresa el número de llaves menores que k entre las n llaves que
+     * comienzan en base. */
+    private int cotaInferior(byte[] a, int base, int n, byte[] k) {
+        int i = 0, j = n;
+        while (i < j) {
+            int m = (i + j) >>> 1;
+            if (compara(a, base + m * longitud, k) < 0)
+                i = m + 1;
+            else
+                j = m;
+        }
+        return i;
+    }
+
+    /* Regresa el número de llaves menores o iguales que k entre las n
+     * llaves que comienzan en base. */
+    private int cotaSuperior(byte[] a, int base, int n, byte[] k) {
+        int i = 0, j = n;
+        while (i < j) {
+            int m = (i + j) >>> 1;
+            if (compara(a, base + m * longitud, k) <= 0)
+                i = m + 1;
+            else
+                j = m;
+        }
+        return i;
+    }
+
+    /* Inserta en la posición i de las n llaves que comienzan en base la
+     * llave del arreglo k que comienza en ko. */
+    private void inserta(byte[] a, int base, int n, int i, byte[] k, int ko) {
+        int o = base + i * longitud;
+        System.arraycopy(a, o, a, o + longitud, (n - i) * longitud);
+        System.arraycopy(k, ko, a, o, longitud);
+    }
+
+    /* Quita la llave en la posición i de las n llaves que comienzan en
+     * base. */
+    private void quita(byte[] a, int base, int n, int i) {
+        int o = base + i * longitud;
+        System.arraycopy(a, o + longitud, a, o, (n - i - 1) * longitud);
+        Arrays.fill(a, base + (n - 1) * longitud, base + n * longitud,
+                    (byte)0);
+    }
+}
@@ -1,5 +1,6 @@
 package mx.unam.ciencias.edd;
 
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 /**
@@ -23,6 +24,11 @@ public abstract class ArbolBinario<T> implements Coleccion<T> {
         public Vertice izquierdo;
         /** El derecho del vértice. */
         public Vertice derecho;
+        /**
+         * El número de elementos en el subárbol del vértice. Sólo lo
+         * mantienen los árboles binarios ordenados.
+         */
+        public int tamano;
 
         /**
          * Constructor único que recibe un elemento.
@@ -30,6 +36,7 @@ public abstract class ArbolBinario<T> implements Coleccion<T> {
          */
         public Vertice(T elemento) {
           this.elemento = elemento;
+          tamano = 1;
         }
 
         /**
@@ -97,9 +104,35 @@ public abstract class ArbolBinario<T> implements Coleccion<T> {
          * @return la altura del vértice.
          */
         @Override public int altura() {
-          int izq_aux =  hayIzquierdo() ? izquierdo.altura() : -1;
-          int der_aux = hayDerecho() ? derecho.altura() : -1;
-          return 1 + Math.max(izq_aux, der_aux);
+          /* Recorremos en post-order: la pila guarda el camino desde este
+           * vértice, así que n es la profundidad del tope más uno. */
+          PilaVertices pila = new PilaVertices();
+          Vertice v = this;
+          int n = 0, altura = 0;
+          while(true){
+            while(true){
+              pila.mete(v);
+              n++;
+              if(v.izquierdo != null)
+                v = v.izquierdo;
+              else if(v.derecho != null)
+                v = v.derecho;
+              else
+                break;
+            }
+            altura = Math.max(altura, n - 1);
+            while(true){
+              v = pila.saca();
+              n--;
+              if(pila.esVacia())
+                return altura;
+              Vertice padre = pila.mira();
+              if(padre.izquierdo == v && padre.derecho != null){
+                v = padre.derecho;
+                break;
+              }
+            }
+          }
         }
 
         /**
@@ -107,9 +140,10 @@ public abstract class ArbolBinario<T> implements Coleccion<T> {
          * @return la profundidad del vértice.
          */
         @Override public int profundidad() {
-          if(!(hayPadre()))
-            return 0;
-          return 1 + padre.profundidad();
+          int profundidad = 0;
+          for(Vertice v = padre; v != null; v = v.padre)
+            profundidad++;
+          return profundidad;
         }
 
         /**
@@ -121,23 +155,54 @@ public abstract class ArbolBinario<T> implements Coleccion<T> {
         }
 
         /**
-         * Compara el vértice con otro objeto. La comparación es
-         * <em>recursiva</em>. Las clases que extiendan {@link Vertice} deben
-         * sobrecargar el método {@link Vertice#equals}.
+         * Compara el vértice con otro objeto. La comparación recorre los dos
+         * subárboles en pre-order al mismo tiempo, y compara cada par de
+         * vértices con {@link Vertice#mismoContenido}. Las clases que
+         * extiendan {@link Vertice} deben sobrecargar ese método.
          * @param o el objeto con el cual se comparará el vértice.
          * @return <code>true</code> si el objeto es instancia de la clase
          *         {@link Vertice}, su elemento es igual al elemento de éste
-         *         vértice, y los descendientes de ambos son recursivamente
-         *         iguales; <code>false</code> en otro caso.
+         *         vértice, y los descendientes de ambos tienen la misma forma
+         *         y son iguales; <code>false</code> en otro caso.
          */
         @Override public boolean equals(Object o) {
             if (o == null || getClass() != o.getClass())
                 return false;
             @SuppressWarnings("unchecked") Vertice vertice = (Vertice)o;
-            if(!(elemento.equals(vertice.elemento))) return false;
-            boolean der_aux = (derecho != null) ? derecho().equals(vertice.derecho) : true;
-            boolean izq_aux = (izquierdo != null) ? izquierdo().equals(vertice.izquierdo) : true;
-            return izq_aux && der_aux;
+            /* Los vértices se meten por pares: el del otro subárbol queda
+             * encima del que le corresponde en éste. */
+            PilaVertices pila = new PilaVertices();
+            pila.mete(this);
+            pila.mete(vertice);
+            while(!pila.esVacia()){
+              Vertice b = pila.saca();
+              Vertice a = pila.saca();
+              if(!a.mismoContenido(b))
+                return false;
+              if((a.izquierdo == null) != (b.izquierdo == null) ||
+                 (a.derecho == null) != (b.derecho == null))
+                return false;
+              if(a.derecho != null){
+                pila.mete(a.derecho);
+                pila.mete(b.derecho);
+              }
+              if(a.izquierdo != null){
+                pila.mete(a.izquierdo);
+                pila.mete(b.izquierdo);
+              }
+            }
+            return true;
+        }
+
+        /**
+         * Nos dice si el vértice tiene el mismo contenido que otro vértice de
+         * la misma clase, sin comparar a sus descendientes.
+         * @param vertice el vértice con el cual se comparará éste.
+         * @return <code>true</code> si los elementos de ambos vértices son
+         *         iguales; <code>false</code> en otro caso.
+         */
+        protected boolean mismoContenido(Vertice vertice) {
+            return elemento.equals(vertice.elemento);
         }
 
         /**
@@ -149,6 +214,70 @@ public abstract class ArbolBinario<T> implements Coleccion<T> {
         }
     }
 
+    /**
+     * Clase interna protegida para pilas de vértices sobre un arreglo. Los
+     * recorridos y las búsquedas del árbol la usan en lugar de recursión,
+     * para que no dependan del tamaño de la pila de llamadas cuando el árbol
+     * es muy profundo.
+     */
+    protected class PilaVertices {
+
+        /* Los vértices de la pila. */
+        private Vertice[] vertices;
+        /* El número de vértices en la pila. */
+        private int tope;
+
+        /**
+         * Construye una pila de vértices vacía.
+         */
+        public PilaVertices() {
+            vertices = arregloVertices(16);
+        }
+
+        /**
+         * Mete un vértice a la pila.
+         * @param vertice el vértice a meter.
+         */
+        public void mete(Vertice vertice) {
+            if (tope == vertices.length)
+                vertices = Arrays.copyOf(vertices, 2 * tope);
+            vertices[tope++] = vertice;
+        }
+
+        /**
+         * Saca el vértice del tope de la pila.
+         * @return el vértice del tope de la pila.
+         * @throws NoSuchElementException si la pila es vacía.
+         */
+        public Vertice saca() {
+            if (tope == 0)
+                throw new NoSuchElementException();
+            Vertice vertice = vertices[--tope];
+            vertices[tope] = null;
+            return vertice;
+        }
+
+        /**
+         * Regresa el vértice del tope de la pila, sin sacarlo.
+         * @return el vértice del tope de la pila.
+         * @throws NoSuchElementException si la pila es vacía.
+         */
+        public Vertice mira() {
+            if (tope == 0)
+                throw new NoSuchElementException();
+            return vertices[tope - 1];
+        }
+
+        /**
+         * Nos dice si la pila es vacía.
+         * @return <code>true</code> si la pila es vacía, <code>false</code>
+         *         en otro caso.
+         */
+        public boolean esVacia() {
+            return tope == 0;
+        }
+    }
+
     /** La raíz del árbol. */
     protected Vertice raiz;
     /** El número de elementos */
@@ -224,14 +353,30 @@ public abstract class ArbolBinario<T> implements Coleccion<T> {
         return buscaAux(raiz, elemento);
     }
 
+    /**
+     * Busca en pre-order un elemento en el subárbol del vértice recibido.
+     * @param vertice la raíz del subárbol donde se busca.
+     * @param elemento el elemento a buscar.
+     * @return el primer vértice en pre-order que contiene al elemento si lo
+     *         encuentra; <tt>null</tt> en otro caso.
+     */
     protected Vertice buscaAux(Vertice vertice, T elemento) {
         if(vertice == null)
           return null;
-        if (vertice.get().equals(elemento))
-            return vertice;
-        Vertice izq = buscaAux(vertice.izquierdo, elemento);
-        Vertice der = buscaAux(vertice.derecho, elemento);
-        return izq != null ? izq : der;
+        PilaVertices pila = new PilaVertices();
+        Vertice v = vertice;
+        while(true){
+          while(v != null){
+            if (v.get().equals(elemento))
+              return v;
+            if(v.derecho != null)
+              pila.mete(v.derecho);
+            v = v.izquierdo;
+          }
+          if(pila.esVacia())
+            return null;
+          v = pila.saca();
+        }
     }
 
 
@@ -339,6 +484,11 @@ public abstract class ArbolBinario<T> implements Coleccion<T> {
     }
 
 
+    /* Regresa un arreglo nuevo de vértices del tamaño recibido. */
+    @SuppressWarnings("unchecked") private Vertice[] arregloVertices(int n) {
+        return (Vertice[])new ArbolBinario.Vertice[n];
+    }
+
     /**
      * Convierte el vértice (visto como instancia de {@link
      * VerticeArbolBinario}) en vértice (visto como instancia de {@link
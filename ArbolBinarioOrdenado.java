@@ -1,6 +1,7 @@
 package mx.unam.ciencias.edd;
 
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * <p>Clase para árboles binarios ordenados. Los árboles son genéricos, pero
@@ -56,6 +57,116 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
           }
       }
 
+    /* Clase privada para iteradores de rangos. El iterador baja una vez
+     * desde la raíz hasta el primer elemento del rango, guardando en la pila
+     * los vértices pendientes, y se detiene al rebasar el otro límite. */
+    private class IteradorRango implements Iterator<T> {
+
+        /* Los vértices pendientes; el tope es el siguiente elemento. */
+        private PilaVertices pila;
+        /* Si el recorrido es descendente. */
+        private boolean descendente;
+        /* El límite donde se detiene el recorrido, o null si no hay. */
+        private T limite;
+
+        /* Construye un iterador para el rango [desde, hasta]; los límites
+         * nulos no acotan. */
+        public IteradorRango(T desde, T hasta, boolean descendente) {
+            this.descendente = descendente;
+            pila = new PilaVertices();
+            limite = descendente ? desde : hasta;
+            T inicio = descendente ? hasta : desde;
+            Vertice v = raiz;
+            while (v != null) {
+                int c = (inicio == null) ? (descendente ? 1 : -1)
+                    : inicio.compareTo(v.elemento);
+                if (descendente ? c >= 0 : c <= 0) {
+                    pila.mete(v);
+                    v = descendente ? v.derecho : v.izquierdo;
+                } else {
+                    v = descendente ? v.izquierdo : v.derecho;
+                }
+            }
+        }
+
+        /* Nos dice si hay un elemento siguiente dentro del rango. */
+        @Override public boolean hasNext() {
+            if (pila.esVacia())
+                return false;
+            if (limite == null)
+                return true;
+            int c = pila.mira().elemento.compareTo(limite);
+            return descendente ? c >= 0 : c <= 0;
+        }
+
+        /* Regresa el siguiente elemento del rango. */
+        @Override public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Vertice v = pila.saca();
+            Vertice w = descendente ? v.izquierdo : v.derecho;
+            while (w != null) {
+                pila.mete(w);
+                w = descendente ? w.derecho : w.izquierdo;
+            }
+            return v.elemento;
+        }
+    }
+
+    /* Clase privada para vistas de rangos del árbol. */
+    private class Vista implements VistaRango<T> {
+
+        /* El límite inferior, o null si no hay. */
+        private T desde;
+        /* El límite superior, o null si no hay. */
+        private T hasta;
+
+        /* Construye la vista del rango [desde, hasta]. */
+        public Vista(T desde, T hasta) {
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        /* Regresa un iterador ascendente del rango. */
+        @Override public Iterator<T> iterator() {
+            return new IteradorRango(desde, hasta, false);
+        }
+
+        /* Regresa un iterador descendente del rango. */
+        @Override public Iterator<T> iteradorDescendente() {
+            return new IteradorRango(desde, hasta, true);
+        }
+
+        /* Regresa el rango en orden descendente. */
+        @Override public Iterable<T> descendente() {
+            return this::iteradorDescendente;
+        }
+
+        /* Nos dice si el elemento está en el rango y en el árbol. */
+        @Override public boolean contiene(T elemento) {
+            if (elemento == null)
+                return false;
+            if (desde != null && elemento.compareTo(desde) < 0)
+                return false;
+            if (hasta != null && elemento.compareTo(hasta) > 0)
+                return false;
+            return busca(elemento) != null;
+        }
+
+        /* Regresa el número de elementos en el rango. */
+        @Override public int getElementos() {
+            int n = (hasta == null) ? elementos : cuentaMenores(hasta, true);
+            if (desde != null)
+                n -= cuentaMenores(desde, false);
+            return Math.max(n, 0);
+        }
+
+        /* Nos dice si el rango es vacío. */
+        @Override public boolean esVacia() {
+            return !iterator().hasNext();
+        }
+    }
+
     /**
      * El vértice del último elemento agegado. Este vértice sólo se puede
      * garantizar que existe <em>inmediatamente</em> después de haber agregado
@@ -81,6 +192,71 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
         super(coleccion);
     }
 
+    /**
+     * Agrega en bloque los elementos de la colección a un árbol vacío,
+     * construyendo un árbol perfectamente balanceado: la raíz de cada
+     * subárbol es la mediana de sus elementos. Si los elementos no vienen
+     * ordenados se ordenan primero con {@link Arreglos#quickSort}; si ya lo
+     * están, la construcción es lineal. Después de crear los hijos de cada
+     * vértice se invoca {@link #ajustaConstruido}, para que las subclases
+     * asignen sus datos de balanceo.
+     * @param coleccion la colección con los elementos a agregar.
+     * @throws IllegalArgumentException si la colección contiene a
+     *         <code>null</code>.
+     * @throws IllegalStateException si el árbol no es vacío.
+     */
+    protected void construyeBalanceado(Coleccion<T> coleccion) {
+        if(raiz != null)
+          throw new IllegalStateException("El árbol no es vacío");
+        int n = coleccion.getElementos();
+        if(n == 0)
+          return;
+        @SuppressWarnings("unchecked") T[] arreglo = (T[])new Comparable[n];
+        boolean ordenado = true;
+        int i = 0;
+        for(T e : coleccion){
+          if(e == null)
+            throw new IllegalArgumentException();
+          if(i > 0 && arreglo[i - 1].compareTo(e) > 0)
+            ordenado = false;
+          arreglo[i++] = e;
+        }
+        if(!ordenado)
+          Arreglos.quickSort(arreglo);
+        elementos = n;
+        raiz = construye(arreglo, 0, n - 1, 0);
+    }
+
+    /* Construye el subárbol balanceado con los elementos ordenados en
+     * [a, b], cuya raíz tiene la profundidad recibida. La recursión sólo
+     * llega a la altura del árbol. */
+    private Vertice construye(T[] arreglo, int a, int b, int profundidad) {
+        if(a > b)
+          return null;
+        int m = (a + b) >>> 1;
+        Vertice v = nuevoVertice(arreglo[m]);
+        v.izquierdo = construye(arreglo, a, m - 1, profundidad + 1);
+        v.derecho = construye(arreglo, m + 1, b, profundidad + 1);
+        if(v.izquierdo != null)
+          v.izquierdo.padre = v;
+        if(v.derecho != null)
+          v.derecho.padre = v;
+        v.tamano = b - a + 1;
+        ajustaConstruido(v, profundidad);
+        return v;
+    }
+
+    /**
+     * Ajusta un vértice creado por {@link #construyeBalanceado}. Se invoca
+     * cuando los hijos del vértice ya están construidos y ajustados, y antes
+     * de conectarlo con su padre. Todas las hojas del árbol construido
+     * tienen profundidad ⌊log<sub>2</sub> <em>n</em>⌋ o una menos. La
+     * implementación por omisión no hace nada.
+     * @param vertice el vértice construido.
+     * @param profundidad la profundidad del vértice en el árbol.
+     */
+    protected void ajustaConstruido(Vertice vertice, int profundidad) {}
+
     /**
      * Agrega un nuevo elemento al árbol. El árbol conserva su orden in-order.
      * @param elemento el elemento a agregar.
@@ -97,23 +273,24 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
     }
 
     private void agrega(Vertice x, Vertice y){
-        if(y.get().compareTo(x.get()) <= 0){
-            if(x.izquierdo == null){
-                x.izquierdo = y;
-                y.padre = x;
-                return;
+        while(true){
+            x.tamano++;
+            if(y.get().compareTo(x.get()) <= 0){
+                if(x.izquierdo == null){
+                    x.izquierdo = y;
+                    y.padre = x;
+                    return;
+                }
+                x = x.izquierdo;
             }
-            else
-                agrega(x.izquierdo, y);
-        }
-        else{
-            if(x.derecho == null){
-                x.derecho = y;
-                y.padre = x;
-                return;
+            else{
+                if(x.derecho == null){
+                    x.derecho = y;
+                    y.padre = x;
+                    return;
+                }
+                x = x.derecho;
             }
-            else
-                agrega(x.derecho, y);
         }
     }
 
@@ -153,9 +330,9 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
 
 
     public Vertice maxSubArbol(Vertice x){
-      if(x.derecho == null)
-        return x;
-      return maxSubArbol(x.derecho);
+      while(x.derecho != null)
+        x = x.derecho;
+      return x;
     }
 
 
@@ -169,6 +346,7 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
     protected void eliminaVertice(Vertice vertice) {
       Vertice x = (vertice.izquierdo != null && vertice.derecho == null)
               ? vertice.izquierdo : vertice.derecho;
+      descuentaAncestros(vertice);
       if(x != null)
         x.padre = vertice.padre;
       if(vertice.padre != null){
@@ -181,6 +359,215 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
       raiz = x;
     }
 
+    /**
+     * Resta uno al tamaño de cada ancestro del vértice recibido. Se debe
+     * invocar cuando el vértice se desconecta del árbol, antes de cualquier
+     * giro para rebalancear.
+     * @param vertice el vértice que sale del árbol.
+     */
+    protected void descuentaAncestros(Vertice vertice) {
+      for(Vertice v = vertice.padre; v != null; v = v.padre)
+        v.tamano--;
+    }
+
+    /**
+     * Regresa el <em>k</em>-ésimo elemento del árbol en orden, empezando en
+     * cero. El método baja una sola vez por el árbol usando los tamaños de
+     * los subárboles, así que en árboles balanceados es logarítmico.
+     * @param k el índice del elemento que queremos.
+     * @return el <em>k</em>-ésimo elemento del árbol en orden.
+     * @throws ExcepcionIndiceInvalido si <em>k</em> es menor que cero o mayor
+     *         o igual que el número de elementos en el árbol.
+     */
+    public T selecciona(int k) {
+      if(k < 0 || k >= elementos)
+        throw new ExcepcionIndiceInvalido("Índice inválido: " + k);
+      Vertice v = raiz;
+      while(true){
+        int izquierdos = tamano(v.izquierdo);
+        if(k < izquierdos){
+          v = v.izquierdo;
+        } else if(k == izquierdos){
+          return v.elemento;
+        } else {
+          k -= izquierdos + 1;
+          v = v.derecho;
+        }
+      }
+    }
+
+    /**
+     * Regresa el rango de un elemento: el número de elementos del árbol
+     * estrictamente menores que él. Si el elemento está en el árbol, {@link
+     * #selecciona} con su rango lo regresa. El elemento no tiene que estar en
+     * el árbol.
+     * @param elemento el elemento del que queremos el rango.
+     * @return el número de elementos del árbol menores que el elemento.
+     * @throws IllegalArgumentException si el elemento es <code>null</code>.
+     */
+    public int rango(T elemento) {
+      if(elemento == null)
+        throw new IllegalArgumentException();
+      return cuentaMenores(elemento, false);
+    }
+
+    /**
+     * Regresa el número de elementos del árbol que están entre los dos
+     * elementos recibidos, incluyéndolos.
+     * @param a el límite inferior del intervalo.
+     * @param b el límite superior del intervalo.
+     * @return el número de elementos <em>e</em> del árbol tales que
+     *         <em>a</em> ≤ <em>e</em> ≤ <em>b</em>; cero si <em>a</em> es
+     *         mayor que <em>b</em>.
+     * @throws IllegalArgumentException si alguno de los límites es
+     *         <code>null</code>.
+     */
+    public int cuentaEnRango(T a, T b) {
+      if(a == null || b == null)
+        throw new IllegalArgumentException();
+      if(a.compareTo(b) > 0)
+        return 0;
+      return cuentaMenores(b, true) - cuentaMenores(a, false);
+    }
+
+    /* Cuenta los elementos menores (o menores o iguales) que el recibido,
+     * bajando por un solo camino. Como los iguales a un vértice pueden estar
+     * en cualquiera de sus dos subárboles, basta con saber de qué lado del
+     * vértice cae el elemento. */
+    private int cuentaMenores(T elemento, boolean inclusivo) {
+      int cuenta = 0;
+      Vertice v = raiz;
+      while(v != null){
+        int c = elemento.compareTo(v.elemento);
+        if(c < 0 || (c == 0 && !inclusivo)){
+          v = v.izquierdo;
+        } else {
+          cuenta += tamano(v.izquierdo) + 1;
+          v = v.derecho;
+        }
+      }
+      return cuenta;
+    }
+
+    /**
+     * Regresa una vista de los elementos del árbol que están entre los dos
+     * elementos recibidos, incluyéndolos. Si <em>desde</em> es mayor que
+     * <em>hasta</em>, la vista es vacía.
+     * @param desde el límite inferior del rango.
+     * @param hasta el límite superior del rango.
+     * @return una vista de los elementos <em>e</em> del árbol tales que
+     *         <em>desde</em> ≤ <em>e</em> ≤ <em>hasta</em>.
+     * @throws IllegalArgumentException si alguno de los límites es
+     *         <code>null</code>.
+     */
+    public VistaRango<T> rango(T desde, T hasta) {
+      if(desde == null || hasta == null)
+        throw new IllegalArgumentException();
+      return new Vista(desde, hasta);
+    }
+
+    /**
+     * Regresa una vista de los elementos del árbol mayores o iguales que el
+     * elemento recibido.
+     * @param desde el límite inferior de la vista.
+     * @return una vista de los elementos <em>e</em> del árbol tales que
+     *         <em>desde</em> ≤ <em>e</em>.
+     * @throws IllegalArgumentException si el límite es <code>null</code>.
+     */
+    public VistaRango<T> desde(T desde) {
+      if(desde == null)
+        throw new IllegalArgumentException();
+      return new Vista(desde, null);
+    }
+
+    /**
+     * Regresa una vista de los elementos del árbol menores o iguales que el
+     * elemento recibido.
+     * @param hasta el límite superior de la vista.
+     * @return una vista de los elementos <em>e</em> del árbol tales que
+     *         <em>e</em> ≤ <em>hasta</em>.
+     * @throws IllegalArgumentException si el límite es <code>null</code>.
+     */
+    public VistaRango<T> hasta(T hasta) {
+      if(hasta == null)
+        throw new IllegalArgumentException();
+      return new Vista(null, hasta);
+    }
+
+    /**
+     * Regresa el mayor elemento del árbol que es menor o igual que el
+     * recibido.
+     * @param elemento el elemento de referencia.
+     * @return el mayor elemento del árbol menor o igual que el recibido, o
+     *         <code>null</code> si no hay ninguno.
+     * @throws IllegalArgumentException si el elemento es <code>null</code>.
+     */
+    public T piso(T elemento) {
+      return cota(elemento, false, true);
+    }
+
+    /**
+     * Regresa el menor elemento del árbol que es mayor o igual que el
+     * recibido.
+     * @param elemento el elemento de referencia.
+     * @return el menor elemento del árbol mayor o igual que el recibido, o
+     *         <code>null</code> si no hay ninguno.
+     * @throws IllegalArgumentException si el elemento es <code>null</code>.
+     */
+    public T techo(T elemento) {
+      return cota(elemento, true, true);
+    }
+
+    /**
+     * Regresa el menor elemento del árbol que es estrictamente mayor que el
+     * recibido.
+     * @param elemento el elemento de referencia.
+     * @return el menor elemento del árbol mayor que el recibido, o
+     *         <code>null</code> si no hay ninguno.
+     * @throws IllegalArgumentException si el elemento es <code>null</code>.
+     */
+    public T sucesor(T elemento) {
+      return cota(elemento, true, false);
+    }
+
+    /**
+     * Regresa el mayor elemento del árbol que es estrictamente menor que el
+     * recibido.
+     * @param elemento el elemento de referencia.
+     * @return el mayor elemento del árbol menor que el recibido, o
+     *         <code>null</code> si no hay ninguno.
+     * @throws IllegalArgumentException si el elemento es <code>null</code>.
+     */
+    public T predecesor(T elemento) {
+      return cota(elemento, false, false);
+    }
+
+    /* Busca el elemento más cercano al recibido por arriba (o por abajo),
+     * aceptando o no al elemento mismo, bajando por un solo camino. */
+    private T cota(T elemento, boolean arriba, boolean inclusivo) {
+      if(elemento == null)
+        throw new IllegalArgumentException();
+      T cota = null;
+      Vertice v = raiz;
+      while(v != null){
+        int c = elemento.compareTo(v.elemento);
+        if(c == 0 && inclusivo)
+          return v.elemento;
+        if(arriba ? c < 0 : c > 0){
+          cota = v.elemento;
+          v = arriba ? v.izquierdo : v.derecho;
+        } else {
+          v = arriba ? v.derecho : v.izquierdo;
+        }
+      }
+      return cota;
+    }
+
+    /* Regresa el tamaño del subárbol del vértice, o cero si es nulo. */
+    private int tamano(Vertice v) {
+      return (v == null) ? 0 : v.tamano;
+    }
+
     /**
      * Busca un elemento en el árbol recorriéndolo in-order. Si lo encuentra,
      * regresa el vértice que lo contiene; si no, regresa <tt>null</tt>.
@@ -196,14 +583,15 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
 
 
      public VerticeArbolBinario<T> busca(T elemento, VerticeArbolBinario<T> vertice) {
-       if(elemento == null || vertice == null)
+       if(elemento == null)
          return null;
-       if(elemento.compareTo(vertice.get()) == 0)
-         return vertice;
-       else if(elemento.compareTo(vertice.get()) > 0 && vertice.hayDerecho())
-         return busca(elemento, vertice.derecho());
-       else if (vertice.hayIzquierdo())
-         return busca(elemento, vertice.izquierdo());
+       Vertice v = vertice(vertice);
+       while(v != null){
+         int c = elemento.compareTo(v.elemento);
+         if(c == 0)
+           return v;
+         v = (c > 0) ? v.derecho : v.izquierdo;
+       }
        return null;
      }
 
@@ -245,6 +633,8 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
         if(aux_p.derecho != null)
           aux_p.derecho.padre = aux_q;
         aux_p.derecho = aux_q;
+        aux_p.tamano = aux_q.tamano;
+        aux_q.tamano = 1 + tamano(aux_q.izquierdo) + tamano(aux_q.derecho);
       }
     }
 
@@ -271,6 +661,8 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
           if(aux_p.izquierdo != null)
             aux_p.izquierdo.padre = aux_q;
           aux_p.izquierdo = aux_q;
+          aux_p.tamano = aux_q.tamano;
+          aux_q.tamano = 1 + tamano(aux_q.izquierdo) + tamano(aux_q.derecho);
         }
     }
 
@@ -285,9 +677,20 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
 
     private void dfsPreOrder(AccionVerticeArbolBinario<T> accion, Vertice n){
       if(n == null) return;
-      accion.actua(n);
-      dfsPreOrder(accion, n.izquierdo);
-      dfsPreOrder(accion, n.derecho);
+      /* Bajamos por la izquierda y sólo guardamos los derechos. */
+      PilaVertices pila = new PilaVertices();
+      Vertice v = n;
+      while(true){
+        while(v != null){
+          accion.actua(v);
+          if(v.derecho != null)
+            pila.mete(v.derecho);
+          v = v.izquierdo;
+        }
+        if(pila.esVacia())
+          return;
+        v = pila.saca();
+      }
     }
 
     /**
@@ -300,10 +703,17 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
     }
 
     private void dfsInOrder(AccionVerticeArbolBinario<T> accion, Vertice n){
-      if(n == null) return;
-      dfsInOrder(accion, n.izquierdo);
-      accion.actua(n);
-      dfsInOrder(accion, n.derecho);
+      PilaVertices pila = new PilaVertices();
+      Vertice v = n;
+      while(v != null || !pila.esVacia()){
+        while(v != null){
+          pila.mete(v);
+          v = v.izquierdo;
+        }
+        v = pila.saca();
+        accion.actua(v);
+        v = v.derecho;
+      }
     }
 
     /**
@@ -317,9 +727,32 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
 
     private void dfsPostOrder(AccionVerticeArbolBinario<T> accion, Vertice n){
       if(n == null) return;
-      dfsPostOrder(accion, n.izquierdo);
-      dfsPostOrder(accion, n.derecho);
-      accion.actua(n);
+      PilaVertices pila = new PilaVertices();
+      Vertice v = n;
+      while(true){
+        /* Bajamos hasta el primer vértice en post-order del subárbol. */
+        while(true){
+          pila.mete(v);
+          if(v.izquierdo != null)
+            v = v.izquierdo;
+          else if(v.derecho != null)
+            v = v.derecho;
+          else
+            break;
+        }
+        /* Subimos visitando hasta encontrar un derecho sin recorrer. */
+        while(true){
+          v = pila.saca();
+          accion.actua(v);
+          if(pila.esVacia())
+            return;
+          Vertice padre = pila.mira();
+          if(padre.izquierdo == v && padre.derecho != null){
+            v = padre.derecho;
+            break;
+          }
+        }
+      }
     }
 
     /**
@@ -47,21 +47,15 @@ public class ArbolRojinegro<T extends Comparable<T>>
         }
 
         /**
-         * Compara el vértice con otro objeto. La comparación es
-         * <em>recursiva</em>.
-         * @param o el objeto con el cual se comparará el vértice.
-         * @return <code>true</code> si el objeto es instancia de la clase
-         *         {@link VerticeRojinegro}, su elemento es igual al elemento de
-         *         éste vértice, los descendientes de ambos son recursivamente
-         *         iguales, y los colores son iguales; <code>false</code> en
-         *         otro caso.
+         * Nos dice si el vértice tiene el mismo contenido que otro vértice
+         * rojinegro, sin comparar a sus descendientes.
+         * @param vertice el vértice con el cual se comparará éste.
+         * @return <code>true</code> si los elementos y los colores de ambos
+         *         vértices son iguales; <code>false</code> en otro caso.
          */
-        @Override public boolean equals(Object o) {
-            if (o == null || getClass() != o.getClass())
-                return false;
-            @SuppressWarnings("unchecked")
-                VerticeRojinegro vertice = (VerticeRojinegro)o;
-            return (color == vertice.color && super.equals(o));
+        @Override protected boolean mismoContenido(Vertice vertice) {
+            return color == verticeRojinegro(vertice).color &&
+                super.mismoContenido(vertice);
         }
     }
 
@@ -75,12 +69,15 @@ public class ArbolRojinegro<T extends Comparable<T>>
 
     /**
      * Construye un árbol rojinegro a partir de una colección. El árbol
-     * rojinegro tiene los mismos elementos que la colección recibida.
+     * rojinegro tiene los mismos elementos que la colección recibida. El árbol
+     * se construye en bloque, sin giros: si la colección está ordenada la
+     * construcción es lineal, y si no, se ordena primero.
      * @param coleccion la colección a partir de la cual creamos el árbol
      *        rojinegro.
      */
     public ArbolRojinegro(Coleccion<T> coleccion) {
-      super(coleccion);
+      super();
+      construyeBalanceado(coleccion);
     }
 
     /**
@@ -93,6 +90,22 @@ public class ArbolRojinegro<T extends Comparable<T>>
       return new VerticeRojinegro(elemento);
     }
 
+    /**
+     * Colorea un vértice construido en bloque. Los vértices del último nivel
+     * son ROJOS (salvo una raíz sola) y los demás NEGROS; como todas las
+     * hojas están en el último nivel o en el anterior, todos los caminos a
+     * hojas tienen el mismo número de vértices NEGROS.
+     * @param vertice el vértice construido.
+     * @param profundidad la profundidad del vértice en el árbol.
+     */
+    @Override protected void ajustaConstruido(Vertice vertice,
+                                              int profundidad) {
+      int ultimoNivel = 31 - Integer.numberOfLeadingZeros(elementos);
+      verticeRojinegro(vertice).color =
+        (profundidad == ultimoNivel && profundidad > 0)
+        ? Color.ROJO : Color.NEGRO;
+    }
+
     /**
      * Regresa el color del vértice rojinegro.
      * @param vertice el vértice del que queremos el color.
@@ -225,6 +238,8 @@ public class ArbolRojinegro<T extends Comparable<T>>
         if(vertice.izquierdo == null && vertice.derecho == null){
             fantasma = verticeRojinegro(nuevoVertice(null));
             fantasma.color = Color.NEGRO;
+            /** El fantasma no es un elemento: no cuenta en los tamaños */
+            fantasma.tamano = 0;
             fantasma.padre = vertice;
             vertice.izquierdo = fantasma;
         }
@@ -232,6 +247,7 @@ public class ArbolRojinegro<T extends Comparable<T>>
         VerticeRojinegro hijo;
         hijo = obtenerHijo(vertice);
         /** Desconectamos el vértice a eliminar del resto del árbol */
+        descuentaAncestros(vertice);
         subirHijo(vertice);
         /** 3 casos
          * 1) El hijo es rojo y el vértice negro. Coloreamos al hijo de negro y terminamos.
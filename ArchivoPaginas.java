@@ -0,0 +1,786 @@
+package mx.unam.ciencias.edd;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * <p>Clase para archivos de páginas con bitácora. El archivo se divide en
+ * páginas del mismo tamaño, que se leen y escriben por medio de un caché de
+ * marcos acotado: cuando se necesita una página que no está en el caché, se
+ * reemplaza la usada hace más tiempo (LRU).</p>
+ *
+ * <p>Las páginas sólo se modifican dentro de transacciones. Al confirmar una
+ * transacción, las imágenes completas de las páginas que modificó se
+ * agregan a una bitácora (el archivo de datos con el sufijo
+ * <code>.bitacora</code>), junto con el tamaño de página y una dispersión
+ * xxHash64 que permite reconocer registros incompletos. Una página
+ * modificada sólo se escribe en el archivo de datos después de que su
+ * registro está en disco, y la bitácora sólo se vacía en los puntos de
+ * control, después de que todas las páginas modificadas están en disco. Al
+ * abrir el archivo se vuelven a aplicar las transacciones completas de la
+ * bitácora, por lo que si el programa o el sistema terminan a la mitad, el
+ * archivo queda como después de la última transacción confirmada, aunque
+ * alguna página se haya escrito a medias.</p>
+ *
+ * <p>La página 0 guarda el encabezado del archivo en sus primeros {@link
+ * #ENCABEZADO} bytes; el resto de la página está disponible para quien use
+ * el archivo. Las páginas liberadas se encadenan en una lista y se reusan
+ * antes de hacer crecer el archivo.</p>
+ */
+public class ArchivoPaginas implements AutoCloseable {
+
+    /* Clase privada para los marcos del caché. */
+    private class Marco {
+        /* La página en el marco, o -1 si está vacío. */
+        public int pagina;
+        /* Los bytes de la página. */
+        public byte[] bytes;
+        /* El búfer sobre los bytes de la página. */
+        public ByteBuffer bufer;
+        /* Si la página es distinta de la del archivo de datos. */
+        public boolean sucio;
+        /* Si la página se modificó en la transacción en curso. */
+        public boolean modificado;
+        /* Si la página no puede salir del caché hasta que termine la
+         * transacción en curso. */
+        public boolean fijo;
+        /* El marco usado inmediatamente antes y después de éste. */
+        public Marco anterior, siguiente;
+
+        /* Construye un marco vacío. */
+        public Marco() {
+            pagina = -1;
+            bytes = new byte[tamano];
+            bufer = ByteBuffer.wrap(bytes);
+            anterior = siguiente = this;
+        }
+    }
+
+    /** El número de bytes de la página 0 reservados para el encabezado. */
+    public static final int ENCABEZADO = 32;
+
+    /** El tamaño predeterminado de las páginas. */
+    public static final int TAMANO_PREDETERMINADO = 4096;
+
+    /** El número predeterminado de marcos del caché. */
+    public static final int MARCOS_PREDETERMINADOS = 256;
+
+    /* El número mágico del archivo; "EDDP" en ASCII. */
+    private static final int MAGIA = 0x45444450;
+    /* El número mágico de los registros de la bitácora; "EDDT" en ASCII. */
+    private static final int MAGIA_TRANSACCION = 0x45444454;
+    /* El número de bytes al inicio de cada registro de la bitácora: el
+     * número mágico, el tamaño de página y el número de páginas. */
+    private static final int CABEZA_REGISTRO = 12;
+    /* La versión del formato. */
+    private static final int VERSION = 1;
+    /* El mínimo tamaño de las páginas. */
+    private static final int MINIMO_TAMANO = 512;
+    /* El máximo tamaño de las páginas. */
+    private static final int MAXIMO_TAMANO = 1 << 20;
+    /* El mínimo número de marcos del caché. */
+    private static final int MINIMO_MARCOS = 16;
+    /* El mínimo tamaño de la bitácora que provoca un punto de control. */
+    private static final long MINIMO_BITACORA = 1 << 22;
+
+    /* El archivo de datos. */
+    private FileChannel datos;
+    /* La bitácora. */
+    private FileChannel bitacora;
+    /* El tamaño de las páginas. */
+    private int tamano;
+    /* Si cada confirmación espera a que la bitácora esté en disco. */
+    private boolean sincroniza;
+    /* Los marcos del caché por página. */
+    private Diccionario<Integer, Marco> residentes;
+    /* Centinela de la lista de marcos, del usado más recientemente al usado
+     * hace más tiempo. */
+    private Marco lru;
+    /* Los marcos fijos en la transacción en curso. */
+    private Marco[] fijos;
+    /* El número de marcos fijos. */
+    private int nfijos;
+    /* Si hay una transacción en curso. */
+    private boolean transaccion;
+    /* El número de páginas del archivo. */
+    private int paginas;
+    /* La primera página de la lista de páginas libres, o 0 si no hay. */
+    private int libre;
+    /* El final de las páginas escritas sin bitácora que no se han
+     * incorporado. */
+    private int reservadas;
+    /* El tamaño de la bitácora. */
+    private long finBitacora;
+    /* El tamaño de la bitácora que provoca un punto de control. */
+    private long limiteBitacora;
+    /* Si la bitácora tiene registros que tal vez no están en disco. */
+    private boolean bitacoraPendiente;
+    /* Búfer para los registros de la bitácora. */
+    private byte[] registro;
+    /* Si el archivo está cerrado, o inservible por un error. */
+    private boolean cerrado;
+
+    /**
+     * Abre o crea un archivo de páginas con el tamaño de página y el número
+     * de marcos predeterminados, que espera a que cada transacción esté en
+     * disco.
+     * @param archivo la ruta del archivo de datos.
+     * @throws IOException si ocurre un error al abrir o recuperar el
+     *         archivo, o si no es un archivo de páginas con el tamaño de
+     *         página predeterminado.
+     */
+    public ArchivoPaginas(Path archivo) throws IOException {
+        this(archivo, TAMANO_PREDETERMINADO, MARCOS_PREDETERMINADOS, true);
+    }
+
+    /**
+     * Abre o crea un archivo de páginas. Si la bitácora tiene transacciones
+     * confirmadas, se aplican al archivo de datos antes de regresar.
+     * @param archivo la ruta del archivo de datos.
+     * @param tamano el tamaño de las páginas, entre 512 bytes y 1 MiB.
+     * @param marcos el número de marcos del caché; al menos 16. Si una
+     *               transacción usa más páginas que marcos, el caché crece
+     *               para que quepan.
+     * @param sincroniza si cada confirmación debe esperar a que la bitácora
+     *                   esté en disco. Si es <code>false</code>, un corte de
+     *                   energía puede perder las últimas transacciones
+     *                   confirmadas, pero el archivo sigue quedando en el
+     *                   estado de alguna transacción confirmada.
+     * @throws IllegalArgumentException si el tamaño o el número de marcos
+     *         son inválidos.
+     * @throws IOException si ocurre un error al abrir o recuperar el
+     *         archivo, o si no es un archivo de páginas del tamaño recibido.
+     */
+    public ArchivoPaginas(Path archivo, int tamano, int marcos,
+                          boolean sincroniza) throws IOException {
+        if (tamano < MINIMO_TAMANO || tamano > MAXIMO_TAMANO)
+            throw new IllegalArgumentException("Tamaño inválido: " + tamano);
+        if (marcos < MINIMO_MARCOS)
+            throw new IllegalArgumentException("Marcos inválidos: " + marcos);
+        this.tamano = tamano;
+        this.sincroniza = sincroniza;
+        residentes = new Diccionario<Integer, Marco>(2 * marcos);
+        lru = new Marco();
+        for (int i = 0; i < marcos; i++)
+            alFrente(new Marco());
+        fijos = new Marco[MINIMO_MARCOS];
+        limiteBitacora = Math.max(MINIMO_BITACORA, 2L * marcos * tamano);
+        registro = new byte[CABEZA_REGISTRO + 8 + tamano];
+        datos = FileChannel.open(archivo, StandardOpenOption.CREATE,
+                                 StandardOpenOption.READ,
+                                 StandardOpenOption.WRITE);
+        try {
+            Path b = archivo.resolveSibling(archivo.getFileName() +
+                                            ".bitacora");
+            bitacora = FileChannel.open(b, StandardOpenOption.CREATE,
+                                        StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE);
+            recupera();
+            if (datos.size() == 0) {
+                paginas = 1;
+                comienza();
+                ByteBuffer e = escribe(0);
+                e.putInt(0, MAGIA);
+                e.putInt(4, VERSION);
+                e.putInt(8, tamano);
+                escribeEncabezado();
+                confirma();
+                puntoDeControl();
+            } else {
+                paginas = 1;
+                ByteBuffer e = lee(0);
+                if (e.getInt(0) != MAGIA)
+                    throw new IOException("El archivo no es de páginas");
+                if (e.getInt(4) != VERSION)
+                    throw new IOException("Versión no soportada: " +
+                                          e.getInt(4));
+                if (e.getInt(8) != tamano)
+                    throw new IOException("Tamaño de página distinto: " +
+                                          e.getInt(8));
+                paginas = e.getInt(12);
+                libre = e.getInt(16);
+                if (paginas < 1 || libre < 0 || libre >= paginas)
+                    throw new IOException("Encabezado inválido");
+            }
+        } catch (IOException | RuntimeException e) {
+            cierraCanales();
+            throw e;
+        }
+    }
+
+    /**
+     * Comienza una transacción. Las páginas que se lean o escriban durante
+     * la transacción se quedan en el caché hasta que se confirme.
+     * @throws IllegalStateException si ya hay una transacción en curso, o si
+     *         el archivo está cerrado.
+     */
+    public void comienza() {
+        verificaAbierto();
+        if (transaccion)
+            throw new IllegalStateException("Ya hay una transacción en curso");
+        transaccion = true;
+    }
+
+    /**
+     * Confirma la transacción en curso, agregando a la bitácora las páginas
+     * que modificó. Si la bitácora crece demasiado, hace un punto de
+     * control.
+     * @throws IllegalStateException si no hay una transacción en curso.
+     * @throws IOException si ocurre un error al escribir; el archivo queda
+     *         inservible y hay que volver a abrirlo.
+     */
+    public void confirma() throws IOException {
+        verificaTransaccion();
+        try {
+            int k = 0;
+            for (int i = 0; i < nfijos; i++)
+                if (fijos[i].modificado)
+                    k++;
+            if (k > 0) {
+                int longitud = CABEZA_REGISTRO + 8 + k * (4 + tamano);
+                if (registro.length < longitud)
+                    registro = new byte[Math.max(longitud,
+                                                 2 * registro.length)];
+                ByteBuffer r = ByteBuffer.wrap(registro, 0, longitud);
+                r.putInt(MAGIA_TRANSACCION).putInt(tamano).putInt(k);
+                for (int i = 0; i < nfijos; i++)
+                    if (fijos[i].modificado)
+                        r.putInt(fijos[i].pagina).put(fijos[i].bytes);
+                r.putLong(Dispersores.dispersaXXH64(registro, 0,
+                                                    longitud - 8, 0));
+                r.flip();
+                escribeCompleto(bitacora, r, finBitacora);
+                finBitacora += longitud;
+                if (sincroniza)
+                    bitacora.force(false);
+                else
+                    bitacoraPendiente = true;
+            }
+            for (int i = 0; i < nfijos; i++) {
+                fijos[i].modificado = fijos[i].fijo = false;
+                fijos[i] = null;
+            }
+            nfijos = 0;
+            transaccion = false;
+            if (finBitacora > limiteBitacora)
+                puntoDeControl();
+        } catch (IOException e) {
+            throw falla(e);
+        }
+    }
+
+    /**
+     * Regresa una página para leerla. Dentro de una transacción, el búfer es
+     * válido hasta que se confirme; fuera de ellas, sólo hasta la siguiente
+     * llamada a un método del archivo. El búfer debe usarse con accesos
+     * absolutos, y su arreglo se puede obtener con {@link ByteBuffer#array}.
+     * @param pagina el número de la página.
+     * @return un búfer con los bytes de la página.
+     * @throws ExcepcionIndiceInvalido si la página no está en el archivo.
+     * @throws IOException si ocurre un error al leer; el archivo queda
+     *         inservible y hay que volver a abrirlo.
+     */
+    public ByteBuffer lee(int pagina) throws IOException {
+        verificaAbierto();
+        verificaPagina(pagina);
+        return marco(pagina, true).bufer;
+    }
+
+    /**
+     * Regresa una página para modificarla en la transacción en curso. El
+     * búfer es válido hasta que se confirme la transacción.
+     * @param pagina el número de la página.
+     * @return un búfer con los bytes de la página.
+     * @throws IllegalStateException si no hay una transacción en curso.
+     * @throws ExcepcionIndiceInvalido si la página no está en el archivo.
+     * @throws IOException si ocurre un error al leer; el archivo queda
+     *         inservible y hay que volver a abrirlo.
+     */
+    public ByteBuffer escribe(int pagina) throws IOException {
+        verificaTransaccion();
+        verificaPagina(pagina);
+        Marco m = marco(pagina, true);
+        m.modificado = m.sucio = true;
+        return m.bufer;
+    }
+
+    /**
+     * Asigna una página en la transacción en curso, reusando una página
+     * libre si la hay. La página asignada tiene puros ceros y se puede
+     * modificar hasta que se confirme la transacción.
+     * @return el número de la página asignada.
+     * @throws IllegalStateException si no hay una transacción en curso.
+     * @throws IOException si ocurre un error al leer o escribir; el archivo
+     *         queda inservible y hay que volver a abrirlo.
+     */
+    public int asigna() throws IOException {
+        verificaTransaccion();
+        int pagina;
+        if (libre != 0) {
+            pagina = libre;
+            libre = escribe(pagina).getInt(0);
+        } else {
+            pagina = paginas++;
+            marco(pagina, false);
+        }
+        Marco m = residentes.get(pagina);
+        Arrays.fill(m.bytes, (byte)0);
+        m.modificado = m.sucio = true;
+        escribeEncabezado();
+        return pagina;
+    }
+
+    /**
+     * Libera una página en la transacción en curso, para que se reuse en
+     * asignaciones posteriores.
+     * @param pagina el número de la página.
+     * @throws IllegalStateException si no hay una transacción en curso.
+     * @throws ExcepcionIndiceInvalido si la página es la 0 o no está en el
+     *         archivo.
+     * @throws IOException si ocurre un error al leer o escribir; el archivo
+     *         queda inservible y hay que volver a abrirlo.
+     */
+    public void libera(int pagina) throws IOException {
+        verificaTransaccion();
+        if (pagina == 0)
+            throw new ExcepcionIndiceInvalido("La página 0 no se libera");
+        ByteBuffer b = escribe(pagina);
+        Arrays.fill(b.array(), (byte)0);
+        b.putInt(0, libre);
+        libre = pagina;
+        escribeEncabezado();
+    }
+
+    /**
+     * Libera todas las páginas salvo la 0 en la transacción en curso. Las
+     * páginas se descartan sin leerlas, y el archivo de datos se recorta en
+     * el siguiente punto de control.
+     * @throws IllegalStateException si no hay una transacción en curso, o si
+     *         la transacción ya usó otras páginas además de la 0.
+     * @throws IOException si ocurre un error al leer o escribir; el archivo
+     *         queda inservible y hay que volver a abrirlo.
+     */
+    public void vacia() throws IOException {
+        verificaTransaccion();
+        for (int i = 0; i < nfijos; i++)
+            if (fijos[i].pagina != 0)
+                throw new IllegalStateException("La transacción ya usó " +
+                                                "otras páginas");
+        for (Marco m = lru.siguiente; m != lru; m = m.siguiente)
+            if (m.pagina > 0) {
+                residentes.elimina(m.pagina);
+                m.pagina = -1;
+                m.sucio = false;
+            }
+        paginas = 1;
+        libre = 0;
+        escribeEncabezado();
+    }
+
+    /**
+     * Escribe páginas directamente en el archivo de datos, sin pasar por el
+     * caché ni por la bitácora. Las páginas deben estar más allá del final
+     * del archivo, por lo que no son parte de él hasta que una transacción
+     * las incorpore con {@link #incorpora}; si el programa termina antes, las
+     * escrituras simplemente se pierden. Sirve para cargar muchas páginas
+     * nuevas sin escribirlas dos veces. Ninguna transacción debe asignar
+     * páginas entre la escritura y la incorporación, porque asignaría las
+     * páginas escritas. Si la bitácora no está vacía, antes se hace un punto
+     * de control: la bitácora puede tener imágenes de páginas más allá del
+     * final del archivo, de antes de {@link #vacia}, que al recuperar el
+     * archivo se escribirían sobre las páginas nuevas.
+     * @param pagina el número de la primera página.
+     * @param bloque los bytes de las páginas; su longitud restante debe ser
+     *               un múltiplo del tamaño de página.
+     * @throws IllegalStateException si hay una transacción en curso.
+     * @throws IllegalArgumentException si la longitud del bloque no es un
+     *         múltiplo del tamaño de página.
+     * @throws ExcepcionIndiceInvalido si la primera página no está más allá
+     *         del final del archivo.
+     * @throws IOException si ocurre un error al escribir; el archivo queda
+     *         inservible y hay que volver a abrirlo.
+     */
+    public void escribeSinBitacora(int pagina, ByteBuffer bloque)
+        throws IOException {
+        verificaAbierto();
+        if (transaccion)
+            throw new IllegalStateException("Hay una transacción en curso");
+        if (bloque.remaining() % tamano != 0)
+            throw new IllegalArgumentException("Bloque incompleto");
+        if (pagina < paginas)
+            throw new ExcepcionIndiceInvalido("Página en el archivo: " +
+                                              pagina);
+        if (finBitacora > 0)
+            puntoDeControl();
+        int fin = pagina + bloque.remaining() / tamano;
+        try {
+            escribeCompleto(datos, bloque, (long)pagina * tamano);
+            reservadas = Math.max(reservadas, fin);
+        } catch (IOException e) {
+            throw falla(e);
+        }
+    }
+
+    /**
+     * Incorpora al archivo, en la transacción en curso, páginas escritas
+     * antes con {@link #escribeSinBitacora}. Las páginas se fuerzan a disco
+     * antes de que la transacción pueda confirmarse.
+     * @param cuantas el número de páginas a incorporar.
+     * @return el número de la primera página incorporada.
+     * @throws IllegalStateException si no hay una transacción en curso.
+     * @throws IllegalArgumentException si el número de páginas es negativo.
+     * @throws IOException si ocurre un error al escribir; el archivo queda
+     *         inservible y hay que volver a abrirlo.
+     */
+    public int incorpora(int cuantas) throws IOException {
+        verificaTransaccion();
+        if (cuantas < 0)
+            throw new IllegalArgumentException("Páginas inválidas: " +
+                                               cuantas);
+        try {
+            datos.force(false);
+        } catch (IOException e) {
+            throw falla(e);
+        }
+        int primera = paginas;
+        paginas += cuantas;
+        if (reservadas <= paginas)
+            reservadas = 0;
+        escribeEncabezado();
+        return primera;
+    }
+
+    /**
+     * Lee de una vez al caché las páginas en el intervalo [desde, hasta) que
+     * no estén ya en él, recortando primero las que sí estén en los
+     * extremos. Sirve para adelantar lecturas secuenciales; las páginas
+     * leídas no quedan fijas aunque haya una transacción en curso.
+     * @param desde la primera página del intervalo.
+     * @param hasta la página siguiente a la última del intervalo.
+     * @throws IOException si ocurre un error al leer o escribir; el archivo
+     *         queda inservible y hay que volver a abrirlo.
+     */
+    public void precarga(int desde, int hasta) throws IOException {
+        verificaAbierto();
+        desde = Math.max(desde, 0);
+        hasta = Math.min(hasta, paginas);
+        while (desde < hasta && residentes.contiene(desde))
+            desde++;
+        while (desde < hasta && residentes.contiene(hasta - 1))
+            hasta--;
+        if (desde == hasta)
+            return;
+        try {
+            /* Primero se apartan los marcos: desocuparlos puede escribir en
+             * el archivo páginas sucias del intervalo, y el bloque se debe
+             * leer después para no instalar versiones viejas. */
+            int k = 0;
+            for (int p = desde; p < hasta; p++)
+                if (!residentes.contiene(p))
+                    k++;
+            Marco[] apartados = new Marco[k];
+            for (int i = 0; i < k; i++) {
+                apartados[i] = victima();
+                apartados[i].fijo = true;
+            }
+            ByteBuffer bloque = ByteBuffer.allocate((hasta - desde) * tamano);
+            leeCompleto(datos, bloque, (long)desde * tamano);
+            for (int p = desde, i = 0; p < hasta && i < k; p++) {
+                if (residentes.contiene(p))
+                    continue;
+                Marco m = apartados[i++];
+                System.arraycopy(bloque.array(), (p - desde) * tamano,
+                                 m.bytes, 0, tamano);
+                m.pagina = p;
+                residentes.agrega(p, m);
+                alFrente(m);
+            }
+            for (Marco m : apartados)
+                m.fijo = false;
+        } catch (IOException e) {
+            throw falla(e);
+        }
+    }
+
+    /**
+     * Nos dice si una página está en el caché.
+     * @param pagina el número de la página.
+     * @return <code>true</code> si la página está en el caché,
+     *         <code>false</code> en otro caso.
+     */
+    public boolean enCache(int pagina) {
+        return residentes.contiene(pagina);
+    }
+
+    /**
+     * Hace un punto de control: escribe en el archivo de datos todas las
+     * páginas modificadas, en orden, y vacía la bitácora.
+     * @throws IllegalStateException si hay una transacción en curso.
+     * @throws IOException si ocurre un error al escribir; el archivo queda
+     *         inservible y hay que volver a abrirlo.
+     */
+    public void puntoDeControl() throws IOException {
+        verificaAbierto();
+        if (transaccion)
+            throw new IllegalStateException("Hay una transacción en curso");
+        if (finBitacora == 0)
+            return;
+        try {
+            int k = 0;
+            for (Marco m = lru.siguiente; m != lru; m = m.siguiente)
+                if (m.sucio)
+                    k++;
+            Marco[] sucios = new Marco[k];
+            long[] orden = new long[k];
+            k = 0;
+            for (Marco m = lru.siguiente; m != lru; m = m.siguiente)
+                if (m.sucio) {
+                    orden[k] = ((long)m.pagina << 32) | k;
+                    sucios[k++] = m;
+                }
+            Arrays.sort(orden);
+            for (long o : orden)
+                escribePagina(sucios[(int)o]);
+            long fin = (long)Math.max(paginas, reservadas) * tamano;
+            if (datos.size() > fin)
+                datos.truncate(fin);
+            datos.force(true);
+            bitacora.truncate(0);
+            bitacora.force(true);
+            finBitacora = 0;
+            bitacoraPendiente = false;
+        } catch (IOException e) {
+            throw falla(e);
+        }
+    }
+
+    /**
+     * Regresa el número de páginas del archivo, incluyendo la 0 y las
+     * libres.
+     * @return el número de páginas del archivo.
+     */
+    public int getPaginas() {
+        return paginas;
+    }
+
+    /**
+     * Regresa el tamaño de las páginas.
+     * @return el tamaño de las páginas.
+     */
+    public int getTamanoPagina() {
+        return tamano;
+    }
+
+    /**
+     * Cierra el archivo, haciendo un punto de control. Si hay una
+     * transacción en curso, o si el archivo quedó inservible por un error,
+     * sólo se cierran los canales: la transacción se descarta, y la
+     * bitácora se aplicará la siguiente vez que se abra el archivo.
+     * @throws IOException si ocurre un error al escribir o cerrar.
+     */
+    @Override public void close() throws IOException {
+        try {
+            if (!cerrado && !transaccion)
+                puntoDeControl();
+        } finally {
+            cerrado = true;
+            cierraCanales();
+        }
+    }
+
+    /* Aplica al archivo de datos las transacciones completas de la
+     * bitácora, y la vacía. Si un registro completo es de otro tamaño de
+     * página, lanza una excepción sin vaciar la bitácora. */
+    private void recupera() throws IOException {
+        long fin = bitacora.size();
+        long posicion = 0;
+        boolean aplicadas = false;
+        ByteBuffer cabeza = ByteBuffer.allocate(CABEZA_REGISTRO);
+        while (posicion + CABEZA_REGISTRO + 8 <= fin) {
+            cabeza.clear();
+            leeCompleto(bitacora, cabeza, posicion);
+            int t = cabeza.getInt(4);
+            int k = cabeza.getInt(8);
+            if (cabeza.getInt(0) != MAGIA_TRANSACCION ||
+                t < MINIMO_TAMANO || t > MAXIMO_TAMANO || k <= 0 ||
+                k > (fin - posicion - CABEZA_REGISTRO - 8) / (4 + t))
+                break;
+            int longitud = CABEZA_REGISTRO + 8 + k * (4 + t);
+            if (registro.length < longitud)
+                registro = new byte[longitud];
+            ByteBuffer r = ByteBuffer.wrap(registro, 0, longitud);
+            leeCompleto(bitacora, r, posicion);
+            if (r.getLong(longitud - 8) !=
+                Dispersores.dispersaXXH64(registro, 0, longitud - 8, 0))
+                break;
+            if (t != tamano)
+                throw new IOException("Tamaño de página distinto: " + t);
+            for (int i = 0, o = CABEZA_REGISTRO; i < k;
+                 i++, o += 4 + tamano) {
+                int pagina = r.getInt(o);
+                escribeCompleto(datos, ByteBuffer.wrap(registro, o + 4, tamano),
+                                (long)pagina * tamano);
+            }
+            posicion += longitud;
+            aplicadas = true;
+        }
+        if (aplicadas)
+            datos.force(true);
+        if (fin > 0) {
+            bitacora.truncate(0);
+            bitacora.force(true);
+        }
+    }
+
+    /* Regresa el marco de la página, cargándola si no está en el caché; si
+     * lee es false, no la lee del archivo de datos porque está más allá de
+     * su final. */
+    private Marco marco(int pagina, boolean lee) throws IOException {
+        Marco m = residentes.busca(pagina);
+        if (m == null) {
+            try {
+                m = victima();
+                if (lee) {
+                    m.bufer.clear();
+                    leeCompleto(datos, m.bufer, (long)pagina * tamano);
+                    m.bufer.clear();
+                } else {
+                    Arrays.fill(m.bytes, (byte)0);
+                }
+            } catch (IOException e) {
+                throw falla(e);
+            }
+            m.pagina = pagina;
+            residentes.agrega(pagina, m);
+        }
+        alFrente(m);
+        if (transaccion && !m.fijo) {
+            if (nfijos == fijos.length)
+                fijos = Arrays.copyOf(fijos, 2 * nfijos);
+            m.fijo = true;
+            fijos[nfijos++] = m;
+        }
+        return m;
+    }
+
+    /* Regresa un marco vacío, desocupando el usado hace más tiempo que no
+     * esté fijo. Si todos están fijos, el caché crece con un marco nuevo. */
+    private Marco victima() throws IOException {
+        for (Marco m = lru.anterior; m != lru; m = m.anterior) {
+            if (m.fijo)
+                continue;
+            if (m.pagina >= 0) {
+                if (m.sucio)
+                    escribePagina(m);
+                residentes.elimina(m.pagina);
+                m.pagina = -1;
+            }
+            return m;
+        }
+        Marco m = new Marco();
+        alFrente(m);
+        return m;
+    }
+
+    /* Escribe la página del marco en el archivo de datos; antes se asegura
+     * de que la bitácora con su registro esté en disco. */
+    private void escribePagina(Marco m) throws IOException {
+        if (bitacoraPendiente) {
+            bitacora.force(false);
+            bitacoraPendiente = false;
+        }
+        m.bufer.clear();
+        try {
+            escribeCompleto(datos, m.bufer, (long)m.pagina * tamano);
+        } finally {
+            m.bufer.clear();
+        }
+        m.sucio = false;
+    }
+
+    /* Mueve el marco al frente de la lista de marcos. */
+    private void alFrente(Marco m) {
+        if (lru.siguiente == m)
+            return;
+        m.anterior.siguiente = m.siguiente;
+        m.siguiente.anterior = m.anterior;
+        m.siguiente = lru.siguiente;
+        m.anterior = lru;
+        lru.siguiente.anterior = m;
+        lru.siguiente = m;
+    }
+
+    /* Escribe el número de páginas y la lista de libres en el encabezado. */
+    private void escribeEncabezado() throws IOException {
+        ByteBuffer e = escribe(0);
+        e.putInt(12, paginas);
+        e.putInt(16, libre);
+    }
+
+    /* Marca el archivo como inservible y regresa la excepción. */
+    private IOException falla(IOException e) {
+        cerrado = true;
+        return e;
+    }
+
+    /* Verifica que el archivo esté abierto. */
+    private void verificaAbierto() {
+        if (cerrado)
+            throw new IllegalStateException("El archivo está cerrado o " +
+                                            "inservible");
+    }
+
+    /* Verifica que haya una transacción en curso. */
+    private void verificaTransaccion() {
+        verificaAbierto();
+        if (!transaccion)
+            throw new IllegalStateException("No hay una transacción en " +
+                                            "curso");
+    }
+
+    /* Verifica que la página esté en el archivo. */
+    private void verificaPagina(int pagina) {
+        if (pagina < 0 || pagina >= paginas)
+            throw new ExcepcionIndiceInvalido("Página inválida: " + pagina);
+    }
+
+    /* Cierra los canales, ignorando los errores del segundo si el primero
+     * falla. */
+    private void cierraCanales() throws IOException {
+        try {
+            if (datos != null)
+                datos.close();
+        } finally {
+            if (bitacora != null)
+                bitacora.close();
+        }
+    }
+
+    /* Lee bytes del canal en la posición hasta llenar el búfer, rellenando
+     * con ceros lo que quede más allá del final. */
+    private static void leeCompleto(FileChannel canal, ByteBuffer b,
+                                    long posicion) throws IOException {
+        while (b.hasRemaining()) {
+            int n = canal.read(b, posicion);
+            if (n < 0) {
+                while (b.hasRemaining())
+                    b.put((byte)0);
+                break;
+            }
+            posicion += n;
+        }
+        b.flip();
+    }
+
+    /* Escribe todos los bytes restantes del búfer en el canal en la
+     * posición. */
+    private static void escribeCompleto(FileChannel canal, ByteBuffer b,
+                                        long posicion) throws IOException {
+        while (b.hasRemaining())
+            posicion += canal.write(b, posicion);
+    }
+}
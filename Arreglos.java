@@ -33,24 +33,34 @@ public class Arreglos {
     }
 
 
+    /* Usa como pivote el elemento de en medio, para que los arreglos
+     * ordenados o en reversa no sean el peor caso, y parte en tres (menores,
+     * iguales y mayores que el pivote), para que los arreglos con muchos
+     * repetidos tampoco lo sean. Sólo hace recursión sobre la parte más
+     * chica para que la pila sea logarítmica. */
     private static <T> void quickSort(T[] a, int s, int t, Comparator<T> c){
-      if(t <= s)
-        return;
-      int i = s+1;
-      int j = t;
-      while(i < j)
-        if(c.compare(a[i] , a[s]) > 0 && c.compare(a[j] , a[s]) <= 0)
-          intercambia(a, i++, j--);
-        else if(c.compare(a[i] , a[s]) <= 0)
-          i++;
-        else
-          j--;
-        if(c.compare(a[i] , a[s]) > 0)
-          i--;
-        intercambia(a, i, s);
-        quickSort(a,  s, i-1, c);
-        quickSort(a, i+1, t, c);
-
+      while(s < t){
+        T pivote = a[(s + t) >>> 1];
+        int menores = s;
+        int i = s;
+        int mayores = t;
+        while(i <= mayores){
+          int r = c.compare(a[i], pivote);
+          if(r < 0)
+            intercambia(a, menores++, i++);
+          else if(r > 0)
+            intercambia(a, i, mayores--);
+          else
+            i++;
+        }
+        if(menores - s < t - mayores){
+          quickSort(a, s, menores-1, c);
+          s = mayores+1;
+        } else {
+          quickSort(a, mayores+1, t, c);
+          t = menores-1;
+        }
+      }
     }
 
 
@@ -0,0 +1,24 @@
+package mx.unam.ciencias.edd;
+
+/**
+ * Interfaz genérica para codificadores. Un codificador convierte objetos en
+ * secuencias de bytes y de regreso.
+ */
+public interface Codificador<T> {
+
+    /**
+     * Codifica el objeto recibido en una secuencia de bytes.
+     * @param objeto el objeto que queremos codificar.
+     * @return la secuencia de bytes que representa al objeto.
+     */
+    public byte[] codifica(T objeto);
+
+    /**
+     * Decodifica un objeto a partir de una secuencia de bytes.
+     * @param bytes el arreglo que contiene la secuencia.
+     * @param offset dónde comienza la secuencia en el arreglo.
+     * @param longitud la longitud de la secuencia.
+     * @return el objeto representado por la secuencia de bytes.
+     */
+    public T decodifica(byte[] bytes, int offset, int longitud);
+}
@@ -0,0 +1,40 @@
+package mx.unam.ciencias.edd;
+
+/**
+ * <p>Interfaz para codificadores de longitud fija. Todas las codificaciones
+ * de un codificador fijo tienen el mismo número de bytes, por lo que se
+ * pueden guardar en arreglos de celdas del mismo tamaño, como las páginas de
+ * un {@link ArbolBMasDisco}.</p>
+ *
+ * <p>Además, un codificador fijo preserva el orden: si <em>a</em> es menor
+ * que <em>b</em>, la codificación de <em>a</em> es menor que la de
+ * <em>b</em> comparando sus bytes sin signo de izquierda a derecha. Así las
+ * codificaciones se pueden comparar sin decodificarlas.</p>
+ */
+public interface CodificadorFijo<T> extends Codificador<T> {
+
+    /**
+     * Regresa el número de bytes de cada codificación.
+     * @return el número de bytes de cada codificación.
+     */
+    public int getLongitud();
+
+    /**
+     * Codifica el objeto recibido en el arreglo, a partir del offset.
+     * @param objeto el objeto que queremos codificar.
+     * @param bytes el arreglo donde se escribe la codificación.
+     * @param offset dónde comienza la codificación en el arreglo.
+     */
+    public void codifica(T objeto, byte[] bytes, int offset);
+
+    /**
+     * Codifica el objeto recibido en una secuencia de bytes.
+     * @param objeto el objeto que queremos codificar.
+     * @return la secuencia de bytes que representa al objeto.
+     */
+    @Override public default byte[] codifica(T objeto) {
+        byte[] b = new byte[getLongitud()];
+        codifica(objeto, b, 0);
+        return b;
+    }
+}
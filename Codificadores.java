@@ -0,0 +1,218 @@
+package mx.unam.ciencias.edd;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Clase para fabricar codificadores de tipos comunes.
+ */
+public class Codificadores {
+
+    /* Constructor privado para evitar instanciación. */
+    private Codificadores() {}
+
+    /**
+     * Regresa un codificador para cadenas, usando UTF-8.
+     * @return un codificador para cadenas.
+     */
+    public static Codificador<String> cadena() {
+        return new Codificador<String>() {
+            @Override public byte[] codifica(String cadena) {
+                return cadena.getBytes(StandardCharsets.UTF_8);
+            }
+            @Override public String decodifica(byte[] b, int o, int l) {
+                return new String(b, o, l, StandardCharsets.UTF_8);
+            }
+        };
+    }
+
+    /**
+     * Regresa un codificador para enteros, en cuatro bytes Big Endian.
+     * @return un codificador para enteros.
+     */
+    public static Codificador<Integer> entero() {
+        return new Codificador<Integer>() {
+            @Override public byte[] codifica(Integer entero) {
+                byte[] b = new byte[4];
+                escribeEntero(entero, b, 0);
+                return b;
+            }
+            @Override public Integer decodifica(byte[] b, int o, int l) {
+                if (l != 4)
+                    throw new IllegalArgumentException("Longitud inválida");
+                return leeEntero(b, o);
+            }
+        };
+    }
+
+    /**
+     * Regresa un codificador para enteros largos, en ocho bytes Big Endian.
+     * @return un codificador para enteros largos.
+     */
+    public static Codificador<Long> largo() {
+        return new Codificador<Long>() {
+            @Override public byte[] codifica(Long largo) {
+                byte[] b = new byte[8];
+                escribeLargo(largo, b, 0);
+                return b;
+            }
+            @Override public Long decodifica(byte[] b, int o, int l) {
+                if (l != 8)
+                    throw new IllegalArgumentException("Longitud inválida");
+                return leeLargo(b, o);
+            }
+        };
+    }
+
+    /**
+     * Regresa un codificador para dobles, en ocho bytes Big Endian.
+     * @return un codificador para dobles.
+     */
+    public static Codificador<Double> doble() {
+        return new Codificador<Double>() {
+            @Override public byte[] codifica(Double doble) {
+                byte[] b = new byte[8];
+                escribeLargo(Double.doubleToRawLongBits(doble), b, 0);
+                return b;
+            }
+            @Override public Double decodifica(byte[] b, int o, int l) {
+                if (l != 8)
+                    throw new IllegalArgumentException("Longitud inválida");
+                return Double.longBitsToDouble(leeLargo(b, o));
+            }
+        };
+    }
+
+    /**
+     * Regresa un codificador fijo para enteros, en cuatro bytes Big Endian
+     * con el bit de signo invertido para que los negativos queden antes que
+     * los positivos.
+     * @return un codificador fijo para enteros.
+     */
+    public static CodificadorFijo<Integer> enteroFijo() {
+        return new CodificadorFijo<Integer>() {
+            @Override public int getLongitud() {
+                return 4;
+            }
+            @Override public void codifica(Integer entero, byte[] b, int o) {
+                escribeEntero(entero ^ Integer.MIN_VALUE, b, o);
+            }
+            @Override public Integer decodifica(byte[] b, int o, int l) {
+                if (l != 4)
+                    throw new IllegalArgumentException("Longitud inválida");
+                return leeEntero(b, o) ^ Integer.MIN_VALUE;
+            }
+        };
+    }
+
+    /**
+     * Regresa un codificador fijo para enteros largos, en ocho bytes Big
+     * Endian con el bit de signo invertido.
+     * @return un codificador fijo para enteros largos.
+     */
+    public static CodificadorFijo<Long> largoFijo() {
+        return new CodificadorFijo<Long>() {
+            @Override public int getLongitud() {
+                return 8;
+            }
+            @Override public void codifica(Long largo, byte[] b, int o) {
+                escribeLargo(largo ^ Long.MIN_VALUE, b, o);
+            }
+            @Override public Long decodifica(byte[] b, int o, int l) {
+                if (l != 8)
+                    throw new IllegalArgumentException("Longitud inválida");
+                return leeLargo(b, o) ^ Long.MIN_VALUE;
+            }
+        };
+    }
+
+    /**
+     * Regresa un codificador fijo para dobles, en ocho bytes Big Endian. A
+     * los positivos se les invierte el bit de signo y a los negativos todos
+     * los bits, por lo que el orden de las codificaciones es el de {@link
+     * Double#compareTo}: -0.0 antes que 0.0, y NaN después de todo.
+     * @return un codificador fijo para dobles.
+     */
+    public static CodificadorFijo<Double> dobleFijo() {
+        return new CodificadorFijo<Double>() {
+            @Override public int getLongitud() {
+                return 8;
+            }
+            @Override public void codifica(Double doble, byte[] b, int o) {
+                long v = Double.doubleToLongBits(doble);
+                escribeLargo(v < 0 ? ~v : v ^ Long.MIN_VALUE, b, o);
+            }
+            @Override public Double decodifica(byte[] b, int o, int l) {
+                if (l != 8)
+                    throw new IllegalArgumentException("Longitud inválida");
+                long v = leeLargo(b, o);
+                return Double.longBitsToDouble(v < 0 ? v ^ Long.MIN_VALUE : ~v);
+            }
+        };
+    }
+
+    /**
+     * Regresa un codificador fijo para cadenas de a lo más el número de
+     * bytes recibido en UTF-8, rellenadas con ceros. El orden de las
+     * codificaciones es el de los puntos de código, que coincide con el de
+     * {@link String#compareTo} salvo en cadenas con caracteres fuera del
+     * plano básico.
+     * @param longitud el número de bytes de cada codificación.
+     * @return un codificador fijo para cadenas.
+     * @throws IllegalArgumentException si la longitud no es positiva.
+     */
+    public static CodificadorFijo<String> cadenaFija(int longitud) {
+        if (longitud <= 0)
+            throw new IllegalArgumentException("Longitud inválida: " +
+                                               longitud);
+        return new CodificadorFijo<String>() {
+            @Override public int getLongitud() {
+                return longitud;
+            }
+            @Override public void codifica(String cadena, byte[] b, int o) {
+                byte[] c = cadena.getBytes(StandardCharsets.UTF_8);
+                if (c.length > longitud)
+                    throw new IllegalArgumentException("Cadena demasiado " +
+                                                       "larga: " + cadena);
+                for (byte x : c)
+                    if (x == 0)
+                        throw new IllegalArgumentException("La cadena " +
+                                                           "contiene '\\0'");
+                System.arraycopy(c, 0, b, o, c.length);
+                Arrays.fill(b, o + c.length, o + longitud, (byte)0);
+            }
+            @Override public String decodifica(byte[] b, int o, int l) {
+                if (l != longitud)
+                    throw new IllegalArgumentException("Longitud inválida");
+                while (l > 0 && b[o + l - 1] == 0)
+                    l--;
+                return new String(b, o, l, StandardCharsets.UTF_8);
+            }
+        };
+    }
+
+    /* Escribe un entero en Big Endian. */
+    private static void escribeEntero(int v, byte[] b, int o) {
+        b[o]     = (byte)(v >>> 24);
+        b[o + 1] = (byte)(v >>> 16);
+        b[o + 2] = (byte)(v >>> 8);
+        b[o + 3] = (byte)v;
+    }
+
+    /* Lee un entero en Big Endian. */
+    private static int leeEntero(byte[] b, int o) {
+        return ((b[o] & 0xFF) << 24) | ((b[o + 1] & 0xFF) << 16) |
+            ((b[o + 2] & 0xFF) << 8) | (b[o + 3] & 0xFF);
+    }
+
+    /* Escribe un entero largo en Big Endian. */
+    private static void escribeLargo(long v, byte[] b, int o) {
+        escribeEntero((int)(v >>> 32), b, o);
+        escribeEntero((int)v, b, o + 4);
+    }
+
+    /* Lee un entero largo en Big Endian. */
+    private static long leeLargo(byte[] b, int o) {
+        return ((long)leeEntero(b, o) << 32) | (leeEntero(b, o + 4) & 0xFFFFFFFFL);
+    }
+}
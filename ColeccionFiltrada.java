@@ -0,0 +1,106 @@
+package mx.unam.ciencias.edd;
+
+import java.util.Iterator;
+
+/**
+ * <p>Clase para colecciones con un {@link FiltroBloom} enfrente. Antes de
+ * buscar un elemento en la colección se consulta el filtro, y si el filtro
+ * dice que el elemento no fue agregado, la colección no se toca.</p>
+ *
+ * <p>Los filtros de Bloom no pueden olvidar elementos, así que eliminar de la
+ * colección no cambia el filtro; los elementos eliminados se vuelven falsos
+ * positivos del filtro hasta que se limpie la colección.</p>
+ */
+public class ColeccionFiltrada<T> implements Coleccion<T> {
+
+    /* La colección. */
+    private Coleccion<T> coleccion;
+    /* El filtro. */
+    private FiltroBloom<T> filtro;
+
+    /**
+     * Construye una colección filtrada a partir de una colección y un filtro.
+     * Los elementos que ya estén en la colección se agregan al filtro.
+     * @param coleccion la colección a filtrar.
+     * @param filtro el filtro a consultar antes que la colección.
+     */
+    public ColeccionFiltrada(Coleccion<T> coleccion, FiltroBloom<T> filtro) {
+        this.coleccion = coleccion;
+        this.filtro = filtro;
+        for (T e : coleccion)
+            filtro.agrega(e);
+    }
+
+    /**
+     * Agrega un elemento a la colección y al filtro.
+     * @param elemento el elemento a agregar.
+     * @throws IllegalArgumentException si el elemento es <code>null</code>.
+     */
+    @Override public void agrega(T elemento) {
+        if (elemento == null)
+            throw new IllegalArgumentException();
+        coleccion.agrega(elemento);
+        filtro.agrega(elemento);
+    }
+
+    /**
+     * Elimina un elemento de la colección, si el filtro dice que puede estar.
+     * @param elemento el elemento a eliminar.
+     */
+    @Override public void elimina(T elemento) {
+        if (filtro.puedeContener(elemento))
+            coleccion.elimina(elemento);
+    }
+
+    /**
+     * Nos dice si un elemento está en la colección. Sólo se busca en la
+     * colección si el filtro dice que el elemento puede estar.
+     * @param elemento el elemento a buscar.
+     * @return <code>true</code> si el elemento está en la colección,
+     *         <code>false</code> en otro caso.
+     */
+    @Override public boolean contiene(T elemento) {
+        return filtro.puedeContener(elemento) && coleccion.contiene(elemento);
+    }
+
+    /**
+     * Nos dice si la colección es vacía.
+     * @return <code>true</code> si la colección es vacía, <code>false</code>
+     *         en otro caso.
+     */
+    @Override public boolean esVacia() {
+        return coleccion.esVacia();
+    }
+
+    /**
+     * Regresa el número de elementos en la colección.
+     * @return el número de elementos en la colección.
+     */
+    @Override public int getElementos() {
+        return coleccion.getElementos();
+    }
+
+    /**
+     * Limpia la colección y el filtro, dejándolos vacíos.
+     */
+    @Override public void limpia() {
+        coleccion.limpia();
+        filtro.limpia();
+    }
+
+    /**
+     * Regresa el filtro de la colección.
+     * @return el filtro de la colección.
+     */
+    public FiltroBloom<T> getFiltro() {
+        return filtro;
+    }
+
+    /**
+     * Regresa un iterador para iterar la colección.
+     * @return un iterador para iterar la colección.
+     */
+    @Override public Iterator<T> iterator() {
+        return coleccion.iterator();
+    }
+}
@@ -1,20 +1,181 @@
 package mx.unam.ciencias.edd;
 
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
- * Clase para conjuntos.
+ * <p>Clase para conjuntos.</p>
+ *
+ * <p>Los elementos se guardan en una tabla de dispersión con direccionamiento
+ * abierto: un solo arreglo de elementos, y junto a él un arreglo con la
+ * dispersión de cada uno. Un elemento se busca a partir de la casilla que
+ * indica su dispersión, recorriendo las casillas siguientes hasta
+ * encontrarlo o hasta una casilla vacía; las dispersiones guardadas evitan
+ * comparar elementos que no pueden ser iguales, y volver a dispersar al
+ * crecer la tabla o al operar con otro conjunto del mismo dispersor.</p>
  */
 public class Conjunto<T> implements Coleccion<T> {
 
-    /* El conjunto de elementos. */
-    private Diccionario<T, T> conjunto;
+    /* Clase privada para iteradores de conjuntos. */
+    private class Iterador implements Iterator<T> {
+
+        /* La casilla del siguiente elemento. */
+        private int siguiente;
+
+        /* Construye un nuevo iterador. */
+        public Iterador() {
+            siguiente = busca(0);
+        }
+
+        /* Nos dice si hay un siguiente elemento. */
+        @Override public boolean hasNext() {
+            return siguiente < tabla.length;
+        }
+
+        /* Regresa el siguiente elemento. */
+        @SuppressWarnings("unchecked") @Override public T next() {
+            if (siguiente >= tabla.length)
+                throw new NoSuchElementException();
+            T e = (T)tabla[siguiente];
+            siguiente = busca(siguiente + 1);
+            return e;
+        }
+
+        /* Regresa la primera casilla ocupada a partir de i. */
+        private int busca(int i) {
+            while (i < tabla.length && tabla[i] == null)
+                i++;
+            return i;
+        }
+    }
+
+    /* Clase privada para las tareas que copian en paralelo los elementos de
+     * otro conjunto. Cada tarea hoja copia los elementos de una partición, y
+     * regresa cuántos agregó; los que no cupieron en las casillas de su
+     * partición quedan pendientes. */
+    private class Copia extends RecursiveTask<Integer> {
+
+        /* La versión de la clase para serializar. */
+        private static final long serialVersionUID = 1L;
+
+        /* El conjunto del que se copia. */
+        private Conjunto<T> fuente;
+        /* Si no es null, sólo se copian los elementos que están en él. */
+        private Conjunto<T> filtro;
+        /* Los bits de la dispersión que determinan la partición son los
+         * que van de corrimiento a bits - 1. */
+        private int corrimiento, bits;
+        /* Las particiones de esta tarea: de desde a hasta - 1. */
+        private int desde, hasta;
+        /* Las casillas de la fuente con elementos pendientes. */
+        private int[] pendientes = new int[0];
+        /* El número de elementos pendientes. */
+        private int numPendientes;
+
+        /* Construye una nueva tarea de copia. */
+        public Copia(Conjunto<T> fuente, Conjunto<T> filtro, int corrimiento,
+                     int bits, int desde, int hasta) {
+            this.fuente = fuente;
+            this.filtro = filtro;
+            this.corrimiento = corrimiento;
+            this.bits = bits;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        /* Copia las particiones de la tarea, dividiéndolas si son varias. */
+        @Override protected Integer compute() {
+            if (hasta - desde == 1)
+                return copiaParticion(desde);
+            int mitad = (desde + hasta) >>> 1;
+            Copia izquierda = new Copia(fuente, filtro, corrimiento, bits,
+                                        desde, mitad);
+            Copia derecha = new Copia(fuente, filtro, corrimiento, bits,
+                                      mitad, hasta);
+            izquierda.fork();
+            int n = derecha.compute() + izquierda.join();
+            pendientes = new int[izquierda.numPendientes +
+                                 derecha.numPendientes];
+            System.arraycopy(izquierda.pendientes, 0, pendientes, 0,
+                             izquierda.numPendientes);
+            System.arraycopy(derecha.pendientes, 0, pendientes,
+                             izquierda.numPendientes, derecha.numPendientes);
+            numPendientes = pendientes.length;
+            return n;
+        }
+
+        /* Copia los elementos de la partición. Los elementos de la partición
+         * están en tramos de 2^corrimiento casillas de la fuente, uno cada
+         * 2^bits, o un poco después si fueron desplazados al agregarse; por
+         * eso cada tramo se recorre hasta la primera casilla vacía o de otro
+         * tramo de la partición. En este conjunto, la tarea sólo escribe en
+         * los tramos de la partición, y deja pendientes los elementos que
+         * tendrían que salirse de ellos. */
+        private int copiaParticion(int particion) {
+            int mascaraFuente = fuente.tabla.length - 1;
+            int mascaraParticion = (1 << (bits - corrimiento)) - 1;
+            int tramo = 1 << corrimiento;
+            int n = 0;
+            for (int inicio = particion << corrimiento;
+                 inicio < fuente.tabla.length; inicio += 1 << bits) {
+                for (int j = inicio; ; j++) {
+                    int s = j & mascaraFuente;
+                    Object e = fuente.tabla[s];
+                    if (j >= inicio + tramo &&
+                        (e == null ||
+                         (s >>> corrimiento & mascaraParticion) == particion))
+                        break;
+                    if (e == null)
+                        continue;
+                    int h = fuente.dispersiones[s];
+                    if ((h >>> corrimiento & mascaraParticion) != particion)
+                        continue;
+                    if (filtro != null && !filtro.contiene(e, h, fuente))
+                        continue;
+                    int r = agregaEnTramo(e, h, tramo);
+                    if (r > 0) {
+                        n++;
+                    } else if (r < 0) {
+                        if (numPendientes == pendientes.length)
+                            pendientes = copia(pendientes,
+                                               Math.max(16, 2 * numPendientes));
+                        pendientes[numPendientes++] = s;
+                    }
+                }
+            }
+            return n;
+        }
+    }
+
+    /* Capacidad mínima de la tabla. */
+    private static final int MINIMA_CAPACIDAD = 8;
+    /* Capacidad máxima de la tabla. */
+    private static final int MAXIMA_CAPACIDAD = 1 << 30;
+    /* Número de elementos a partir del cual conviene operar en paralelo. */
+    private static final int UMBRAL_PARALELO = 1 << 15;
+    /* Particiones por hilo al copiar en paralelo, para equilibrar la carga. */
+    private static final int PARTICIONES_POR_HILO = 8;
+    /* Dispersor predeterminado. Es uno solo para todos los conjuntos, para
+     * poder reconocer cuándo dos conjuntos dispersan igual. */
+    private static final Dispersor<Object> PREDETERMINADO =
+        elemento -> elemento.hashCode();
+
+    /* El dispersor. */
+    private Dispersor<T> dispersor;
+    /* Las casillas de la tabla; null si están vacías. */
+    private Object[] tabla;
+    /* La dispersión del elemento de cada casilla ocupada. */
+    private int[] dispersiones;
+    /* El número de elementos. */
+    private int elementos;
 
     /**
      * Crea un nuevo conjunto.
      */
     public Conjunto() {
-        conjunto = new Diccionario<>();
+        this(MINIMA_CAPACIDAD, Conjunto.<T>predeterminado());
     }
 
     /**
@@ -22,7 +183,34 @@ public class Conjunto<T> implements Coleccion<T> {
      * @param n el número tentativo de elementos.
      */
     public Conjunto(int n) {
-        conjunto = new Diccionario<>(n);
+        this(n, Conjunto.<T>predeterminado());
+    }
+
+    /**
+     * Crea un nuevo conjunto con un dispersor definido por el usuario.
+     * @param dispersor el dispersor a utilizar.
+     */
+    public Conjunto(Dispersor<T> dispersor) {
+        this(MINIMA_CAPACIDAD, dispersor);
+    }
+
+    /**
+     * Crea un nuevo conjunto para un número determinado de elementos, con un
+     * dispersor definido por el usuario.
+     * @param n el número tentativo de elementos.
+     * @param dispersor el dispersor a utilizar.
+     */
+    public Conjunto(int n, Dispersor<T> dispersor) {
+        this.dispersor = dispersor;
+        int capacidad = capacidadPara(n);
+        tabla = new Object[capacidad];
+        dispersiones = new int[capacidad];
+    }
+
+    /* Regresa el dispersor predeterminado. */
+    @SuppressWarnings("unchecked") private static <T> Dispersor<T>
+    predeterminado() {
+        return (Dispersor<T>)PREDETERMINADO;
     }
 
     /**
@@ -33,7 +221,7 @@ public class Conjunto<T> implements Coleccion<T> {
     @Override public void agrega(T elemento) {
         if (elemento == null)
             throw new IllegalArgumentException();
-        conjunto.agrega(elemento, elemento);
+        agrega(elemento, dispersa(elemento));
     }
 
     /**
@@ -43,7 +231,20 @@ public class Conjunto<T> implements Coleccion<T> {
      *         <code>false</code> en otro caso.
      */
     @Override public boolean contiene(T elemento) {
-        return conjunto.contiene(elemento);
+        return elemento != null && casilla(elemento, dispersa(elemento)) >= 0;
+    }
+
+    /**
+     * Busca un elemento en el conjunto, sin lanzar excepciones si no está.
+     * @param elemento el elemento que queremos buscar.
+     * @return el elemento del conjunto igual al recibido, o <code>null</code>
+     *         si no está en el conjunto.
+     */
+    @SuppressWarnings("unchecked") public T busca(T elemento) {
+        if (elemento == null)
+            return null;
+        int i = casilla(elemento, dispersa(elemento));
+        return (i < 0) ? null : (T)tabla[i];
     }
 
     /**
@@ -51,8 +252,11 @@ public class Conjunto<T> implements Coleccion<T> {
      * @param elemento el elemento que queremos eliminar del conjunto.
      */
     @Override public void elimina(T elemento) {
-        if (elemento == null) return;
-        conjunto.elimina(elemento);
+        if (elemento == null)
+            return;
+        int i = casilla(elemento, dispersa(elemento));
+        if (i >= 0)
+            eliminaCasilla(i);
     }
 
     /**
@@ -61,7 +265,7 @@ public class Conjunto<T> implements Coleccion<T> {
      *         otro caso.
      */
     @Override public boolean esVacia() {
-        return conjunto.esVacia();
+        return elementos == 0;
     }
 
     /**
@@ -69,57 +273,240 @@ public class Conjunto<T> implements Coleccion<T> {
      * @return el número de elementos en el conjunto.
      */
     @Override public int getElementos() {
-        return conjunto.getElementos();
+        return elementos;
     }
 
     /**
      * Limpia el conjunto de elementos, dejándolo vacío.
      */
     @Override public void limpia() {
-        conjunto.limpia();
+        tabla = new Object[tabla.length];
+        dispersiones = new int[tabla.length];
+        elementos = 0;
     }
 
     /**
-     * Regresa la intersección del conjunto y el conjunto recibido.
+     * Regresa la intersección del conjunto y el conjunto recibido. Se recorre
+     * el más pequeño de los dos conjuntos, buscando sus elementos en el otro.
      * @param conjunto el conjunto que queremos intersectar con éste.
      * @return la intersección del conjunto y el conjunto recibido.
      */
     public Conjunto<T> interseccion(Conjunto<T> conjunto) {
-        Conjunto<T> s = new Conjunto<>();
-        for (T e : this)
-            if (conjunto.contiene(e))
-                s.agrega(e);
+        Conjunto<T> menor = this, mayor = conjunto;
+        if (conjunto.getElementos() < getElementos()) {
+            menor = conjunto;
+            mayor = this;
+        }
+        Conjunto<T> s = new Conjunto<>(menor.getElementos(), dispersor);
+        for (int i = 0; i < menor.tabla.length; i++) {
+            Object e = menor.tabla[i];
+            if (e != null && mayor.contiene(e, menor.dispersiones[i], menor))
+                s.agrega(e, s.dispersion(e, menor.dispersiones[i], menor));
+        }
         return s;
     }
 
     /**
-     * Regresa la unión del conjunto y el conjunto recibido.
+     * Regresa la unión del conjunto y el conjunto recibido. El resultado se
+     * crea con capacidad para los elementos de ambos conjuntos, por lo que
+     * nunca tiene que crecer.
      * @param conjunto el conjunto que queremos unir con éste.
      * @return la unión del conjunto y el conjunto recibido.
      */
     public Conjunto<T> union(Conjunto<T> conjunto) {
-        Conjunto<T> s = new Conjunto<>();
-        for (T e : this)
-            s.agrega(e);
-        for (T e : conjunto)
-            s.agrega(e);
+        Conjunto<T> s = new Conjunto<>(getElementos() + conjunto.getElementos(),
+                                       dispersor);
+        s.agregaTodos(this);
+        s.agregaTodos(conjunto);
         return s;
     }
 
+    /**
+     * Regresa la unión del conjunto y el conjunto recibido, calculada en
+     * paralelo en el <em>pool</em> común.
+     * @param conjunto el conjunto que queremos unir con éste.
+     * @return la unión del conjunto y el conjunto recibido.
+     * @see #unionParalela(Conjunto, ForkJoinPool)
+     */
+    public Conjunto<T> unionParalela(Conjunto<T> conjunto) {
+        return unionParalela(conjunto, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Regresa la unión del conjunto y el conjunto recibido, calculada en
+     * paralelo en el <em>pool</em> recibido. Las casillas de ambos conjuntos
+     * se reparten en particiones según los bits de su dispersión, y cada
+     * tarea copia una partición directamente a la tabla del resultado, sin
+     * volver a dispersar. Ninguno de los dos conjuntos puede modificarse
+     * mientras tanto. Con pocos elementos se calcula secuencialmente.
+     * @param conjunto el conjunto que queremos unir con éste.
+     * @param pool el <em>pool</em> en el que se ejecutan las tareas.
+     * @return la unión del conjunto y el conjunto recibido.
+     */
+    public Conjunto<T> unionParalela(Conjunto<T> conjunto, ForkJoinPool pool) {
+        int n = getElementos() + conjunto.getElementos();
+        if (n < UMBRAL_PARALELO)
+            return union(conjunto);
+        Conjunto<T> s = new Conjunto<>(n, dispersor);
+        s.agregaEnParalelo(this, null, pool);
+        s.agregaEnParalelo(conjunto, null, pool);
+        return s;
+    }
+
+    /**
+     * Regresa la intersección del conjunto y el conjunto recibido, calculada
+     * en paralelo en el <em>pool</em> común.
+     * @param conjunto el conjunto que queremos intersectar con éste.
+     * @return la intersección del conjunto y el conjunto recibido.
+     * @see #interseccionParalela(Conjunto, ForkJoinPool)
+     */
+    public Conjunto<T> interseccionParalela(Conjunto<T> conjunto) {
+        return interseccionParalela(conjunto, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Regresa la intersección del conjunto y el conjunto recibido, calculada
+     * en paralelo en el <em>pool</em> recibido. Las casillas del más pequeño
+     * de los dos conjuntos se reparten en particiones según los bits de su
+     * dispersión, y cada tarea busca los elementos de una partición en el
+     * otro conjunto y copia los que encuentra directamente a la tabla del
+     * resultado. Ninguno de los dos conjuntos puede modificarse mientras
+     * tanto. Con pocos elementos se calcula secuencialmente.
+     * @param conjunto el conjunto que queremos intersectar con éste.
+     * @param pool el <em>pool</em> en el que se ejecutan las tareas.
+     * @return la intersección del conjunto y el conjunto recibido.
+     */
+    public Conjunto<T> interseccionParalela(Conjunto<T> conjunto,
+                                            ForkJoinPool pool) {
+        Conjunto<T> menor = this, mayor = conjunto;
+        if (conjunto.getElementos() < getElementos()) {
+            menor = conjunto;
+            mayor = this;
+        }
+        if (menor.getElementos() < UMBRAL_PARALELO)
+            return interseccion(conjunto);
+        Conjunto<T> s = new Conjunto<>(menor.getElementos(), dispersor);
+        s.agregaEnParalelo(menor, mayor, pool);
+        return s;
+    }
+
+    /**
+     * Regresa la diferencia del conjunto y el conjunto recibido; es decir,
+     * los elementos de este conjunto que no están en el recibido.
+     * @param conjunto el conjunto que queremos restar de éste.
+     * @return la diferencia del conjunto y el conjunto recibido.
+     */
+    public Conjunto<T> diferencia(Conjunto<T> conjunto) {
+        Conjunto<T> s = new Conjunto<>(getElementos(), dispersor);
+        s.agregaFaltantes(this, conjunto);
+        return s;
+    }
+
+    /**
+     * Regresa la diferencia simétrica del conjunto y el conjunto recibido; es
+     * decir, los elementos que están en exactamente uno de los dos.
+     * @param conjunto el conjunto con el que queremos la diferencia simétrica.
+     * @return la diferencia simétrica del conjunto y el conjunto recibido.
+     */
+    public Conjunto<T> diferenciaSimetrica(Conjunto<T> conjunto) {
+        Conjunto<T> s = new Conjunto<>(getElementos() + conjunto.getElementos(),
+                                       dispersor);
+        s.agregaFaltantes(this, conjunto);
+        s.agregaFaltantes(conjunto, this);
+        return s;
+    }
+
+    /**
+     * Agrega a este conjunto todos los elementos del conjunto recibido.
+     * @param conjunto el conjunto cuyos elementos queremos agregar.
+     */
+    public void agregaTodos(Conjunto<T> conjunto) {
+        if (conjunto == this)
+            return;
+        int n = elementos + conjunto.elementos;
+        if (n > carga(tabla.length))
+            redimensiona(capacidadPara(n));
+        for (int i = 0; i < conjunto.tabla.length; i++) {
+            Object e = conjunto.tabla[i];
+            if (e != null)
+                agrega(e, dispersion(e, conjunto.dispersiones[i], conjunto));
+        }
+    }
+
+    /**
+     * Elimina de este conjunto todos los elementos del conjunto recibido. Si
+     * el conjunto recibido es más pequeño se recorre a él; en otro caso se
+     * reconstruye la tabla de este conjunto sin los elementos que están en el
+     * recibido.
+     * @param conjunto el conjunto cuyos elementos queremos eliminar.
+     */
+    public void eliminaTodos(Conjunto<T> conjunto) {
+        if (conjunto == this) {
+            limpia();
+            return;
+        }
+        if (conjunto.getElementos() <= getElementos()) {
+            for (int i = 0; i < conjunto.tabla.length; i++) {
+                Object e = conjunto.tabla[i];
+                if (e == null)
+                    continue;
+                int j = casilla(e, dispersion(e, conjunto.dispersiones[i],
+                                              conjunto));
+                if (j >= 0)
+                    eliminaCasilla(j);
+            }
+            return;
+        }
+        conserva(conjunto, false);
+    }
+
+    /**
+     * Deja en este conjunto únicamente los elementos que también están en el
+     * conjunto recibido. Si el conjunto recibido es mucho más pequeño, se
+     * construye la intersección recorriéndolo a él; en otro caso se
+     * reconstruye la tabla de este conjunto sólo con los elementos que están
+     * en el recibido.
+     * @param conjunto el conjunto con el que queremos intersectar éste.
+     */
+    public void retiene(Conjunto<T> conjunto) {
+        if (conjunto == this)
+            return;
+        if (conjunto.getElementos() >= getElementos() / 2) {
+            conserva(conjunto, true);
+            return;
+        }
+        Object[] viejaTabla = tabla;
+        int[] viejasDispersiones = dispersiones;
+        int capacidad = capacidadPara(conjunto.getElementos());
+        tabla = new Object[capacidad];
+        dispersiones = new int[capacidad];
+        elementos = 0;
+        for (int i = 0; i < conjunto.tabla.length; i++) {
+            Object e = conjunto.tabla[i];
+            if (e == null)
+                continue;
+            int h = dispersion(e, conjunto.dispersiones[i], conjunto);
+            int j = casilla(viejaTabla, viejasDispersiones, e, h);
+            if (j >= 0)
+                agrega(viejaTabla[j], h);
+        }
+    }
+
     /**
      * Regresa una representación en cadena del conjunto.
      * @return una representación en cadena del conjunto.
      */
     @Override public String toString() {
-        String s = "{ ";
+        StringBuilder sb = new StringBuilder("{ ");
         int i = 0;
-        for (T e : conjunto) {
-            s += e;
-            if (i < conjunto.getElementos() - 1)
-                s += ", ";
-            i++;
+        for (Object e : tabla) {
+            if (e == null)
+                continue;
+            sb.append(e);
+            if (++i < elementos)
+                sb.append(", ");
         }
-        return s + " }";
+        return sb.append(" }").toString();
     }
 
     /**
@@ -134,13 +521,9 @@ public class Conjunto<T> implements Coleccion<T> {
         @SuppressWarnings("unchecked") Conjunto<T> c = (Conjunto<T>)o;
         if (c.getElementos() != getElementos())
             return false;
-        for (T e : this) {
-            try {
-                c.contiene(e);
-            } catch (Exception a) {
+        for (int i = 0; i < tabla.length; i++)
+            if (tabla[i] != null && !c.contiene(tabla[i], dispersiones[i], this))
                 return false;
-            }
-        }
         return true;
     }
 
@@ -149,6 +532,199 @@ public class Conjunto<T> implements Coleccion<T> {
      * @return un iterador para iterar el conjunto.
      */
     @Override public Iterator<T> iterator() {
-        return conjunto.iteradorLlaves();
+        return new Iterador();
+    }
+
+    /* Regresa la dispersión de un elemento: la de su dispersor, mezclada para
+     * que los bits bajos dependan de todos los bits. */
+    @SuppressWarnings("unchecked") private int dispersa(Object elemento) {
+        return Dispersores.mezcla32(dispersor.dispersa((T)elemento));
+    }
+
+    /* Regresa la dispersión en este conjunto de un elemento del conjunto
+     * recibido, que tiene ahí la dispersión h. */
+    private int dispersion(Object elemento, int h, Conjunto<T> origen) {
+        return (origen.dispersor == dispersor) ? h : dispersa(elemento);
+    }
+
+    /* Nos dice si el elemento, que tiene la dispersión h en el conjunto
+     * recibido, está en este conjunto. */
+    private boolean contiene(Object elemento, int h, Conjunto<T> origen) {
+        return casilla(elemento, dispersion(elemento, h, origen)) >= 0;
+    }
+
+    /* Regresa la casilla del elemento, o -1 si no está. */
+    private int casilla(Object elemento, int h) {
+        return casilla(tabla, dispersiones, elemento, h);
+    }
+
+    /* Regresa la casilla del elemento en la tabla recibida, o -1 si no
+     * está. */
+    private static int casilla(Object[] tabla, int[] dispersiones,
+                               Object elemento, int h) {
+        int mascara = tabla.length - 1;
+        for (int i = h & mascara; tabla[i] != null; i = (i + 1) & mascara)
+            if (dispersiones[i] == h && tabla[i].equals(elemento))
+                return i;
+        return -1;
+    }
+
+    /* Agrega un elemento con la dispersión h, si no está. */
+    private void agrega(Object elemento, int h) {
+        int mascara = tabla.length - 1;
+        int i = h & mascara;
+        for (; tabla[i] != null; i = (i + 1) & mascara)
+            if (dispersiones[i] == h && tabla[i].equals(elemento))
+                return;
+        tabla[i] = elemento;
+        dispersiones[i] = h;
+        if (++elementos > carga(tabla.length))
+            redimensiona(2 * tabla.length);
+    }
+
+    /* Agrega los elementos del primer conjunto que no están en el
+     * segundo. */
+    private void agregaFaltantes(Conjunto<T> conjunto, Conjunto<T> excepto) {
+        for (int i = 0; i < conjunto.tabla.length; i++) {
+            Object e = conjunto.tabla[i];
+            if (e == null)
+                continue;
+            int h = conjunto.dispersiones[i];
+            if (!excepto.contiene(e, h, conjunto))
+                agrega(e, dispersion(e, h, conjunto));
+        }
+    }
+
+    /* Elimina el elemento de la casilla i. Los elementos que siguen a la
+     * casilla, hasta la primera vacía, se recorren hacia atrás si su casilla
+     * de origen lo permite, para que ninguna búsqueda se detenga antes de
+     * tiempo. */
+    private void eliminaCasilla(int i) {
+        int mascara = tabla.length - 1;
+        for (int j = (i + 1) & mascara; tabla[j] != null;
+             j = (j + 1) & mascara) {
+            int origen = dispersiones[j] & mascara;
+            if (((j - origen) & mascara) >= ((j - i) & mascara)) {
+                tabla[i] = tabla[j];
+                dispersiones[i] = dispersiones[j];
+                i = j;
+            }
+        }
+        tabla[i] = null;
+        elementos--;
+    }
+
+    /* Reconstruye la tabla dejando sólo los elementos que están en el
+     * conjunto recibido, o sólo los que no están. */
+    private void conserva(Conjunto<T> conjunto, boolean presentes) {
+        Object[] viejaTabla = tabla;
+        int[] viejasDispersiones = dispersiones;
+        tabla = new Object[viejaTabla.length];
+        dispersiones = new int[viejaTabla.length];
+        elementos = 0;
+        for (int i = 0; i < viejaTabla.length; i++) {
+            Object e = viejaTabla[i];
+            if (e != null &&
+                conjunto.contiene(e, viejasDispersiones[i], this) == presentes)
+                agrega(e, viejasDispersiones[i]);
+        }
+    }
+
+    /* Cambia la tabla por una de la capacidad recibida, sin volver a
+     * dispersar. */
+    private void redimensiona(int capacidad) {
+        Object[] viejaTabla = tabla;
+        int[] viejasDispersiones = dispersiones;
+        tabla = new Object[capacidad];
+        dispersiones = new int[capacidad];
+        int mascara = capacidad - 1;
+        for (int i = 0; i < viejaTabla.length; i++) {
+            if (viejaTabla[i] == null)
+                continue;
+            int j = viejasDispersiones[i] & mascara;
+            while (tabla[j] != null)
+                j = (j + 1) & mascara;
+            tabla[j] = viejaTabla[i];
+            dispersiones[j] = viejasDispersiones[i];
+        }
+    }
+
+    /* Agrega en paralelo los elementos del conjunto fuente que están en el
+     * filtro (todos, si el filtro es null). Ni este conjunto, ni la fuente,
+     * ni el filtro pueden modificarse mientras tanto.
+     *
+     * La casilla de origen de un elemento son los b bits bajos de su
+     * dispersión, donde 2^b es la capacidad de la tabla. Si ambos conjuntos
+     * usan el mismo dispersor y b es el menor de los dos, los p bits más
+     * altos de esos b bits sirven como partición en las dos tablas: cada
+     * tarea recorre los tramos de la fuente con su partición, y sólo escribe
+     * en los tramos de este conjunto con su partición. Los elementos que
+     * tendrían que escribirse fuera de sus tramos se agregan al final,
+     * secuencialmente. Si los dispersores son distintos, se agregan todos
+     * secuencialmente. */
+    private void agregaEnParalelo(Conjunto<T> fuente, Conjunto<T> filtro,
+                                  ForkJoinPool pool) {
+        int n = elementos + fuente.elementos;
+        if (n > carga(tabla.length))
+            redimensiona(capacidadPara(n));
+        if (fuente.dispersor != dispersor) {
+            for (int i = 0; i < fuente.tabla.length; i++) {
+                Object e = fuente.tabla[i];
+                if (e != null && (filtro == null ||
+                                  filtro.contiene(e, fuente.dispersiones[i],
+                                                  fuente)))
+                    agrega(e, dispersa(e));
+            }
+            return;
+        }
+        int bits = Math.min(Integer.numberOfTrailingZeros(tabla.length),
+                            Integer.numberOfTrailingZeros(fuente.tabla.length));
+        int p = Integer.numberOfTrailingZeros(Integer.highestOneBit(
+            pool.getParallelism() * PARTICIONES_POR_HILO));
+        p = Math.min(p, bits);
+        Copia copia = new Copia(fuente, filtro, bits - p, bits, 0, 1 << p);
+        elementos += pool.invoke(copia);
+        for (int i = 0; i < copia.numPendientes; i++) {
+            int s = copia.pendientes[i];
+            agrega(fuente.tabla[s], fuente.dispersiones[s]);
+        }
+    }
+
+    /* Agrega el elemento sin salirse del tramo de su casilla de origen.
+     * Regresa 1 si lo agregó, 0 si ya estaba, y -1 si no cupo en el
+     * tramo. */
+    private int agregaEnTramo(Object elemento, int h, int tramo) {
+        int i = h & (tabla.length - 1);
+        int fin = (i | (tramo - 1)) + 1;
+        for (; i < fin; i++) {
+            if (tabla[i] == null) {
+                tabla[i] = elemento;
+                dispersiones[i] = h;
+                return 1;
+            }
+            if (dispersiones[i] == h && tabla[i].equals(elemento))
+                return 0;
+        }
+        return -1;
+    }
+
+    /* Regresa el máximo número de elementos para la capacidad recibida. */
+    private static int carga(int capacidad) {
+        return (int)(capacidad * Diccionario.MAXIMA_CARGA);
+    }
+
+    /* Regresa la capacidad necesaria para n elementos. */
+    private static int capacidadPara(int n) {
+        int capacidad = MINIMA_CAPACIDAD;
+        while (capacidad < MAXIMA_CAPACIDAD && n > carga(capacidad))
+            capacidad *= 2;
+        return capacidad;
+    }
+
+    /* Copia un arreglo de enteros en uno de la longitud recibida. */
+    private static int[] copia(int[] a, int n) {
+        int[] b = new int[n];
+        System.arraycopy(a, 0, b, 0, Math.min(a.length, n));
+        return b;
     }
 }
@@ -0,0 +1,374 @@
+package mx.unam.ciencias.edd;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Clase para conjuntos de enteros no negativos representados con bits. El
+ * entero <em>i</em> está en el conjunto si el bit <em>i</em> mod 64 de la
+ * palabra <em>i</em>/64 está prendido.</p>
+ *
+ * <p>Agregar, eliminar y buscar toman tiempo constante, y cada elemento
+ * posible ocupa un bit, por lo que el conjunto es mucho más pequeño que un
+ * {@link Conjunto} de enteros cuando los elementos son densos. La unión, la
+ * intersección y las diferencias operan sobre 64 elementos a la vez.</p>
+ */
+public class ConjuntoBits implements Coleccion<Integer> {
+
+    /* Clase privada para iteradores de conjuntos de bits. */
+    private class Iterador implements Iterator<Integer> {
+
+        /* El siguiente elemento, o -1 si no hay. */
+        private int siguiente;
+
+        /* Construye un nuevo iterador. */
+        public Iterador() {
+            siguiente = ConjuntoBits.this.siguiente(0);
+        }
+
+        /* Nos dice si hay un siguiente elemento. */
+        @Override public boolean hasNext() {
+            return siguiente >= 0;
+        }
+
+        /* Regresa el siguiente elemento. */
+        @Override public Integer next() {
+            if (siguiente < 0)
+                throw new NoSuchElementException();
+            int e = siguiente;
+            siguiente = e == Integer.MAX_VALUE ? -1 :
+                ConjuntoBits.this.siguiente(e + 1);
+            return e;
+        }
+    }
+
+    /* Número de palabras inicial. */
+    private static final int PALABRAS_INICIALES = 1;
+
+    /* Las palabras de bits. */
+    private long[] palabras;
+    /* El número de elementos. */
+    private int elementos;
+
+    /**
+     * Crea un nuevo conjunto de bits.
+     */
+    public ConjuntoBits() {
+        palabras = new long[PALABRAS_INICIALES];
+    }
+
+    /**
+     * Crea un nuevo conjunto de bits con espacio para los enteros de 0 a
+     * <em>n</em>-1 sin tener que crecer.
+     * @param n el número tentativo de enteros posibles.
+     * @throws IllegalArgumentException si n es negativo.
+     */
+    public ConjuntoBits(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("Tamaño inválido: " + n);
+        palabras = new long[Math.max(PALABRAS_INICIALES, (n + 63) >>> 6)];
+    }
+
+    /* Crea un conjunto de bits con las palabras recibidas. */
+    private ConjuntoBits(long[] palabras) {
+        this.palabras = palabras;
+        elementos = cuenta(palabras);
+    }
+
+    /**
+     * Agrega un entero al conjunto.
+     * @param elemento el entero que queremos agregar al conjunto.
+     * @throws IllegalArgumentException si el entero es negativo.
+     */
+    public void agrega(int elemento) {
+        if (elemento < 0)
+            throw new IllegalArgumentException("Elemento negativo: " + elemento);
+        int i = elemento >>> 6;
+        if (i >= palabras.length)
+            crece(i + 1);
+        long bit = 1L << elemento;
+        if ((palabras[i] & bit) == 0) {
+            palabras[i] |= bit;
+            elementos++;
+        }
+    }
+
+    /**
+     * Agrega un entero al conjunto.
+     * @param elemento el entero que queremos agregar al conjunto.
+     * @throws IllegalArgumentException si el entero es <code>null</code> o
+     *         negativo.
+     */
+    @Override public void agrega(Integer elemento) {
+        if (elemento == null)
+            throw new IllegalArgumentException();
+        agrega(elemento.intValue());
+    }
+
+    /**
+     * Nos dice si el entero está en el conjunto.
+     * @param elemento el entero que queremos saber si está en el conjunto.
+     * @return <code>true</code> si el entero está en el conjunto,
+     *         <code>false</code> en otro caso.
+     */
+    public boolean contiene(int elemento) {
+        int i = elemento >>> 6;
+        return elemento >= 0 && i < palabras.length &&
+            (palabras[i] & (1L << elemento)) != 0;
+    }
+
+    /**
+     * Nos dice si el entero está en el conjunto.
+     * @param elemento el entero que queremos saber si está en el conjunto.
+     * @return <code>true</code> si el entero está en el conjunto,
+     *         <code>false</code> en otro caso.
+     */
+    @Override public boolean contiene(Integer elemento) {
+        return elemento != null && contiene(elemento.intValue());
+    }
+
+    /**
+     * Elimina el entero del conjunto, si está.
+     * @param elemento el entero que queremos eliminar del conjunto.
+     */
+    public void elimina(int elemento) {
+        if (!contiene(elemento))
+            return;
+        palabras[elemento >>> 6] &= ~(1L << elemento);
+        elementos--;
+    }
+
+    /**
+     * Elimina el entero del conjunto, si está.
+     * @param elemento el entero que queremos eliminar del conjunto.
+     */
+    @Override public void elimina(Integer elemento) {
+        if (elemento != null)
+            elimina(elemento.intValue());
+    }
+
+    /**
+     * Regresa el menor elemento del conjunto que sea mayor o igual al entero
+     * recibido.
+     * @param desde el entero desde el que se busca.
+     * @return el menor elemento mayor o igual a <code>desde</code>, o -1 si no
+     *         hay ninguno.
+     */
+    public int siguiente(int desde) {
+        if (desde < 0)
+            desde = 0;
+        int i = desde >>> 6;
+        if (i >= palabras.length)
+            return -1;
+        long palabra = palabras[i] & (-1L << desde);
+        while (palabra == 0) {
+            if (++i == palabras.length)
+                return -1;
+            palabra = palabras[i];
+        }
+        return (i << 6) + Long.numberOfTrailingZeros(palabra);
+    }
+
+    /**
+     * Nos dice si el conjunto es vacío.
+     * @return <code>true</code> si el conjunto es vacío, <code>false</code> en
+     *         otro caso.
+     */
+    @Override public boolean esVacia() {
+        return elementos == 0;
+    }
+
+    /**
+     * Regresa el número de elementos en el conjunto.
+     * @return el número de elementos en el conjunto.
+     */
+    @Override public int getElementos() {
+        return elementos;
+    }
+
+    /**
+     * Limpia el conjunto de elementos, dejándolo vacío.
+     */
+    @Override public void limpia() {
+        palabras = new long[PALABRAS_INICIALES];
+        elementos = 0;
+    }
+
+    /**
+     * Regresa la unión del conjunto y el conjunto recibido.
+     * @param conjunto el conjunto que queremos unir con éste.
+     * @return la unión del conjunto y el conjunto recibido.
+     */
+    public ConjuntoBits union(ConjuntoBits conjunto) {
+        long[] a = palabras, b = conjunto.palabras;
+        if (a.length < b.length) {
+            a = conjunto.palabras;
+            b = palabras;
+        }
+        long[] r = a.clone();
+        for (int i = 0; i < b.length; i++)
+            r[i] |= b[i];
+        return new ConjuntoBits(r);
+    }
+
+    /**
+     * Regresa la intersección del conjunto y el conjunto recibido.
+     * @param conjunto el conjunto que queremos intersectar con éste.
+     * @return la intersección del conjunto y el conjunto recibido.
+     */
+    public ConjuntoBits interseccion(ConjuntoBits conjunto) {
+        int n = Math.min(palabras.length, conjunto.palabras.length);
+        long[] r = new long[Math.max(PALABRAS_INICIALES, n)];
+        for (int i = 0; i < n; i++)
+            r[i] = palabras[i] & conjunto.palabras[i];
+        return new ConjuntoBits(r);
+    }
+
+    /**
+     * Regresa la diferencia del conjunto y el conjunto recibido; es decir,
+     * los elementos de este conjunto que no están en el recibido.
+     * @param conjunto el conjunto que queremos restar de éste.
+     * @return la diferencia del conjunto y el conjunto recibido.
+     */
+    public ConjuntoBits diferencia(ConjuntoBits conjunto) {
+        long[] r = palabras.clone();
+        int n = Math.min(r.length, conjunto.palabras.length);
+        for (int i = 0; i < n; i++)
+            r[i] &= ~conjunto.palabras[i];
+        return new ConjuntoBits(r);
+    }
+
+    /**
+     * Regresa la diferencia simétrica del conjunto y el conjunto recibido; es
+     * decir, los elementos que están en exactamente uno de los dos.
+     * @param conjunto el conjunto con el que queremos la diferencia simétrica.
+     * @return la diferencia simétrica del conjunto y el conjunto recibido.
+     */
+    public ConjuntoBits diferenciaSimetrica(ConjuntoBits conjunto) {
+        long[] a = palabras, b = conjunto.palabras;
+        if (a.length < b.length) {
+            a = conjunto.palabras;
+            b = palabras;
+        }
+        long[] r = a.clone();
+        for (int i = 0; i < b.length; i++)
+            r[i] ^= b[i];
+        return new ConjuntoBits(r);
+    }
+
+    /**
+     * Agrega a este conjunto todos los elementos del conjunto recibido.
+     * @param conjunto el conjunto cuyos elementos queremos agregar.
+     */
+    public void agregaTodos(ConjuntoBits conjunto) {
+        long[] b = conjunto.palabras;
+        if (b.length > palabras.length)
+            crece(b.length);
+        long[] a = palabras;
+        for (int i = 0; i < b.length; i++)
+            a[i] |= b[i];
+        elementos = cuenta(a);
+    }
+
+    /**
+     * Elimina de este conjunto todos los elementos del conjunto recibido.
+     * @param conjunto el conjunto cuyos elementos queremos eliminar.
+     */
+    public void eliminaTodos(ConjuntoBits conjunto) {
+        long[] a = palabras, b = conjunto.palabras;
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++)
+            a[i] &= ~b[i];
+        elementos = cuenta(a);
+    }
+
+    /**
+     * Deja en este conjunto únicamente los elementos que también están en el
+     * conjunto recibido.
+     * @param conjunto el conjunto con el que queremos intersectar éste.
+     */
+    public void retiene(ConjuntoBits conjunto) {
+        long[] a = palabras, b = conjunto.palabras;
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++)
+            a[i] &= b[i];
+        for (int i = n; i < a.length; i++)
+            a[i] = 0;
+        elementos = cuenta(a);
+    }
+
+    /**
+     * Regresa una representación en cadena del conjunto.
+     * @return una representación en cadena del conjunto.
+     */
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder("{ ");
+        for (int e = siguiente(0); e >= 0; ) {
+            sb.append(e);
+            e = e == Integer.MAX_VALUE ? -1 : siguiente(e + 1);
+            if (e >= 0)
+                sb.append(", ");
+        }
+        return sb.append(" }").toString();
+    }
+
+    /**
+     * Nos dice si el conjunto es igual al objeto recibido.
+     * @param o el objeto que queremos saber si es igual al conjunto.
+     * @return <code>true</code> si el objeto recibido es instancia de
+     *         ConjuntoBits, y tiene los mismos elementos.
+     */
+    @Override public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass())
+            return false;
+        ConjuntoBits c = (ConjuntoBits)o;
+        if (c.elementos != elementos)
+            return false;
+        int n = Math.min(palabras.length, c.palabras.length);
+        for (int i = 0; i < n; i++)
+            if (palabras[i] != c.palabras[i])
+                return false;
+        /* Con el mismo número de elementos y las mismas palabras en común,
+         * las palabras restantes de ambos son cero. */
+        return true;
+    }
+
+    /**
+     * Regresa un código de dispersión para el conjunto, consistente con
+     * {@link #equals}. Sólo usa las palabras distintas de cero y sus
+     * posiciones, así que no depende del tamaño del arreglo de palabras.
+     * @return un código de dispersión para el conjunto.
+     */
+    @Override public int hashCode() {
+        int h = 1;
+        for (int i = 0; i < palabras.length; i++)
+            if (palabras[i] != 0)
+                h = 31 * (31 * h + i) + Long.hashCode(palabras[i]);
+        return h;
+    }
+
+    /**
+     * Regresa un iterador para iterar el conjunto en orden creciente.
+     * @return un iterador para iterar el conjunto.
+     */
+    @Override public Iterator<Integer> iterator() {
+        return new Iterador();
+    }
+
+    /* Crece el arreglo de palabras a por lo menos n palabras. */
+    private void crece(int n) {
+        int nueva = (int)Math.min(Math.max((long)n, 2L * palabras.length),
+                                  1 << 25);
+        long[] a = new long[nueva];
+        System.arraycopy(palabras, 0, a, 0, palabras.length);
+        palabras = a;
+    }
+
+    /* Cuenta los bits prendidos en las palabras. */
+    private static int cuenta(long[] palabras) {
+        int n = 0;
+        for (long palabra : palabras)
+            n += Long.bitCount(palabra);
+        return n;
+    }
+}
@@ -0,0 +1,989 @@
+package mx.unam.ciencias.edd;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Clase para conjuntos de enteros comprimidos al estilo de los mapas de
+ * bits <em>Roaring</em>.</p>
+ *
+ * <p>Los enteros se tratan como enteros sin signo de 32 bits, y se agrupan
+ * por sus 16 bits altos. Cada grupo guarda sus 16 bits bajos en uno de tres
+ * contenedores: un arreglo ordenado si tiene a lo más 4096 elementos, un mapa
+ * de 65536 bits si tiene más, o una lista de rachas de enteros consecutivos
+ * cuando eso ocupa menos espacio. Así, el conjunto ocupa cerca de dos bytes
+ * por elemento cuando los elementos están dispersos, un bit por elemento
+ * cuando son densos, y casi nada cuando forman rangos.</p>
+ *
+ * <p>Los contenedores de rachas se crean con {@link #optimiza} y al
+ * deserializar. El formato de {@link #serializa} es el formato portable de
+ * Roaring, por lo que otras implementaciones de Roaring pueden leerlo.</p>
+ *
+ * <p>Los elementos se iteran en orden creciente sin signo; es decir, los
+ * enteros negativos van después de todos los no negativos.</p>
+ */
+public class ConjuntoRoaring implements Coleccion<Integer> {
+
+    /* Clase abstracta para los contenedores de 16 bits bajos. */
+    private abstract static class Contenedor {
+
+        /* Regresa el número de elementos del contenedor. */
+        public abstract int cardinalidad();
+
+        /* Nos dice si el contenedor tiene el valor. */
+        public abstract boolean contiene(char x);
+
+        /* Agrega un valor que no está; regresa el contenedor resultante. */
+        public abstract Contenedor agrega(char x);
+
+        /* Elimina un valor que sí está; regresa el contenedor resultante, o
+         * null si queda vacío. */
+        public abstract Contenedor elimina(char x);
+
+        /* Prende en el mapa de bits los bits de los valores. */
+        public abstract void llenaBits(long[] palabras);
+
+        /* Regresa el menor valor mayor o igual a desde, o -1. */
+        public abstract int siguiente(int desde);
+
+        /* Regresa el número de bytes del contenedor serializado. */
+        public abstract int tamanoSerializado();
+
+        /* Escribe el contenedor en un búfer Little Endian. */
+        public abstract void escribe(ByteBuffer salida);
+
+        /* Regresa una copia del contenedor. */
+        public abstract Contenedor copia();
+
+        /* Regresa el número de rachas de valores consecutivos. */
+        public abstract int rachas();
+    }
+
+    /* Contenedor con un arreglo ordenado de valores. */
+    private static final class Arreglo extends Contenedor {
+
+        /* Los valores, ordenados. */
+        private char[] valores;
+        /* El número de valores. */
+        private int n;
+
+        /* Construye un arreglo con los valores recibidos. */
+        public Arreglo(char[] valores, int n) {
+            this.valores = valores;
+            this.n = n;
+        }
+
+        @Override public int cardinalidad() {
+            return n;
+        }
+
+        @Override public boolean contiene(char x) {
+            return Arrays.binarySearch(valores, 0, n, x) >= 0;
+        }
+
+        @Override public Contenedor agrega(char x) {
+            if (n == MAXIMO_ARREGLO) {
+                long[] palabras = new long[PALABRAS_MAPA];
+                llenaBits(palabras);
+                return new Mapa(palabras, n).agrega(x);
+            }
+            int i = -Arrays.binarySearch(valores, 0, n, x) - 1;
+            if (n == valores.length)
+                valores = Arrays.copyOf(valores,
+                                        Math.min(MAXIMO_ARREGLO,
+                                                 Math.max(4, 2 * n)));
+            System.arraycopy(valores, i, valores, i + 1, n - i);
+            valores[i] = x;
+            n++;
+            return this;
+        }
+
+        @Override public Contenedor elimina(char x) {
+            int i = Arrays.binarySearch(valores, 0, n, x);
+            System.arraycopy(valores, i + 1, valores, i, n - i - 1);
+            return --n == 0 ? null : this;
+        }
+
+        @Override public void llenaBits(long[] palabras) {
+            for (int i = 0; i < n; i++)
+                palabras[valores[i] >>> 6] |= 1L << valores[i];
+        }
+
+        @Override public int siguiente(int desde) {
+            if (desde > 0xFFFF)
+                return -1;
+            int i = Arrays.binarySearch(valores, 0, n, (char)desde);
+            if (i < 0)
+                i = -i - 1;
+            return i < n ? valores[i] : -1;
+        }
+
+        @Override public int tamanoSerializado() {
+            return 2 * n;
+        }
+
+        @Override public void escribe(ByteBuffer salida) {
+            for (int i = 0; i < n; i++)
+                salida.putChar(valores[i]);
+        }
+
+        @Override public Contenedor copia() {
+            return new Arreglo(Arrays.copyOf(valores, n), n);
+        }
+
+        @Override public int rachas() {
+            int r = n == 0 ? 0 : 1;
+            for (int i = 1; i < n; i++)
+                if (valores[i] != valores[i - 1] + 1)
+                    r++;
+            return r;
+        }
+    }
+
+    /* Contenedor con un mapa de 65536 bits. */
+    private static final class Mapa extends Contenedor {
+
+        /* Las palabras del mapa. */
+        private long[] palabras;
+        /* El número de bits prendidos. */
+        private int cardinalidad;
+
+        /* Construye un mapa con las palabras y cardinalidad recibidas. */
+        public Mapa(long[] palabras, int cardinalidad) {
+            this.palabras = palabras;
+            this.cardinalidad = cardinalidad;
+        }
+
+        @Override public int cardinalidad() {
+            return cardinalidad;
+        }
+
+        @Override public boolean contiene(char x) {
+            return (palabras[x >>> 6] & (1L << x)) != 0;
+        }
+
+        @Override public Contenedor agrega(char x) {
+            palabras[x >>> 6] |= 1L << x;
+            cardinalidad++;
+            return this;
+        }
+
+        @Override public Contenedor elimina(char x) {
+            palabras[x >>> 6] &= ~(1L << x);
+            if (--cardinalidad > MAXIMO_ARREGLO)
+                return this;
+            return desdeBits(palabras, cardinalidad);
+        }
+
+        @Override public void llenaBits(long[] destino) {
+            for (int i = 0; i < PALABRAS_MAPA; i++)
+                destino[i] |= palabras[i];
+        }
+
+        @Override public int siguiente(int desde) {
+            if (desde > 0xFFFF)
+                return -1;
+            int i = desde >>> 6;
+            long palabra = palabras[i] & (-1L << desde);
+            while (palabra == 0) {
+                if (++i == PALABRAS_MAPA)
+                    return -1;
+                palabra = palabras[i];
+            }
+            return (i << 6) + Long.numberOfTrailingZeros(palabra);
+        }
+
+        @Override public int tamanoSerializado() {
+            return 8 * PALABRAS_MAPA;
+        }
+
+        @Override public void escribe(ByteBuffer salida) {
+            for (long palabra : palabras)
+                salida.putLong(palabra);
+        }
+
+        @Override public Contenedor copia() {
+            return new Mapa(palabras.clone(), cardinalidad);
+        }
+
+        @Override public int rachas() {
+            int r = 0;
+            long anterior = 0;
+            for (long palabra : palabras) {
+                r += Long.bitCount(palabra & ~((palabra << 1) |
+                                               (anterior >>> 63)));
+                anterior = palabra;
+            }
+            return r;
+        }
+    }
+
+    /* Contenedor con rachas de valores consecutivos. */
+    private static final class Rachas extends Contenedor {
+
+        /* Las rachas, como pares de inicio y longitud menos uno. */
+        private char[] rachas;
+        /* El número de rachas. */
+        private int n;
+        /* El número de valores. */
+        private int cardinalidad;
+
+        /* Construye un contenedor con las rachas recibidas. */
+        public Rachas(char[] rachas, int n) {
+            this.rachas = rachas;
+            this.n = n;
+            for (int i = 0; i < n; i++)
+                cardinalidad += rachas[2 * i + 1] + 1;
+        }
+
+        @Override public int cardinalidad() {
+            return cardinalidad;
+        }
+
+        @Override public boolean contiene(char x) {
+            int i = racha(x);
+            return i >= 0 && x <= rachas[2 * i] + rachas[2 * i + 1];
+        }
+
+        @Override public Contenedor agrega(char x) {
+            return mutable().agrega(x);
+        }
+
+        @Override public Contenedor elimina(char x) {
+            if (cardinalidad == 1)
+                return null;
+            return mutable().elimina(x);
+        }
+
+        @Override public void llenaBits(long[] palabras) {
+            for (int i = 0; i < n; i++)
+                prendeRango(palabras, rachas[2 * i],
+                            rachas[2 * i] + rachas[2 * i + 1]);
+        }
+
+        @Override public int siguiente(int desde) {
+            if (desde > 0xFFFF)
+                return -1;
+            int i = racha((char)desde);
+            if (i >= 0 && desde <= rachas[2 * i] + rachas[2 * i + 1])
+                return desde;
+            return i + 1 < n ? rachas[2 * (i + 1)] : -1;
+        }
+
+        @Override public int tamanoSerializado() {
+            return 2 + 4 * n;
+        }
+
+        @Override public void escribe(ByteBuffer salida) {
+            salida.putChar((char)n);
+            for (int i = 0; i < 2 * n; i++)
+                salida.putChar(rachas[i]);
+        }
+
+        @Override public Contenedor copia() {
+            return new Rachas(Arrays.copyOf(rachas, 2 * n), n);
+        }
+
+        @Override public int rachas() {
+            return n;
+        }
+
+        /* Regresa el índice de la última racha que comienza en x o antes, o
+         * -1 si no hay. */
+        private int racha(char x) {
+            int a = 0, b = n - 1;
+            while (a <= b) {
+                int m = (a + b) >>> 1;
+                if (rachas[2 * m] <= x)
+                    a = m + 1;
+                else
+                    b = m - 1;
+            }
+            return b;
+        }
+
+        /* Regresa un arreglo o mapa con los mismos valores. */
+        private Contenedor mutable() {
+            long[] palabras = new long[PALABRAS_MAPA];
+            llenaBits(palabras);
+            return desdeBits(palabras, cardinalidad);
+        }
+    }
+
+    /* Clase privada para iteradores de conjuntos Roaring. */
+    private class Iterador implements Iterator<Integer> {
+
+        /* El contenedor actual. */
+        private int contenedor;
+        /* El siguiente valor en el contenedor actual, o -1. */
+        private int valor;
+
+        /* Construye un nuevo iterador. */
+        public Iterador() {
+            valor = tamano > 0 ? contenedores[0].siguiente(0) : -1;
+        }
+
+        /* Nos dice si hay un siguiente elemento. */
+        @Override public boolean hasNext() {
+            return valor >= 0;
+        }
+
+        /* Regresa el siguiente elemento. */
+        @Override public Integer next() {
+            if (valor < 0)
+                throw new NoSuchElementException();
+            int e = (llaves[contenedor] << 16) | valor;
+            valor = contenedores[contenedor].siguiente(valor + 1);
+            if (valor < 0 && ++contenedor < tamano)
+                valor = contenedores[contenedor].siguiente(0);
+            return e;
+        }
+    }
+
+    /* Máximo número de elementos de un contenedor arreglo. */
+    private static final int MAXIMO_ARREGLO = 4096;
+    /* Número de palabras de un contenedor mapa. */
+    private static final int PALABRAS_MAPA = 1024;
+    /* Galletas del formato portable, sin y con contenedores de rachas. */
+    private static final int GALLETA_SIN_RACHAS = 12346;
+    private static final int GALLETA_CON_RACHAS = 12347;
+    /* Número de contenedores desde el cual el formato con rachas incluye
+     * los desplazamientos de los contenedores. */
+    private static final int MINIMO_DESPLAZAMIENTOS = 4;
+
+    /* Los 16 bits altos de cada contenedor, ordenados. */
+    private char[] llaves;
+    /* Los contenedores. */
+    private Contenedor[] contenedores;
+    /* El número de contenedores. */
+    private int tamano;
+    /* El número de elementos. */
+    private long elementos;
+
+    /**
+     * Crea un nuevo conjunto Roaring vacío.
+     */
+    public ConjuntoRoaring() {
+        llaves = new char[4];
+        contenedores = new Contenedor[4];
+    }
+
+    /**
+     * Agrega un entero al conjunto.
+     * @param elemento el entero que queremos agregar al conjunto.
+     */
+    public void agrega(int elemento) {
+        char alto = (char)(elemento >>> 16);
+        char bajo = (char)elemento;
+        int i = buscaLlave(alto);
+        if (i < 0) {
+            i = -i - 1;
+            inserta(i, alto, new Arreglo(new char[4], 0));
+        } else if (contenedores[i].contiene(bajo)) {
+            return;
+        }
+        contenedores[i] = contenedores[i].agrega(bajo);
+        elementos++;
+    }
+
+    /**
+     * Agrega un entero al conjunto.
+     * @param elemento el entero que queremos agregar al conjunto.
+     * @throws IllegalArgumentException si el entero es <code>null</code>.
+     */
+    @Override public void agrega(Integer elemento) {
+        if (elemento == null)
+            throw new IllegalArgumentException();
+        agrega(elemento.intValue());
+    }
+
+    /**
+     * Nos dice si el entero está en el conjunto.
+     * @param elemento el entero que queremos saber si está en el conjunto.
+     * @return <code>true</code> si el entero está en el conjunto,
+     *         <code>false</code> en otro caso.
+     */
+    public boolean contiene(int elemento) {
+        int i = buscaLlave((char)(elemento >>> 16));
+        return i >= 0 && contenedores[i].contiene((char)elemento);
+    }
+
+    /**
+     * Nos dice si el entero está en el conjunto.
+     * @param elemento el entero que queremos saber si está en el conjunto.
+     * @return <code>true</code> si el entero está en el conjunto,
+     *         <code>false</code> en otro caso.
+     */
+    @Override public boolean contiene(Integer elemento) {
+        return elemento != null && contiene(elemento.intValue());
+    }
+
+    /**
+     * Elimina el entero del conjunto, si está.
+     * @param elemento el entero que queremos eliminar del conjunto.
+     */
+    public void elimina(int elemento) {
+        int i = buscaLlave((char)(elemento >>> 16));
+        char bajo = (char)elemento;
+        if (i < 0 || !contenedores[i].contiene(bajo))
+            return;
+        contenedores[i] = contenedores[i].elimina(bajo);
+        elementos--;
+        if (contenedores[i] == null) {
+            System.arraycopy(llaves, i + 1, llaves, i, tamano - i - 1);
+            System.arraycopy(contenedores, i + 1, contenedores, i,
+                             tamano - i - 1);
+            contenedores[--tamano] = null;
+        }
+    }
+
+    /**
+     * Elimina el entero del conjunto, si está.
+     * @param elemento el entero que queremos eliminar del conjunto.
+     */
+    @Override public void elimina(Integer elemento) {
+        if (elemento != null)
+            elimina(elemento.intValue());
+    }
+
+    /**
+     * Nos dice si el conjunto es vacío.
+     * @return <code>true</code> si el conjunto es vacío, <code>false</code> en
+     *         otro caso.
+     */
+    @Override public boolean esVacia() {
+        return elementos == 0;
+    }
+
+    /**
+     * Regresa el número de elementos en el conjunto. Si el conjunto tiene más
+     * de {@link Integer#MAX_VALUE} elementos, regresa {@link
+     * Integer#MAX_VALUE}.
+     * @return el número de elementos en el conjunto.
+     */
+    @Override public int getElementos() {
+        return (int)Math.min(elementos, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Limpia el conjunto de elementos, dejándolo vacío.
+     */
+    @Override public void limpia() {
+        llaves = new char[4];
+        contenedores = new Contenedor[4];
+        tamano = 0;
+        elementos = 0;
+    }
+
+    /**
+     * Regresa la unión del conjunto y el conjunto recibido.
+     * @param conjunto el conjunto que queremos unir con éste.
+     * @return la unión del conjunto y el conjunto recibido.
+     */
+    public ConjuntoRoaring union(ConjuntoRoaring conjunto) {
+        ConjuntoRoaring r = new ConjuntoRoaring(tamano + conjunto.tamano);
+        int i = 0, j = 0;
+        while (i < tamano && j < conjunto.tamano) {
+            char a = llaves[i], b = conjunto.llaves[j];
+            if (a < b) {
+                r.anexa(a, contenedores[i++].copia());
+            } else if (b < a) {
+                r.anexa(b, conjunto.contenedores[j++].copia());
+            } else {
+                r.anexa(a, union(contenedores[i++],
+                                 conjunto.contenedores[j++]));
+            }
+        }
+        while (i < tamano) {
+            r.anexa(llaves[i], contenedores[i].copia());
+            i++;
+        }
+        while (j < conjunto.tamano) {
+            r.anexa(conjunto.llaves[j], conjunto.contenedores[j].copia());
+            j++;
+        }
+        return r;
+    }
+
+    /**
+     * Regresa la intersección del conjunto y el conjunto recibido.
+     * @param conjunto el conjunto que queremos intersectar con éste.
+     * @return la intersección del conjunto y el conjunto recibido.
+     */
+    public ConjuntoRoaring interseccion(ConjuntoRoaring conjunto) {
+        ConjuntoRoaring r =
+            new ConjuntoRoaring(Math.min(tamano, conjunto.tamano));
+        int i = 0, j = 0;
+        while (i < tamano && j < conjunto.tamano) {
+            char a = llaves[i], b = conjunto.llaves[j];
+            if (a < b) {
+                i++;
+            } else if (b < a) {
+                j++;
+            } else {
+                Contenedor c = interseccion(contenedores[i++],
+                                            conjunto.contenedores[j++]);
+                if (c != null)
+                    r.anexa(a, c);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Cambia cada contenedor por uno de rachas si así ocupa menos espacio, o
+     * de regreso a un arreglo o mapa si ya no le conviene. Conviene llamarlo
+     * después de agregar rangos de enteros consecutivos, y antes de
+     * serializar.
+     */
+    public void optimiza() {
+        for (int i = 0; i < tamano; i++)
+            contenedores[i] = optimiza(contenedores[i]);
+    }
+
+    /**
+     * Regresa el número de bytes que ocupa el conjunto serializado.
+     * @return el número de bytes que ocupa el conjunto serializado.
+     */
+    public int tamanoSerializado() {
+        boolean conRachas = tieneRachas();
+        int t;
+        if (conRachas) {
+            t = 4 + (tamano + 7) / 8 + 4 * tamano;
+            if (tamano >= MINIMO_DESPLAZAMIENTOS)
+                t += 4 * tamano;
+        } else {
+            t = 8 + 8 * tamano;
+        }
+        for (int i = 0; i < tamano; i++)
+            t += contenedores[i].tamanoSerializado();
+        return t;
+    }
+
+    /**
+     * Serializa el conjunto en el formato portable de Roaring.
+     * @return un arreglo con el conjunto serializado.
+     */
+    public byte[] serializa() {
+        byte[] bytes = new byte[tamanoSerializado()];
+        ByteBuffer salida = ByteBuffer.wrap(bytes)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        boolean conRachas = tieneRachas();
+        boolean desplazamientos = true;
+        if (conRachas) {
+            salida.putInt(GALLETA_CON_RACHAS | ((tamano - 1) << 16));
+            byte[] bitsRachas = new byte[(tamano + 7) / 8];
+            for (int i = 0; i < tamano; i++)
+                if (contenedores[i] instanceof Rachas)
+                    bitsRachas[i >>> 3] |= 1 << (i & 7);
+            salida.put(bitsRachas);
+            desplazamientos = tamano >= MINIMO_DESPLAZAMIENTOS;
+        } else {
+            salida.putInt(GALLETA_SIN_RACHAS);
+            salida.putInt(tamano);
+        }
+        for (int i = 0; i < tamano; i++) {
+            salida.putChar(llaves[i]);
+            salida.putChar((char)(contenedores[i].cardinalidad() - 1));
+        }
+        if (desplazamientos) {
+            int desplazamiento = salida.position() + 4 * tamano;
+            for (int i = 0; i < tamano; i++) {
+                salida.putInt(desplazamiento);
+                desplazamiento += contenedores[i].tamanoSerializado();
+            }
+        }
+        for (int i = 0; i < tamano; i++)
+            contenedores[i].escribe(salida);
+        return bytes;
+    }
+
+    /**
+     * Deserializa un conjunto en el formato portable de Roaring, a partir de
+     * la posición del búfer. Al terminar, la posición del búfer queda
+     * después del conjunto. El orden de bytes del búfer no importa.
+     * @param datos el búfer con el conjunto serializado.
+     * @return el conjunto deserializado.
+     * @throws IllegalArgumentException si los datos no son un conjunto
+     *         serializado válido.
+     */
+    public static ConjuntoRoaring deserializa(ByteBuffer datos) {
+        ByteBuffer entrada = datos.slice().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            int galleta = entrada.getInt();
+            int n;
+            byte[] bitsRachas = null;
+            boolean desplazamientos = true;
+            if ((galleta & 0xFFFF) == GALLETA_CON_RACHAS) {
+                n = (galleta >>> 16) + 1;
+                bitsRachas = new byte[(n + 7) / 8];
+                entrada.get(bitsRachas);
+                desplazamientos = n >= MINIMO_DESPLAZAMIENTOS;
+            } else if (galleta == GALLETA_SIN_RACHAS) {
+                n = entrada.getInt();
+            } else {
+                throw new IllegalArgumentException("Galleta inválida: " +
+                                                   galleta);
+            }
+            if (n < 0 || n > 0x10000)
+                throw new IllegalArgumentException("Número de contenedores " +
+                                                   "inválido: " + n);
+            char[] llaves = new char[n];
+            int[] cardinalidades = new int[n];
+            for (int i = 0; i < n; i++) {
+                llaves[i] = entrada.getChar();
+                cardinalidades[i] = entrada.getChar() + 1;
+                if (i > 0 && llaves[i] <= llaves[i - 1])
+                    throw new IllegalArgumentException("Llaves desordenadas");
+            }
+            if (desplazamientos)
+                entrada.position(entrada.position() + 4 * n);
+            ConjuntoRoaring r = new ConjuntoRoaring(n);
+            for (int i = 0; i < n; i++) {
+                Contenedor c;
+                if (bitsRachas != null &&
+                    (bitsRachas[i >>> 3] & (1 << (i & 7))) != 0) {
+                    int m = entrada.getChar();
+                    char[] rachas = new char[2 * m];
+                    int fin = -2;
+                    for (int k = 0; k < m; k++) {
+                        rachas[2 * k] = entrada.getChar();
+                        rachas[2 * k + 1] = entrada.getChar();
+                        if (rachas[2 * k] <= fin + 1 ||
+                            rachas[2 * k] + rachas[2 * k + 1] > 0xFFFF)
+                            throw new IllegalArgumentException("Rachas " +
+                                                               "inválidas");
+                        fin = rachas[2 * k] + rachas[2 * k + 1];
+                    }
+                    c = new Rachas(rachas, m);
+                } else if (cardinalidades[i] > MAXIMO_ARREGLO) {
+                    long[] palabras = new long[PALABRAS_MAPA];
+                    for (int k = 0; k < PALABRAS_MAPA; k++)
+                        palabras[k] = entrada.getLong();
+                    c = new Mapa(palabras, cuenta(palabras));
+                } else {
+                    char[] valores = new char[cardinalidades[i]];
+                    for (int k = 0; k < valores.length; k++) {
+                        valores[k] = entrada.getChar();
+                        if (k > 0 && valores[k] <= valores[k - 1])
+                            throw new IllegalArgumentException("Valores " +
+                                                               "desordenados");
+                    }
+                    c = new Arreglo(valores, valores.length);
+                }
+                if (c.cardinalidad() != cardinalidades[i])
+                    throw new IllegalArgumentException("Cardinalidad " +
+                                                       "inconsistente");
+                r.anexa(llaves[i], c);
+            }
+            datos.position(datos.position() + entrada.position());
+            return r;
+        } catch (BufferUnderflowException bue) {
+            throw new IllegalArgumentException("Datos incompletos");
+        }
+    }
+
+    /**
+     * Regresa una representación en cadena del conjunto.
+     * @return una representación en cadena del conjunto.
+     */
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder("{ ");
+        Iterator<Integer> iterador = iterator();
+        while (iterador.hasNext()) {
+            sb.append(Integer.toUnsignedString(iterador.next()));
+            if (iterador.hasNext())
+                sb.append(", ");
+        }
+        return sb.append(" }").toString();
+    }
+
+    /**
+     * Nos dice si el conjunto es igual al objeto recibido.
+     * @param o el objeto que queremos saber si es igual al conjunto.
+     * @return <code>true</code> si el objeto recibido es instancia de
+     *         ConjuntoRoaring, y tiene los mismos elementos.
+     */
+    @Override public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass())
+            return false;
+        ConjuntoRoaring c = (ConjuntoRoaring)o;
+        if (c.elementos != elementos || c.tamano != tamano)
+            return false;
+        for (int i = 0; i < tamano; i++) {
+            if (llaves[i] != c.llaves[i] ||
+                contenedores[i].cardinalidad() !=
+                c.contenedores[i].cardinalidad())
+                return false;
+            Contenedor a = contenedores[i], b = c.contenedores[i];
+            for (int v = a.siguiente(0); v >= 0; v = a.siguiente(v + 1))
+                if (!b.contiene((char)v))
+                    return false;
+        }
+        return true;
+    }
+
+    /**
+     * Regresa un código de dispersión para el conjunto, consistente con
+     * {@link #equals}. Usa la llave y los elementos de cada contenedor, así
+     * que no depende de cómo se representa cada contenedor.
+     * @return un código de dispersión para el conjunto.
+     */
+    @Override public int hashCode() {
+        int h = 1;
+        for (int i = 0; i < tamano; i++) {
+            h = 31 * h + llaves[i];
+            Contenedor a = contenedores[i];
+            for (int v = a.siguiente(0); v >= 0; v = a.siguiente(v + 1))
+                h = 31 * h + v;
+        }
+        return h;
+    }
+
+    /**
+     * Regresa un iterador para iterar el conjunto en orden creciente sin
+     * signo.
+     * @return un iterador para iterar el conjunto.
+     */
+    @Override public Iterator<Integer> iterator() {
+        return new Iterador();
+    }
+
+    /* Crea un conjunto vacío con espacio para n contenedores. */
+    private ConjuntoRoaring(int n) {
+        llaves = new char[Math.max(4, n)];
+        contenedores = new Contenedor[Math.max(4, n)];
+    }
+
+    /* Busca una llave; regresa su índice, o -(punto de inserción) - 1. */
+    private int buscaLlave(char alto) {
+        return Arrays.binarySearch(llaves, 0, tamano, alto);
+    }
+
+    /* Inserta un contenedor con la llave recibida en el índice i. */
+    private void inserta(int i, char alto, Contenedor c) {
+        if (tamano == llaves.length) {
+            llaves = Arrays.copyOf(llaves, 2 * tamano);
+            contenedores = Arrays.copyOf(contenedores, 2 * tamano);
+        }
+        System.arraycopy(llaves, i, llaves, i + 1, tamano - i);
+        System.arraycopy(contenedores, i, contenedores, i + 1, tamano - i);
+        llaves[i] = alto;
+        contenedores[i] = c;
+        tamano++;
+    }
+
+    /* Agrega un contenedor con una llave mayor a todas las actuales. */
+    private void anexa(char alto, Contenedor c) {
+        inserta(tamano, alto, c);
+        elementos += c.cardinalidad();
+    }
+
+    /* Nos dice si algún contenedor es de rachas. */
+    private boolean tieneRachas() {
+        for (int i = 0; i < tamano; i++)
+            if (contenedores[i] instanceof Rachas)
+                return true;
+        return false;
+    }
+
+    /* Regresa la unión de dos contenedores. */
+    private static Contenedor union(Contenedor a, Contenedor b) {
+        if (a instanceof Arreglo && b instanceof Arreglo &&
+            a.cardinalidad() + b.cardinalidad() <= MAXIMO_ARREGLO)
+            return unionArreglos((Arreglo)a, (Arreglo)b);
+        if (a instanceof Rachas && b instanceof Rachas)
+            return optimiza(unionRachas((Rachas)a, (Rachas)b));
+        long[] palabras = new long[PALABRAS_MAPA];
+        a.llenaBits(palabras);
+        b.llenaBits(palabras);
+        return desdeBits(palabras, cuenta(palabras));
+    }
+
+    /* Regresa la intersección de dos contenedores, o null si es vacía. */
+    private static Contenedor interseccion(Contenedor a, Contenedor b) {
+        if (b instanceof Arreglo && !(a instanceof Arreglo)) {
+            Contenedor t = a;
+            a = b;
+            b = t;
+        }
+        if (a instanceof Arreglo) {
+            Arreglo x = (Arreglo)a;
+            char[] valores = new char[x.n];
+            int n = 0;
+            for (int i = 0; i < x.n; i++)
+                if (b.contiene(x.valores[i]))
+                    valores[n++] = x.valores[i];
+            return n == 0 ? null : new Arreglo(valores, n);
+        }
+        if (a instanceof Rachas && b instanceof Rachas)
+            return optimiza(interseccionRachas((Rachas)a, (Rachas)b));
+        long[] pa = new long[PALABRAS_MAPA];
+        long[] pb = new long[PALABRAS_MAPA];
+        a.llenaBits(pa);
+        b.llenaBits(pb);
+        int cardinalidad = 0;
+        for (int i = 0; i < PALABRAS_MAPA; i++) {
+            pa[i] &= pb[i];
+            cardinalidad += Long.bitCount(pa[i]);
+        }
+        return desdeBits(pa, cardinalidad);
+    }
+
+    /* Mezcla dos arreglos ordenados. */
+    private static Arreglo unionArreglos(Arreglo a, Arreglo b) {
+        char[] valores = new char[a.n + b.n];
+        int i = 0, j = 0, n = 0;
+        while (i < a.n && j < b.n) {
+            char x = a.valores[i], y = b.valores[j];
+            if (x <= y) {
+                valores[n++] = x;
+                i++;
+                if (x == y)
+                    j++;
+            } else {
+                valores[n++] = y;
+                j++;
+            }
+        }
+        while (i < a.n)
+            valores[n++] = a.valores[i++];
+        while (j < b.n)
+            valores[n++] = b.valores[j++];
+        return new Arreglo(valores, n);
+    }
+
+    /* Mezcla dos listas de rachas. */
+    private static Contenedor unionRachas(Rachas a, Rachas b) {
+        char[] rachas = new char[2 * (a.n + b.n)];
+        int i = 0, j = 0, n = 0;
+        int inicio = -1, fin = -2;
+        while (i < a.n || j < b.n) {
+            int s, e;
+            if (j >= b.n || (i < a.n && a.rachas[2 * i] <= b.rachas[2 * j])) {
+                s = a.rachas[2 * i];
+                e = s + a.rachas[2 * i + 1];
+                i++;
+            } else {
+                s = b.rachas[2 * j];
+                e = s + b.rachas[2 * j + 1];
+                j++;
+            }
+            if (s <= fin + 1) {
+                fin = Math.max(fin, e);
+            } else {
+                if (inicio >= 0) {
+                    rachas[2 * n] = (char)inicio;
+                    rachas[2 * n++ + 1] = (char)(fin - inicio);
+                }
+                inicio = s;
+                fin = e;
+            }
+        }
+        if (inicio >= 0) {
+            rachas[2 * n] = (char)inicio;
+            rachas[2 * n++ + 1] = (char)(fin - inicio);
+        }
+        return new Rachas(rachas, n);
+    }
+
+    /* Intersecta dos listas de rachas; regresa null si es vacía. */
+    private static Contenedor interseccionRachas(Rachas a, Rachas b) {
+        char[] rachas = new char[2 * (a.n + b.n)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.n && j < b.n) {
+            int sa = a.rachas[2 * i], ea = sa + a.rachas[2 * i + 1];
+            int sb = b.rachas[2 * j], eb = sb + b.rachas[2 * j + 1];
+            int s = Math.max(sa, sb), e = Math.min(ea, eb);
+            if (s <= e) {
+                rachas[2 * n] = (char)s;
+                rachas[2 * n++ + 1] = (char)(e - s);
+            }
+            if (ea < eb)
+                i++;
+            else
+                j++;
+        }
+        return n == 0 ? null : new Rachas(rachas, n);
+    }
+
+    /* Regresa el contenedor con la representación más pequeña para los
+     * valores del contenedor recibido. */
+    private static Contenedor optimiza(Contenedor c) {
+        if (c == null)
+            return null;
+        int rachas = c.rachas();
+        int cardinalidad = c.cardinalidad();
+        int tamanoRachas = 2 + 4 * rachas;
+        int tamanoOtro = cardinalidad > MAXIMO_ARREGLO ?
+            8 * PALABRAS_MAPA : 2 * cardinalidad;
+        if (tamanoRachas < tamanoOtro) {
+            if (c instanceof Rachas)
+                return c;
+            char[] r = new char[2 * rachas];
+            int n = 0;
+            for (int v = c.siguiente(0); v >= 0; ) {
+                int fin = v;
+                int w;
+                while ((w = c.siguiente(fin + 1)) == fin + 1)
+                    fin = w;
+                r[2 * n] = (char)v;
+                r[2 * n++ + 1] = (char)(fin - v);
+                v = w;
+            }
+            return new Rachas(r, n);
+        }
+        if (!(c instanceof Rachas))
+            return c;
+        long[] palabras = new long[PALABRAS_MAPA];
+        c.llenaBits(palabras);
+        return desdeBits(palabras, cardinalidad);
+    }
+
+    /* Regresa un arreglo o un mapa con los bits recibidos, según la
+     * cardinalidad; regresa null si es 0. */
+    private static Contenedor desdeBits(long[] palabras, int cardinalidad) {
+        if (cardinalidad == 0)
+            return null;
+        if (cardinalidad > MAXIMO_ARREGLO)
+            return new Mapa(palabras, cardinalidad);
+        char[] valores = new char[cardinalidad];
+        int n = 0;
+        for (int i = 0; i < PALABRAS_MAPA; i++) {
+            long palabra = palabras[i];
+            while (palabra != 0) {
+                valores[n++] = (char)((i << 6) +
+                                      Long.numberOfTrailingZeros(palabra));
+                palabra &= palabra - 1;
+            }
+        }
+        return new Arreglo(valores, n);
+    }
+
+    /* Prende los bits de inicio a fin, inclusive. */
+    private static void prendeRango(long[] palabras, int inicio, int fin) {
+        int a = inicio >>> 6, b = fin >>> 6;
+        long primera = -1L << inicio;
+        long ultima = -1L >>> (63 - (fin & 63));
+        if (a == b) {
+            palabras[a] |= primera & ultima;
+            return;
+        }
+        palabras[a] |= primera;
+        for (int i = a + 1; i < b; i++)
+            palabras[i] = -1L;
+        palabras[b] |= ultima;
+    }
+
+    /* Cuenta los bits prendidos en las palabras. */
+    private static int cuenta(long[] palabras) {
+        int n = 0;
+        for (long palabra : palabras)
+            n += Long.bitCount(palabra);
+        return n;
+    }
+}
@@ -0,0 +1,190 @@
+package mx.unam.ciencias.edd;
+
+/**
+ * <p>Clase para bosquejos Count-Min. Un bosquejo cuenta cuántas veces
+ * aparece cada elemento de un flujo en memoria constante, sin guardar los
+ * elementos: tiene <em>d</em> renglones de <em>w</em> contadores, y cada
+ * elemento incrementa un contador de cada renglón. La cuenta estimada de un
+ * elemento es el mínimo de sus contadores; nunca es menor que la cuenta
+ * real, y con probabilidad 1 - δ la excede en a lo más ε<em>N</em>, donde
+ * <em>N</em> es el total del flujo, si <em>w</em> = ⌈e/ε⌉ y <em>d</em> =
+ * ⌈ln(1/δ)⌉.</p>
+ *
+ * <p>El bosquejo usa actualización conservadora: al agregar un elemento
+ * sólo se incrementan los contadores que quedarían por debajo de la nueva
+ * estimación del elemento. Las estimaciones siguen siendo cotas superiores,
+ * pero con mucho menos error para los elementos poco frecuentes. A cambio,
+ * el bosquejo no admite cuentas negativas.</p>
+ *
+ * <p>El bosquejo obtiene una dispersión de 32 bits de cada elemento con un
+ * {@link Dispersor}, por ejemplo de {@link FabricaDispersores}, y deriva de
+ * ella el contador de cada renglón con dispersión doble, como {@link
+ * FiltroBloom}. Los bosquejos con las mismas dimensiones y el mismo
+ * dispersor se combinan con {@link #combina}; así se cuenta desde varios
+ * hilos, con un bosquejo por hilo.</p>
+ */
+public class CuentaMinima<T> {
+
+    /* El dispersor de los elementos. */
+    private Dispersor<T> dispersor;
+    /* Los contadores, renglón por renglón. */
+    private long[] contadores;
+    /* El número de contadores por renglón. */
+    private int anchura;
+    /* El número de renglones. */
+    private int profundidad;
+    /* El total de las cuentas agregadas. */
+    private long total;
+
+    /**
+     * Construye un bosquejo con las dimensiones recibidas.
+     * @param anchura el número de contadores por renglón.
+     * @param profundidad el número de renglones.
+     * @param dispersor el dispersor de los elementos.
+     * @throws IllegalArgumentException si alguna dimensión no es positiva, o
+     *         si el bosquejo tendría más de 2<sup>30</sup> contadores.
+     */
+    public CuentaMinima(int anchura, int profundidad, Dispersor<T> dispersor) {
+        if (anchura <= 0 || profundidad <= 0 ||
+            (long)anchura * profundidad > 1 << 30)
+            throw new IllegalArgumentException("Dimensiones inválidas");
+        this.anchura = anchura;
+        this.profundidad = profundidad;
+        this.dispersor = dispersor;
+        contadores = new long[anchura * profundidad];
+    }
+
+    /**
+     * Construye un bosquejo cuyas estimaciones exceden la cuenta real en a lo
+     * más ε veces el total del flujo, con probabilidad 1 - δ.
+     * @param epsilon el error relativo al total del flujo.
+     * @param delta la probabilidad de exceder el error.
+     * @param dispersor el dispersor de los elementos.
+     * @throws IllegalArgumentException si ε o δ no están entre 0 y 1, o si
+     *         el bosquejo tendría más de 2<sup>30</sup> contadores.
+     */
+    public CuentaMinima(double epsilon, double delta, Dispersor<T> dispersor) {
+        this(anchura(epsilon), profundidad(delta), dispersor);
+    }
+
+    /* Regresa la anchura para el error ε. */
+    private static int anchura(double epsilon) {
+        if (!(epsilon > 0 && epsilon < 1))
+            throw new IllegalArgumentException("Epsilon inválido: " + epsilon);
+        return (int)Math.min(1 << 30, Math.ceil(Math.E / epsilon));
+    }
+
+    /* Regresa la profundidad para la probabilidad δ. */
+    private static int profundidad(double delta) {
+        if (!(delta > 0 && delta < 1))
+            throw new IllegalArgumentException("Delta inválido: " + delta);
+        return Math.max(1, (int)Math.ceil(Math.log(1 / delta)));
+    }
+
+    /**
+     * Agrega una aparición del elemento.
+     * @param elemento el elemento a contar.
+     * @return la nueva cuenta estimada del elemento.
+     * @throws IllegalArgumentException si el elemento es <code>null</code>.
+     */
+    public long agrega(T elemento) {
+        return agrega(elemento, 1);
+    }
+
+    /**
+     * Agrega varias apariciones del elemento.
+     * @param elemento el elemento a contar.
+     * @param cuenta el número de apariciones.
+     * @return la nueva cuenta estimada del elemento.
+     * @throws IllegalArgumentException si el elemento es <code>null</code> o
+     *         la cuenta es negativa.
+     */
+    public long agrega(T elemento, long cuenta) {
+        if (elemento == null || cuenta < 0)
+            throw new IllegalArgumentException();
+        long h = Dispersores.mezcla64(dispersor.dispersa(elemento));
+        int h1 = (int)h;
+        int h2 = (int)(h >>> 32) | 1;
+        long minimo = Long.MAX_VALUE;
+        for (int i = 0; i < profundidad; i++)
+            minimo = Math.min(minimo, contadores[indice(i, h1 + i * h2)]);
+        long nuevo = minimo + cuenta;
+        for (int i = 0; i < profundidad; i++) {
+            int j = indice(i, h1 + i * h2);
+            if (contadores[j] < nuevo)
+                contadores[j] = nuevo;
+        }
+        total += cuenta;
+        return nuevo;
+    }
+
+    /**
+     * Regresa la cuenta estimada del elemento. La estimación nunca es menor
+     * que la cuenta real.
+     * @param elemento el elemento a buscar.
+     * @return la cuenta estimada del elemento.
+     */
+    public long estima(T elemento) {
+        if (elemento == null)
+            return 0;
+        long h = Dispersores.mezcla64(dispersor.dispersa(elemento));
+        int h1 = (int)h;
+        int h2 = (int)(h >>> 32) | 1;
+        long minimo = Long.MAX_VALUE;
+        for (int i = 0; i < profundidad; i++)
+            minimo = Math.min(minimo, contadores[indice(i, h1 + i * h2)]);
+        return minimo;
+    }
+
+    /**
+     * Agrega a este bosquejo las cuentas del bosquejo recibido, sumando sus
+     * contadores. Ambos bosquejos deben usar dispersores equivalentes.
+     * @param bosquejo el bosquejo a combinar con éste.
+     * @throws IllegalArgumentException si los bosquejos tienen distintas
+     *         dimensiones.
+     */
+    public void combina(CuentaMinima<T> bosquejo) {
+        if (bosquejo.anchura != anchura || bosquejo.profundidad != profundidad)
+            throw new IllegalArgumentException("Dimensiones distintas");
+        for (int i = 0; i < contadores.length; i++)
+            contadores[i] += bosquejo.contadores[i];
+        total += bosquejo.total;
+    }
+
+    /**
+     * Regresa el total de las cuentas agregadas.
+     * @return el total de las cuentas agregadas.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Regresa el número de contadores por renglón.
+     * @return el número de contadores por renglón.
+     */
+    public int getAnchura() {
+        return anchura;
+    }
+
+    /**
+     * Regresa el número de renglones.
+     * @return el número de renglones.
+     */
+    public int getProfundidad() {
+        return profundidad;
+    }
+
+    /**
+     * Limpia el bosquejo, dejándolo sin cuentas.
+     */
+    public void limpia() {
+        contadores = new long[contadores.length];
+        total = 0;
+    }
+
+    /* Regresa el índice del contador del renglón i para la dispersión g. */
+    private int indice(int i, int g) {
+        return i * anchura + (int)(((g & 0xFFFFFFFFL) * anchura) >>> 32);
+    }
+}
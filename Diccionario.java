@@ -1,8 +1,10 @@
 package mx.unam.ciencias.edd;
 
 import java.lang.reflect.Array;
+import java.security.SecureRandom;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.function.Function;
 
 /**
  * Clase para diccionarios (<em>hash tables</em>). Un diccionario generaliza el
@@ -29,14 +31,20 @@ public class Diccionario<K, V> implements Iterable<V> {
     /* Clase privada para iteradores de diccionarios. */
     private class Iterador {
 
-        /* En qué lista estamos. */
+        /* En qué lista estamos, o en qué entrada compacta. */
         private int indice;
         /* Iterador auxiliar. */
         private Iterator<Entrada> iterador;
+        /* La llave de la entrada actual. */
+        protected K llave;
+        /* El valor de la entrada actual. */
+        protected V valor;
 
         /* Construye un nuevo iterador, auxiliándose de las listas del
          * diccionario. */
         public Iterador() {
+            if (entradas == null)
+                return;
             for (int i = 0; i < entradas.length; i++)
                 if (entradas[i] != null) {
                     indice = i;
@@ -47,11 +55,21 @@ public class Diccionario<K, V> implements Iterable<V> {
 
         /* Nos dice si hay una siguiente entrada. */
         public boolean hasNext() {
+            if (entradas == null)
+                return indice < elementos;
             return iterador != null;
         }
 
-        /* Regresa la siguiente entrada. */
-        public Entrada siguiente() {
+        /* Avanza a la siguiente entrada. */
+        @SuppressWarnings("unchecked") public void siguiente() {
+            if (entradas == null) {
+                if (indice >= elementos)
+                    throw new NoSuchElementException();
+                llave = (K)compacto[2 * indice];
+                valor = (V)compacto[2 * indice + 1];
+                indice++;
+                return;
+            }
             if (iterador == null)
                 throw new NoSuchElementException();
             Entrada entrada = iterador.next();
@@ -68,7 +86,8 @@ public class Diccionario<K, V> implements Iterable<V> {
                 if (nul)
                     iterador = null;
             }
-            return entrada;
+            llave = entrada.llave;
+            valor = entrada.valor;
         }
     }
 
@@ -76,14 +95,10 @@ public class Diccionario<K, V> implements Iterable<V> {
     private class IteradorLlaves extends Iterador
         implements Iterator<K> {
 
-        /* Construye un nuevo iterador de llaves del diccionario. */
-        public IteradorLlaves() {
-            new Iterador();
-        }
-
         /* Regresa el siguiente elemento. */
         @Override public K next() {
-            return super.siguiente().llave;
+            super.siguiente();
+            return llave;
         }
     }
 
@@ -91,14 +106,10 @@ public class Diccionario<K, V> implements Iterable<V> {
     private class IteradorValores extends Iterador
         implements Iterator<V> {
 
-        /* Construye un nuevo iterador de llaves del diccionario. */
-        public IteradorValores() {
-            new Iterador();
-        }
-
         /* Regresa el siguiente elemento. */
         @Override public V next() {
-            return super.siguiente().valor;
+            super.siguiente();
+            return valor;
         }
     }
 
@@ -108,10 +119,26 @@ public class Diccionario<K, V> implements Iterable<V> {
     /* Capacidad mínima; decidida arbitrariamente a 2^6. */
     private static final int MINIMA_CAPACIDAD = 64;
 
+    /* Capacidad máxima; la mayor potencia de 2 que cabe en un int. */
+    private static final int MAXIMA_CAPACIDAD = 1 << 30;
+
+    /* Máximo número de entradas en la representación compacta. */
+    private static final int LIMITE_COMPACTO = 8;
+
+    /* Fuente de semillas para los diccionarios con semilla aleatoria. */
+    private static final SecureRandom ALEATORIO = new SecureRandom();
+
     /* Dispersor. */
     private Dispersor<K> dispersor;
-    /* Nuestro diccionario. */
+    /* Nuestro diccionario; null mientras usamos la representación
+       compacta. */
     private Lista<Entrada>[] entradas;
+    /* Representación compacta: llaves y valores intercalados, buscados
+       linealmente. Es null una vez que usamos el arreglo de listas. */
+    private Object[] compacto;
+    /* Longitud del arreglo de listas, o la que tendrá al dejar la
+       representación compacta. */
+    private int capacidad;
     /* Número de valores. */
     private int elementos;
 
@@ -149,23 +176,61 @@ public class Diccionario<K, V> implements Iterable<V> {
         this(MINIMA_CAPACIDAD, dispersor);
     }
 
+    /**
+     * Construye un diccionario con una capacidad inicial predeterminada, y un
+     * dispersor con semilla definido por el usuario. El diccionario escoge una
+     * semilla aleatoria de 128 bits propia, por lo que no se pueden calcular
+     * de antemano llaves que choquen en él.
+     * @param dispersor el dispersor con semilla a utilizar.
+     */
+    public Diccionario(DispersorConSemilla<K> dispersor) {
+        this(MINIMA_CAPACIDAD, dispersor);
+    }
+
+    /**
+     * Construye un diccionario con una capacidad inicial y un dispersor con
+     * semilla definidos por el usuario. El diccionario escoge una semilla
+     * aleatoria de 128 bits propia, por lo que no se pueden calcular de
+     * antemano llaves que choquen en él.
+     * @param capacidad la capacidad inicial del diccionario.
+     * @param dispersor el dispersor con semilla a utilizar.
+     */
+    public Diccionario(int capacidad, DispersorConSemilla<K> dispersor) {
+        this(capacidad, conSemillaAleatoria(dispersor));
+    }
+
+    /* Fija una semilla aleatoria al dispersor con semilla. */
+    private static <K> Dispersor<K>
+    conSemillaAleatoria(DispersorConSemilla<K> dispersor) {
+        long semilla0 = ALEATORIO.nextLong();
+        long semilla1 = ALEATORIO.nextLong();
+        return llave -> dispersor.dispersa(llave, semilla0, semilla1);
+    }
+
     /**
      * Construye un diccionario con una capacidad inicial y un método de
-     * dispersor definidos por el usuario.
+     * dispersor definidos por el usuario. Si la capacidad no es mayor a la
+     * capacidad mínima, el diccionario comienza con una representación
+     * compacta que busca linealmente en un arreglo pequeño, y que cambia a la
+     * tabla de dispersión en cuanto tiene más de unas cuantas entradas.
      * @param capacidad la capacidad inicial del diccionario.
      * @param dispersor el dispersor a utilizar.
      */
     public Diccionario(int capacidad, Dispersor<K> dispersor) {
         this.dispersor = dispersor;
-        int c = (capacidad < MINIMA_CAPACIDAD) ? calcularCapacidad(MINIMA_CAPACIDAD)
-                                               : calcularCapacidad(capacidad);
-        entradas = nuevoArreglo(c);
+        if (capacidad <= MINIMA_CAPACIDAD) {
+            this.capacidad = calcularCapacidad(MINIMA_CAPACIDAD);
+            compacto = new Object[0];
+        } else {
+            this.capacidad = calcularCapacidad(capacidad);
+            entradas = nuevoArreglo(this.capacidad);
+        }
     }
 
     private int calcularCapacidad(int capacidad) {
         int potencia = 1;
-        for (int i = 0; potencia <= capacidad*2; i++)
-            potencia = (int)Math.pow(2, i);
+        while (potencia <= capacidad * 2L && potencia < MAXIMA_CAPACIDAD)
+            potencia <<= 1;
         return potencia;
     }
 
@@ -180,6 +245,11 @@ public class Diccionario<K, V> implements Iterable<V> {
      public void agrega(K llave, V valor) {
          if (llave == null || valor == null)
              throw new IllegalArgumentException();
+         if (entradas == null) {
+             if (agregaCompacto(llave, valor))
+                 return;
+             promueve();
+         }
          elementos = agrega(llave, valor, elementos, entradas);
          /** Si sobrepasa la maxima carga */
          if (carga() > MAXIMA_CARGA) {
@@ -191,6 +261,7 @@ public class Diccionario<K, V> implements Iterable<V> {
                          aux = agrega(entrada.llave, entrada.valor, aux, arregloAuxiliar);
              elementos = aux;
              entradas = arregloAuxiliar;
+             capacidad = entradas.length;
          }
      }
 
@@ -226,6 +297,45 @@ public class Diccionario<K, V> implements Iterable<V> {
          return elementos;
      }
 
+    /* Agrega la entrada en la representación compacta; regresa false si ya
+     * no cabe. */
+    private boolean agregaCompacto(K llave, V valor) {
+        int i = buscaCompacto(llave);
+        if (i >= 0) {
+            compacto[2 * i + 1] = valor;
+            return true;
+        }
+        if (elementos == LIMITE_COMPACTO)
+            return false;
+        if (2 * elementos == compacto.length) {
+            Object[] nuevo = new Object[Math.max(4, 2 * compacto.length)];
+            System.arraycopy(compacto, 0, nuevo, 0, compacto.length);
+            compacto = nuevo;
+        }
+        compacto[2 * elementos] = llave;
+        compacto[2 * elementos + 1] = valor;
+        elementos++;
+        return true;
+    }
+
+    /* Regresa el índice de la llave en la representación compacta, o -1 si
+     * no está. */
+    private int buscaCompacto(Object llave) {
+        for (int i = 0; i < elementos; i++)
+            if (compacto[2 * i].equals(llave))
+                return i;
+        return -1;
+    }
+
+    /* Cambia de la representación compacta al arreglo de listas. */
+    @SuppressWarnings("unchecked") private void promueve() {
+        entradas = nuevoArreglo(capacidad);
+        int n = 0;
+        for (int i = 0; i < elementos; i++)
+            n = agrega((K)compacto[2 * i], (V)compacto[2 * i + 1], n, entradas);
+        compacto = null;
+    }
+
     /**
      * Metodo para obtener indice.
      * @param llave llave.
@@ -247,13 +357,69 @@ public class Diccionario<K, V> implements Iterable<V> {
     public V get(K llave) {
         if (llave == null)
             throw new IllegalArgumentException();
+        V valor = busca(llave);
+        if (valor == null)
+            throw new NoSuchElementException();
+        return valor;
+    }
+
+    /**
+     * Busca el valor del diccionario asociado a la llave proporcionada. A
+     * diferencia de {@link #get}, no lanza excepciones si la llave no está, por
+     * lo que es preferible cuando se esperan búsquedas fallidas.
+     * @param llave la llave para buscar el valor.
+     * @return el valor correspondiente a la llave, o <code>null</code> si la
+     *         llave es <code>null</code> o no está en el diccionario.
+     */
+    @SuppressWarnings("unchecked") public V busca(K llave) {
+        if (llave == null)
+            return null;
+        if (entradas == null) {
+            int i = buscaCompacto(llave);
+            return (i < 0) ? null : (V)compacto[2 * i + 1];
+        }
         int indice = obtenerIndice(llave, entradas);
         if (entradas[indice] == null)
-            throw new NoSuchElementException();
+            return null;
         for (Entrada entrada : entradas[indice])
             if (entrada.llave.equals(llave))
                 return entrada.valor;
-        throw new NoSuchElementException();
+        return null;
+    }
+
+    /**
+     * Regresa el valor del diccionario asociado a la llave proporcionada, o
+     * el valor predeterminado si la llave no está en el diccionario.
+     * @param llave la llave para buscar el valor.
+     * @param predeterminado el valor a regresar si la llave no está.
+     * @return el valor correspondiente a la llave, o el valor predeterminado
+     *         si la llave no está en el diccionario.
+     */
+    public V getOPredeterminado(K llave, V predeterminado) {
+        V valor = busca(llave);
+        return (valor == null) ? predeterminado : valor;
+    }
+
+    /**
+     * Regresa el valor asociado a la llave proporcionada; si la llave no está
+     * en el diccionario, calcula su valor con la función recibida y lo agrega.
+     * Si la función regresa <code>null</code>, el diccionario no se modifica.
+     * @param llave la llave para buscar el valor.
+     * @param funcion la función para calcular el valor de la llave.
+     * @return el valor asociado a la llave, o <code>null</code> si no estaba
+     *         y la función regresó <code>null</code>.
+     * @throws IllegalArgumentException si la llave es nula.
+     */
+    public V computaSiAusente(K llave, Function<? super K, ? extends V> funcion) {
+        if (llave == null)
+            throw new IllegalArgumentException();
+        V valor = busca(llave);
+        if (valor != null)
+            return valor;
+        valor = funcion.apply(llave);
+        if (valor != null)
+            agrega(llave, valor);
+        return valor;
     }
 
     /**
@@ -265,6 +431,8 @@ public class Diccionario<K, V> implements Iterable<V> {
     public boolean contiene(K llave) {
         if (llave == null)
             return false;
+        if (entradas == null)
+            return buscaCompacto(llave) >= 0;
         int indice = obtenerIndice(llave, entradas);
         if (entradas[indice] == null)
             return false;
@@ -284,6 +452,16 @@ public class Diccionario<K, V> implements Iterable<V> {
     public void elimina(K llave) {
         if (llave == null)
             throw new IllegalArgumentException();
+        if (entradas == null) {
+            int i = buscaCompacto(llave);
+            if (i < 0)
+                throw new NoSuchElementException();
+            elementos--;
+            compacto[2 * i] = compacto[2 * elementos];
+            compacto[2 * i + 1] = compacto[2 * elementos + 1];
+            compacto[2 * elementos] = compacto[2 * elementos + 1] = null;
+            return;
+        }
         int indice = obtenerIndice(llave, entradas);
         if (entradas[indice] == null)
             throw new NoSuchElementException();
@@ -307,6 +485,8 @@ public class Diccionario<K, V> implements Iterable<V> {
     public int colisiones() {
         if (elementos == 0)
             return 0;
+        if (entradas == null)
+            return elementos - 1;
         int colisiones = 0;
         for (int i = 0; i < entradas.length; i++)
             if (entradas[i] != null)
@@ -319,8 +499,21 @@ public class Diccionario<K, V> implements Iterable<V> {
      * en el diccionario.
      * @return el máximo número de colisiones para una misma llave.
      */
-    public int colisionMaxima() {
+    @SuppressWarnings("unchecked") public int colisionMaxima() {
         int colisionMaxima = 0;
+        if (entradas == null) {
+            /* Las colisiones que habría en el arreglo de listas. */
+            int mascara = capacidad - 1;
+            for (int i = 0; i < elementos; i++) {
+                int indice = dispersor.dispersa((K)compacto[2 * i]) & mascara;
+                int n = 0;
+                for (int j = 0; j < elementos; j++)
+                    if ((dispersor.dispersa((K)compacto[2 * j]) & mascara) == indice)
+                        n++;
+                colisionMaxima = Math.max(colisionMaxima, n);
+            }
+            return colisionMaxima - 1;
+        }
         for (int i = 0; i < entradas.length; i++)
             if (entradas[i] != null)
                 colisionMaxima = (entradas[i].getElementos() > colisionMaxima) ?
@@ -333,7 +526,7 @@ public class Diccionario<K, V> implements Iterable<V> {
      * @return la carga del diccionario.
      */
     public double carga() {
-        return ((double) elementos) / entradas.length;
+        return ((double) elementos) / capacidad;
     }
 
     /**
@@ -357,7 +550,10 @@ public class Diccionario<K, V> implements Iterable<V> {
      * Limpia el diccionario de elementos, dejándolo vacío.
      */
     public void limpia() {
-        entradas = nuevoArreglo(entradas.length);
+        if (entradas == null)
+            compacto = new Object[0];
+        else
+            entradas = nuevoArreglo(entradas.length);
         elementos = 0;
     }
 
@@ -371,8 +567,8 @@ public class Diccionario<K, V> implements Iterable<V> {
             return "{}";
         String aux = "{ ";
         while (iterador.hasNext()){
-            Entrada entrada = iterador.siguiente();
-            aux += "'" + entrada.llave + "': '" + entrada.valor + "', ";
+            iterador.siguiente();
+            aux += "'" + iterador.llave + "': '" + iterador.valor + "', ";
         }
         return aux + "}";
     }
@@ -393,19 +589,12 @@ public class Diccionario<K, V> implements Iterable<V> {
             return false;
         if (elementos == 0 && d.getElementos() == 0)
             return true;
-        for (int i = 0; i < entradas.length; i++)
-            if (entradas[i] != null)
-                for (Entrada entrada : entradas[i]) {
-                    V valorAuxiliar = null;
-                    try {
-                        valorAuxiliar = d.get(entrada.llave);
-                    }
-                    catch (Exception e){
-                        return false;
-                    }
-                    if (!(entrada.valor.equals(valorAuxiliar)))
-                        return false;
-                }
+        Iterador iterador = new Iterador();
+        while (iterador.hasNext()) {
+            iterador.siguiente();
+            if (!(iterador.valor.equals(d.busca(iterador.llave))))
+                return false;
+        }
         return true;
     }
 
@@ -0,0 +1,20 @@
+package mx.unam.ciencias.edd;
+
+/**
+ * Interfaz genérica para dispersores con semilla. Un diccionario puede
+ * escoger una semilla aleatoria de 128 bits al construirse, para que nadie
+ * pueda calcular de antemano llaves que choquen en él.
+ */
+@FunctionalInterface
+public interface DispersorConSemilla<T> {
+
+    /**
+     * Calcula la función de dispersión del objeto recibido con la semilla
+     * recibida.
+     * @param objeto el objeto que queremos dispersar.
+     * @param semilla0 los 64 bits bajos de la semilla.
+     * @param semilla1 los 64 bits altos de la semilla.
+     * @return el resultado de dispersar del objeto recibido.
+     */
+    public int dispersa(T objeto, long semilla0, long semilla1);
+}
@@ -0,0 +1,44 @@
+package mx.unam.ciencias.edd;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Interfaz para dispersores incrementales. Un dispersor incremental recibe
+ * su entrada en pedazos, y calcula la misma dispersión que la función de
+ * {@link Dispersores} correspondiente aplicada a la concatenación de todos
+ * los pedazos, sin necesitar la entrada completa en memoria.
+ */
+public interface DispersorIncremental {
+
+    /**
+     * Agrega bytes a la entrada del dispersor.
+     * @param datos el arreglo con los bytes a agregar.
+     * @param offset dónde comienzan los bytes en el arreglo.
+     * @param longitud el número de bytes a agregar.
+     */
+    public void actualiza(byte[] datos, int offset, int longitud);
+
+    /**
+     * Agrega los bytes restantes del búfer a la entrada del dispersor. Al
+     * terminar, la posición del búfer es su límite.
+     * @param datos el búfer con los bytes a agregar.
+     */
+    public void actualiza(ByteBuffer datos);
+
+    /**
+     * Regresa la dispersión de todos los bytes agregados desde la creación
+     * del dispersor, o desde la última vez que se reinició. Las dispersiones
+     * de 32 bits se regresan en los 32 bits bajos, y las de 128 bits regresan
+     * su primera mitad; la dispersión completa la regresa {@link
+     * DispersorIncremental128#finaliza128}. El estado del dispersor no
+     * cambia, por lo que se pueden seguir agregando bytes después de
+     * finalizar.
+     * @return la dispersión de los bytes agregados.
+     */
+    public long finaliza();
+
+    /**
+     * Reinicia el dispersor, descartando todos los bytes agregados.
+     */
+    public void reinicia();
+}
@@ -0,0 +1,16 @@
+package mx.unam.ciencias.edd;
+
+/**
+ * Interfaz para dispersores incrementales de 128 bits. Además de la primera
+ * mitad que regresa {@link #finaliza}, pueden regresar la dispersión
+ * completa.
+ */
+public interface DispersorIncremental128 extends DispersorIncremental {
+
+    /**
+     * Regresa la dispersión de 128 bits de todos los bytes agregados. Como
+     * con {@link #finaliza}, el estado del dispersor no cambia.
+     * @return un arreglo con las dos mitades de 64 bits de la dispersión.
+     */
+    public long[] finaliza128();
+}
@@ -1,26 +1,79 @@
 package mx.unam.ciencias.edd;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
 /**
  * Clase para métodos estáticos con dispersores de bytes.
  */
 public class Dispersores {
 
-    /* Constructor privado para evitar instanciación. */
-    private Dispersores() {}
+    /* Primos de xxHash64. */
+    static final long XXH_P1 = 0x9E3779B185EBCA87L;
+    static final long XXH_P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long XXH_P3 = 0x165667B19E3779F9L;
+    private static final long XXH_P4 = 0x85EBCA77C2B2AE63L;
+    static final long XXH_P5 = 0x27D4EB2F165667C5L;
 
-    /**
-     * Método auxiliar para combinar de forma Little Endian.
-     * @param a byte a.
-     * @param b byte b.
-     * @param c byte c.
-     * @param d byte d.
-     * @return entero en little endian.
-    */
-    private static int combinaLittleEndian(byte a, byte b, byte c, byte d) {
-        return ((d & 0xFF) << 24) | ((c & 0xFF) << 16) | ((b & 0xFF) << 8)
-                | ((a & 0xFF));
+    /* Constantes de MurmurHash3. */
+    private static final int MURMUR_C1 = 0xCC9E2D51;
+    private static final int MURMUR_C2 = 0x1B873593;
+    private static final long MURMUR_C1_64 = 0x87C37B91114253D5L;
+    private static final long MURMUR_C2_64 = 0x4CF5AD432745937FL;
+
+    /* Constantes de inicialización de SipHash. */
+    static final long SIP_V0 = 0x736F6D6570736575L;
+    static final long SIP_V1 = 0x646F72616E646F6DL;
+    static final long SIP_V2 = 0x6C7967656E657261L;
+    static final long SIP_V3 = 0x7465646279746573L;
+
+    /* Secreto de wyhash. */
+    static final long WY_S0 = 0xA0761D6478BD642FL;
+    static final long WY_S1 = 0xE7037ED1A0B428DBL;
+    static final long WY_S2 = 0x8EBC6AF09C88C6E3L;
+    static final long WY_S3 = 0x589965CC75374CC3L;
+
+    /* Vistas para leer palabras de arreglos y búferes de bytes en una sola
+     * lectura, sin importar su alineación. */
+    private static final VarHandle ENTERO_LE =
+        MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle ENTERO_BE =
+        MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LARGO_LE =
+        MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle BUFER_ENTERO_LE =
+        MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle BUFER_ENTERO_BE =
+        MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    /* Búfer para codificar secuencias de caracteres. */
+    private static final class Bufer {
+        /* Los bytes codificados. */
+        private byte[] bytes;
+        /* Cuántos bytes son válidos. */
+        private int longitud;
+
+        /* Construye un búfer con la capacidad recibida. */
+        private Bufer(int capacidad) {
+            bytes = new byte[capacidad];
+        }
     }
 
+    /* Máximo tamaño del búfer que se guarda en cada hilo; las secuencias
+     * más largas se codifican en un búfer temporal, para que un hilo no
+     * retenga para siempre la memoria de la secuencia más larga que ha
+     * dispersado. */
+    private static final int MAXIMO_BUFER = 1 << 16;
+    /* El búfer de cada hilo. */
+    private static final ThreadLocal<Bufer> BUFER =
+        ThreadLocal.withInitial(() -> new Bufer(256));
+
+    /* Constructor privado para evitar instanciación. */
+    private Dispersores() {}
+
     /**
      * Método auxiliar para combinar de forma Big Endian.
      * @param a byte a.
@@ -40,11 +93,22 @@ public class Dispersores {
      * @return la dispersión de XOR de la llave.
      */
     public static int dispersaXOR(byte[] llave) {
+        return dispersaXOR(llave, 0, llave.length);
+    }
+
+    /**
+     * Función de dispersión XOR.
+     * @param llave el arreglo con la llave a dispersar.
+     * @param offset dónde comienza la llave en el arreglo.
+     * @param longitud la longitud de la llave.
+     * @return la dispersión de XOR de la llave.
+     */
+    public static int dispersaXOR(byte[] llave, int offset, int longitud) {
         int r = 0;
-        int i = 0;
-        int longitud = llave.length;
+        int i = offset;
         while (longitud >= 4) {
-            r ^= combinaBigEndian(llave[i++], llave[i++], llave[i++], llave[i++]);
+            r ^= (int)ENTERO_BE.get(llave, i);
+            i += 4;
             longitud -= 4;
         }
         switch (longitud) {
@@ -67,15 +131,25 @@ public class Dispersores {
      * @return la dispersión de Bob Jenkins de la llave.
      */
     public static int dispersaBJ(byte[] llave) {
-        int longitud = llave.length;
+        return dispersaBJ(llave, 0, llave.length);
+    }
+
+    /**
+     * Función de dispersión de Bob Jenkins.
+     * @param llave el arreglo con la llave a dispersar.
+     * @param offset dónde comienza la llave en el arreglo.
+     * @param longitud la longitud de la llave.
+     * @return la dispersión de Bob Jenkins de la llave.
+     */
+    public static int dispersaBJ(byte[] llave, int offset, int longitud) {
+        int total = longitud;
         int a, b, c;
         a = b = 0x9E3779B9;
         c = 0xFFFFFFFF;
-        int offset = 0;
         while (longitud >= 12) {
-            a += combinaLittleEndian(llave[offset], llave[offset + 1], llave[offset + 2], llave[offset + 3]);
-            b += combinaLittleEndian(llave[offset + 4], llave[offset + 5], llave[offset + 6], llave[offset + 7]);
-            c += combinaLittleEndian(llave[offset + 8], llave[offset + 9], llave[offset + 10], llave[offset + 11]);
+            a += (int)ENTERO_LE.get(llave, offset);
+            b += (int)ENTERO_LE.get(llave, offset + 4);
+            c += (int)ENTERO_LE.get(llave, offset + 8);
             a -= b; a -= c; a ^= (c >>> 13);
             b -= c; b -= a; b ^= (a << 8);
             c -= a; c -= b; c ^= (b >>> 13);
@@ -90,7 +164,7 @@ public class Dispersores {
             offset += 12;
             longitud -= 12;
         }
-        c += llave.length;
+        c += total;
         switch (longitud) {
             case 11: c += ( (llave[offset + 10] & 0xFF)  << 24);
             case 10: c += ( (llave[offset + 9] & 0xFF)  << 16);
@@ -126,9 +200,921 @@ public class Dispersores {
      * @return la dispersión de Daniel Bernstein de la llave.
      */
     public static int dispersaDJB(byte[] llave) {
+        return dispersaDJB(llave, 0, llave.length);
+    }
+
+    /**
+     * Función de dispersión Daniel J. Bernstein.
+     * @param llave el arreglo con la llave a dispersar.
+     * @param offset dónde comienza la llave en el arreglo.
+     * @param longitud la longitud de la llave.
+     * @return la dispersión de Daniel Bernstein de la llave.
+     */
+    public static int dispersaDJB(byte[] llave, int offset, int longitud) {
         int h = 5381;
-        for (int x = 0; x < llave.length; x++)
+        for (int x = offset; x < offset + longitud; x++)
             h += (h << 5) + (llave[x] & 0xFF);
         return h;
     }
+
+    /**
+     * Función de dispersión XOR para bytes en un búfer, que puede ser
+     * directo o estar mapeado a un archivo. El resultado es el mismo que el
+     * de {@link #dispersaXOR(byte[],int,int)} con los mismos bytes. No cambia
+     * la posición del búfer.
+     * @param llave el búfer con la llave a dispersar.
+     * @param offset el índice absoluto donde comienza la llave en el búfer.
+     * @param longitud la longitud de la llave.
+     * @return la dispersión de XOR de la llave.
+     * @throws IndexOutOfBoundsException si la llave no cabe en el búfer.
+     */
+    public static int dispersaXOR(ByteBuffer llave, int offset, int longitud) {
+        Objects.checkFromIndexSize(offset, longitud, llave.limit());
+        if (llave.hasArray())
+            return dispersaXOR(llave.array(), llave.arrayOffset() + offset,
+                               longitud);
+        int r = 0;
+        int i = offset;
+        while (longitud >= 4) {
+            r ^= (int)BUFER_ENTERO_BE.get(llave, i);
+            i += 4;
+            longitud -= 4;
+        }
+        for (int j = 0; j < longitud; j++)
+            r ^= (llave.get(i + j) & 0xFF) << (24 - 8 * j);
+        return r;
+    }
+
+    /**
+     * Función de dispersión de Bob Jenkins para bytes en un búfer, que puede
+     * ser directo o estar mapeado a un archivo. El resultado es el mismo que
+     * el de {@link #dispersaBJ(byte[],int,int)} con los mismos bytes. No
+     * cambia la posición del búfer.
+     * @param llave el búfer con la llave a dispersar.
+     * @param offset el índice absoluto donde comienza la llave en el búfer.
+     * @param longitud la longitud de la llave.
+     * @return la dispersión de Bob Jenkins de la llave.
+     * @throws IndexOutOfBoundsException si la llave no cabe en el búfer.
+     */
+    public static int dispersaBJ(ByteBuffer llave, int offset, int longitud) {
+        Objects.checkFromIndexSize(offset, longitud, llave.limit());
+        if (llave.hasArray())
+            return dispersaBJ(llave.array(), llave.arrayOffset() + offset,
+                              longitud);
+        int total = longitud;
+        int a, b, c;
+        a = b = 0x9E3779B9;
+        c = 0xFFFFFFFF;
+        int o = offset;
+        while (longitud >= 12) {
+            a += (int)BUFER_ENTERO_LE.get(llave, o);
+            b += (int)BUFER_ENTERO_LE.get(llave, o + 4);
+            c += (int)BUFER_ENTERO_LE.get(llave, o + 8);
+            a -= b; a -= c; a ^= (c >>> 13);
+            b -= c; b -= a; b ^= (a << 8);
+            c -= a; c -= b; c ^= (b >>> 13);
+
+            a -= b; a -= c; a ^= (c >>> 12);
+            b -= c; b -= a; b ^= (a << 16);
+            c -= a; c -= b; c ^= (b >>> 5);
+
+            a -= b; a -= c; a ^= (c >>> 3);
+            b -= c; b -= a; b ^= (a << 10);
+            c -= a; c -= b; c ^= (b >>> 15);
+            o += 12;
+            longitud -= 12;
+        }
+        c += total;
+        for (int j = 0; j < longitud; j++) {
+            int v = (llave.get(o + j) & 0xFF) << (8 * (j & 3));
+            if (j < 4)
+                a += v;
+            else if (j < 8)
+                b += v;
+            else
+                c += v << 8;
+        }
+        a -= b; a -= c; a ^= (c >>> 13);
+        b -= c; b -= a; b ^= (a << 8);
+        c -= a; c -= b; c ^= (b >>> 13);
+
+        a -= b; a -= c; a ^= (c >>> 12);
+        b -= c; b -= a; b ^= (a << 16);
+        c -= a; c -= b; c ^= (b >>> 5);
+
+        a -= b; a -= c; a ^= (c >>> 3);
+        b -= c; b -= a; b ^= (a << 10);
+        c -= a; c -= b; c ^= (b >>> 15);
+        return c;
+    }
+
+    /**
+     * Función de dispersión Daniel J. Bernstein para bytes en un búfer, que
+     * puede ser directo o estar mapeado a un archivo. El resultado es el
+     * mismo que el de {@link #dispersaDJB(byte[],int,int)} con los mismos
+     * bytes. No cambia la posición del búfer.
+     * @param llave el búfer con la llave a dispersar.
+     * @param offset el índice absoluto donde comienza la llave en el búfer.
+     * @param longitud la longitud de la llave.
+     * @return la dispersión de Daniel Bernstein de la llave.
+     * @throws IndexOutOfBoundsException si la llave no cabe en el búfer.
+     */
+    public static int dispersaDJB(ByteBuffer llave, int offset, int longitud) {
+        Objects.checkFromIndexSize(offset, longitud, llave.limit());
+        if (llave.hasArray())
+            return dispersaDJB(llave.array(), llave.arrayOffset() + offset,
+                               longitud);
+        int h = 5381;
+        for (int x = offset; x < offset + longitud; x++)
+            h += (h << 5) + (llave.get(x) & 0xFF);
+        return h;
+    }
+
+    /**
+     * Función de dispersión xxHash64, con semilla 0.
+     * @param llave la llave a dispersar.
+     * @return la dispersión xxHash64 de la llave.
+     */
+    public static long dispersaXXH64(byte[] llave) {
+        return dispersaXXH64(llave, 0, llave.length, 0);
+    }
+
+    /**
+     * Función de dispersión xxHash64.
+     * @param llave el arreglo con la llave a dispersar.
+     * @param offset dónde comienza la llave en el arreglo.
+     * @param longitud la longitud de la llave.
+     * @param semilla la semilla de la dispersión.
+     * @return la dispersión xxHash64 de la llave.
+     */
+    public static long dispersaXXH64(byte[] llave, int offset, int longitud,
+                                     long semilla) {
+        int i = offset;
+        int fin = offset + longitud;
+        long h;
+        if (longitud >= 32) {
+            long v1 = semilla + XXH_P1 + XXH_P2;
+            long v2 = semilla + XXH_P2;
+            long v3 = semilla;
+            long v4 = semilla - XXH_P1;
+            do {
+                v1 = rondaXXH64(v1, leeLargoLittleEndian(llave, i));
+                v2 = rondaXXH64(v2, leeLargoLittleEndian(llave, i + 8));
+                v3 = rondaXXH64(v3, leeLargoLittleEndian(llave, i + 16));
+                v4 = rondaXXH64(v4, leeLargoLittleEndian(llave, i + 24));
+                i += 32;
+            } while (i <= fin - 32);
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) +
+                Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = combinaXXH64(h, v1);
+            h = combinaXXH64(h, v2);
+            h = combinaXXH64(h, v3);
+            h = combinaXXH64(h, v4);
+        } else {
+            h = semilla + XXH_P5;
+        }
+        h += longitud;
+        return finalXXH64(h, llave, i, fin);
+    }
+
+    /* Procesa los últimos bytes de xxHash64 y avalancha el resultado. */
+    static long finalXXH64(long h, byte[] llave, int i, int fin) {
+        while (i <= fin - 8) {
+            h ^= rondaXXH64(0, leeLargoLittleEndian(llave, i));
+            h = Long.rotateLeft(h, 27) * XXH_P1 + XXH_P4;
+            i += 8;
+        }
+        if (i <= fin - 4) {
+            h ^= (leeEnteroLittleEndian(llave, i) & 0xFFFFFFFFL) * XXH_P1;
+            h = Long.rotateLeft(h, 23) * XXH_P2 + XXH_P3;
+            i += 4;
+        }
+        while (i < fin) {
+            h ^= (llave[i++] & 0xFF) * XXH_P5;
+            h = Long.rotateLeft(h, 11) * XXH_P1;
+        }
+        h ^= h >>> 33;
+        h *= XXH_P2;
+        h ^= h >>> 29;
+        h *= XXH_P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    /* Una ronda de xxHash64. */
+    static long rondaXXH64(long acumulador, long entrada) {
+        acumulador += entrada * XXH_P2;
+        acumulador = Long.rotateLeft(acumulador, 31);
+        return acumulador * XXH_P1;
+    }
+
+    /* Combina un acumulador en la dispersión de xxHash64. */
+    static long combinaXXH64(long h, long acumulador) {
+        h ^= rondaXXH64(0, acumulador);
+        return h * XXH_P1 + XXH_P4;
+    }
+
+    /**
+     * Función de dispersión MurmurHash3 (x86, 32 bits), con semilla 0.
+     * @param llave la llave a dispersar.
+     * @return la dispersión MurmurHash3 de la llave.
+     */
+    public static int dispersaMurmur32(byte[] llave) {
+        return dispersaMurmur32(llave, 0, llave.length, 0);
+    }
+
+    /**
+     * Función de dispersión MurmurHash3 (x86, 32 bits).
+     * @param llave el arreglo con la llave a dispersar.
+     * @param offset dónde comienza la llave en el arreglo.
+     * @param longitud la longitud de la llave.
+     * @param semilla la semilla de la dispersión.
+     * @return la dispersión MurmurHash3 de la llave.
+     */
+    public static int dispersaMurmur32(byte[] llave, int offset, int longitud,
+                                       int semilla) {
+        int h = semilla;
+        int i = offset;
+        int fin = offset + (longitud & ~3);
+        while (i < fin) {
+            h ^= mezclaBloqueMurmur32(leeEnteroLittleEndian(llave, i));
+            h = Integer.rotateLeft(h, 13);
+            h = h * 5 + 0xE6546B64;
+            i += 4;
+        }
+        int k = 0;
+        switch (longitud & 3) {
+            case 3: k ^= (llave[i + 2] & 0xFF) << 16;
+            case 2: k ^= (llave[i + 1] & 0xFF) << 8;
+            case 1: k ^= (llave[i] & 0xFF);
+                    h ^= mezclaBloqueMurmur32(k);
+        }
+        h ^= longitud;
+        return mezcla32(h);
+    }
+
+    /**
+     * Dispersa un lote de llaves con MurmurHash3 (x86, 32 bits) y semilla 0.
+     * El resultado para cada llave es el mismo que el de {@link
+     * #dispersaMurmur32(byte[])}; las llaves de la misma longitud se procesan
+     * de cuatro en cuatro, intercalando sus cálculos para que el procesador
+     * los ejecute en paralelo.
+     * @param llaves las llaves a dispersar.
+     * @param salida el arreglo donde se guarda la dispersión de cada llave.
+     * @throws IllegalArgumentException si la salida es más pequeña que el
+     *         número de llaves.
+     */
+    public static void dispersaLote(byte[][] llaves, int[] salida) {
+        if (salida.length < llaves.length)
+            throw new IllegalArgumentException("Salida insuficiente");
+        int i = 0;
+        for (; i + 4 <= llaves.length; i += 4) {
+            int l = llaves[i].length;
+            if (llaves[i + 1].length == l && llaves[i + 2].length == l &&
+                llaves[i + 3].length == l) {
+                murmur32Cuatro(llaves[i], 0, llaves[i + 1], 0,
+                               llaves[i + 2], 0, llaves[i + 3], 0,
+                               l, salida, i);
+            } else {
+                for (int j = i; j < i + 4; j++)
+                    salida[j] = dispersaMurmur32(llaves[j]);
+            }
+        }
+        for (; i < llaves.length; i++)
+            salida[i] = dispersaMurmur32(llaves[i]);
+    }
+
+    /**
+     * Dispersa un lote de llaves de ancho fijo, guardadas una tras otra en un
+     * arreglo, con MurmurHash3 (x86, 32 bits) y semilla 0. Se dispersan
+     * tantas llaves como elementos tenga la salida; la llave <i>i</i> ocupa los
+     * bytes desde <code>offset + i * ancho</code>.
+     * @param datos el arreglo con las llaves.
+     * @param offset dónde comienza la primera llave en el arreglo.
+     * @param ancho la longitud de cada llave.
+     * @param salida el arreglo donde se guarda la dispersión de cada llave.
+     * @throws IllegalArgumentException si el arreglo no tiene suficientes
+     *         bytes para todas las llaves.
+     */
+    public static void dispersaLote(byte[] datos, int offset, int ancho,
+                                    int[] salida) {
+        int n = salida.length;
+        if (ancho < 0 || offset < 0 || offset + (long)n * ancho > datos.length)
+            throw new IllegalArgumentException("Datos insuficientes");
+        int i = 0;
+        int o = offset;
+        for (; i + 4 <= n; i += 4, o += 4 * ancho)
+            murmur32Cuatro(datos, o, datos, o + ancho,
+                           datos, o + 2 * ancho, datos, o + 3 * ancho,
+                           ancho, salida, i);
+        for (; i < n; i++, o += ancho)
+            salida[i] = dispersaMurmur32(datos, o, ancho, 0);
+    }
+
+    /**
+     * Dispersa un lote de llaves de ancho fijo, guardadas una tras otra en un
+     * búfer (posiblemente directo o mapeado a memoria), con MurmurHash3 (x86,
+     * 32 bits) y semilla 0. Las llaves comienzan en la posición actual del
+     * búfer; la posición del búfer no se modifica.
+     * @param datos el búfer con las llaves.
+     * @param ancho la longitud de cada llave.
+     * @param salida el arreglo donde se guarda la dispersión de cada llave.
+     * @throws IllegalArgumentException si el búfer no tiene suficientes bytes
+     *         para todas las llaves.
+     */
+    public static void dispersaLote(ByteBuffer datos, int ancho, int[] salida) {
+        int n = salida.length;
+        if (ancho < 0 || (long)n * ancho > datos.remaining())
+            throw new IllegalArgumentException("Datos insuficientes");
+        if (datos.hasArray()) {
+            dispersaLote(datos.array(), datos.arrayOffset() + datos.position(),
+                         ancho, salida);
+            return;
+        }
+        int bloques = ancho & ~3;
+        int o = datos.position();
+        for (int i = 0; i < n; i++, o += ancho) {
+            int h = 0;
+            for (int j = 0; j < bloques; j += 4) {
+                h ^= mezclaBloqueMurmur32((int)BUFER_ENTERO_LE.get(datos, o + j));
+                h = Integer.rotateLeft(h, 13) * 5 + 0xE6546B64;
+            }
+            int k = 0;
+            switch (ancho & 3) {
+                case 3: k ^= (datos.get(o + bloques + 2) & 0xFF) << 16;
+                case 2: k ^= (datos.get(o + bloques + 1) & 0xFF) << 8;
+                case 1: k ^= (datos.get(o + bloques) & 0xFF);
+                        h ^= mezclaBloqueMurmur32(k);
+            }
+            salida[i] = mezcla32(h ^ ancho);
+        }
+    }
+
+    /* Dispersa cuatro llaves de la misma longitud con MurmurHash3 de 32 bits,
+     * intercalando los cálculos de las cuatro. */
+    private static void murmur32Cuatro(byte[] d0, int o0, byte[] d1, int o1,
+                                       byte[] d2, int o2, byte[] d3, int o3,
+                                       int longitud, int[] salida, int i) {
+        int h0 = 0, h1 = 0, h2 = 0, h3 = 0;
+        int bloques = longitud & ~3;
+        for (int j = 0; j < bloques; j += 4) {
+            h0 ^= mezclaBloqueMurmur32(leeEnteroLittleEndian(d0, o0 + j));
+            h1 ^= mezclaBloqueMurmur32(leeEnteroLittleEndian(d1, o1 + j));
+            h2 ^= mezclaBloqueMurmur32(leeEnteroLittleEndian(d2, o2 + j));
+            h3 ^= mezclaBloqueMurmur32(leeEnteroLittleEndian(d3, o3 + j));
+            h0 = Integer.rotateLeft(h0, 13) * 5 + 0xE6546B64;
+            h1 = Integer.rotateLeft(h1, 13) * 5 + 0xE6546B64;
+            h2 = Integer.rotateLeft(h2, 13) * 5 + 0xE6546B64;
+            h3 = Integer.rotateLeft(h3, 13) * 5 + 0xE6546B64;
+        }
+        if ((longitud & 3) != 0) {
+            h0 ^= mezclaBloqueMurmur32(colaMurmur32(d0, o0 + bloques, longitud & 3));
+            h1 ^= mezclaBloqueMurmur32(colaMurmur32(d1, o1 + bloques, longitud & 3));
+            h2 ^= mezclaBloqueMurmur32(colaMurmur32(d2, o2 + bloques, longitud & 3));
+            h3 ^= mezclaBloqueMurmur32(colaMurmur32(d3, o3 + bloques, longitud & 3));
+        }
+        salida[i] = mezcla32(h0 ^ longitud);
+        salida[i + 1] = mezcla32(h1 ^ longitud);
+        salida[i + 2] = mezcla32(h2 ^ longitud);
+        salida[i + 3] = mezcla32(h3 ^ longitud);
+    }
+
+    /* Junta los últimos uno a tres bytes de una llave de MurmurHash3. */
+    private static int colaMurmur32(byte[] d, int o, int n) {
+        int k = 0;
+        switch (n) {
+            case 3: k ^= (d[o + 2] & 0xFF) << 16;
+            case 2: k ^= (d[o + 1] & 0xFF) << 8;
+            case 1: k ^= (d[o] & 0xFF);
+        }
+        return k;
+    }
+
+    /* Mezcla un bloque de MurmurHash3 de 32 bits. */
+    static int mezclaBloqueMurmur32(int k) {
+        k *= MURMUR_C1;
+        k = Integer.rotateLeft(k, 15);
+        return k * MURMUR_C2;
+    }
+
+    /* El mezclador final de 32 bits de MurmurHash3. */
+    static int mezcla32(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Función de dispersión MurmurHash3 (x64, 128 bits), con semilla 0.
+     * @param llave la llave a dispersar.
+     * @return un arreglo con las dos mitades de 64 bits de la dispersión.
+     */
+    public static long[] dispersaMurmur128(byte[] llave) {
+        return dispersaMurmur128(llave, 0, llave.length, 0);
+    }
+
+    /**
+     * Función de dispersión MurmurHash3 (x64, 128 bits).
+     * @param llave el arreglo con la llave a dispersar.
+     * @param offset dónde comienza la llave en el arreglo.
+     * @param longitud la longitud de la llave.
+     * @param semilla la semilla de la dispersión.
+     * @return un arreglo con las dos mitades de 64 bits de la dispersión; la
+     *         primera mitad corresponde a los primeros ocho bytes del
+     *         resultado de la implementación de referencia.
+     */
+    public static long[] dispersaMurmur128(byte[] llave, int offset,
+                                           int longitud, long semilla) {
+        long[] salida = new long[2];
+        murmur128(llave, offset, longitud, semilla, salida);
+        return salida;
+    }
+
+    /* Calcula MurmurHash3 de 128 bits; guarda las dos mitades en la salida
+     * si no es null, y regresa la primera. */
+    private static long murmur128(byte[] llave, int offset, int longitud,
+                                  long semilla, long[] salida) {
+        long h1 = semilla;
+        long h2 = semilla;
+        int i = offset;
+        int fin = offset + (longitud & ~15);
+        while (i < fin) {
+            long k1 = leeLargoLittleEndian(llave, i);
+            long k2 = leeLargoLittleEndian(llave, i + 8);
+            h1 ^= mezclaK1Murmur128(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52DCE729;
+            h2 ^= mezclaK2Murmur128(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495AB5;
+            i += 16;
+        }
+        return finalMurmur128(h1, h2, llave, i, longitud & 15, longitud,
+                              salida);
+    }
+
+    /* Procesa los últimos bytes de MurmurHash3 de 128 bits y avalancha el
+     * resultado; guarda las dos mitades en la salida si no es null, y
+     * regresa la primera. */
+    static long finalMurmur128(long h1, long h2, byte[] llave, int i,
+                               int resto, long longitud, long[] salida) {
+        long k1 = 0;
+        long k2 = 0;
+        switch (resto) {
+            case 15: k2 ^= (long)(llave[i + 14] & 0xFF) << 48;
+            case 14: k2 ^= (long)(llave[i + 13] & 0xFF) << 40;
+            case 13: k2 ^= (long)(llave[i + 12] & 0xFF) << 32;
+            case 12: k2 ^= (long)(llave[i + 11] & 0xFF) << 24;
+            case 11: k2 ^= (long)(llave[i + 10] & 0xFF) << 16;
+            case 10: k2 ^= (long)(llave[i + 9] & 0xFF) << 8;
+            case  9: k2 ^= (long)(llave[i + 8] & 0xFF);
+                     h2 ^= mezclaK2Murmur128(k2);
+            case  8: k1 ^= (long)(llave[i + 7] & 0xFF) << 56;
+            case  7: k1 ^= (long)(llave[i + 6] & 0xFF) << 48;
+            case  6: k1 ^= (long)(llave[i + 5] & 0xFF) << 40;
+            case  5: k1 ^= (long)(llave[i + 4] & 0xFF) << 32;
+            case  4: k1 ^= (long)(llave[i + 3] & 0xFF) << 24;
+            case  3: k1 ^= (long)(llave[i + 2] & 0xFF) << 16;
+            case  2: k1 ^= (long)(llave[i + 1] & 0xFF) << 8;
+            case  1: k1 ^= (long)(llave[i] & 0xFF);
+                     h1 ^= mezclaK1Murmur128(k1);
+        }
+        h1 ^= longitud;
+        h2 ^= longitud;
+        h1 += h2;
+        h2 += h1;
+        h1 = mezcla64(h1);
+        h2 = mezcla64(h2);
+        h1 += h2;
+        h2 += h1;
+        if (salida != null) {
+            salida[0] = h1;
+            salida[1] = h2;
+        }
+        return h1;
+    }
+
+    /* Mezcla la primera mitad de un bloque de MurmurHash3 de 128 bits. */
+    static long mezclaK1Murmur128(long k1) {
+        k1 *= MURMUR_C1_64;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * MURMUR_C2_64;
+    }
+
+    /* Mezcla la segunda mitad de un bloque de MurmurHash3 de 128 bits. */
+    static long mezclaK2Murmur128(long k2) {
+        k2 *= MURMUR_C2_64;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * MURMUR_C1_64;
+    }
+
+    /* El mezclador final de 64 bits de MurmurHash3. */
+    static long mezcla64(long k) {
+        k ^= k >>> 33;
+        k *= 0xFF51AFD7ED558CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CEB9FE1A85EC53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * Función de dispersión wyhash (versión <em>final 4</em>), con semilla 0.
+     * @param llave la llave a dispersar.
+     * @return la dispersión wyhash de la llave.
+     */
+    public static long dispersaWyhash(byte[] llave) {
+        return dispersaWyhash(llave, 0, llave.length, 0);
+    }
+
+    /**
+     * Función de dispersión wyhash (versión <em>final 4</em>).
+     * @param llave el arreglo con la llave a dispersar.
+     * @param offset dónde comienza la llave en el arreglo.
+     * @param longitud la longitud de la llave.
+     * @param semilla la semilla de la dispersión.
+     * @return la dispersión wyhash de la llave.
+     */
+    public static long dispersaWyhash(byte[] llave, int offset, int longitud,
+                                      long semilla) {
+        semilla ^= mezclaWy(semilla ^ WY_S0, WY_S1);
+        long a, b;
+        if (longitud <= 16) {
+            if (longitud >= 4) {
+                int cuarto = (longitud >>> 3) << 2;
+                int ultimo = offset + longitud - 4;
+                a = (leeEnteroSinSigno(llave, offset) << 32) |
+                    leeEnteroSinSigno(llave, offset + cuarto);
+                b = (leeEnteroSinSigno(llave, ultimo) << 32) |
+                    leeEnteroSinSigno(llave, ultimo - cuarto);
+            } else if (longitud > 0) {
+                a = ((long)(llave[offset] & 0xFF) << 16) |
+                    ((long)(llave[offset + (longitud >>> 1)] & 0xFF) << 8) |
+                    (llave[offset + longitud - 1] & 0xFF);
+                b = 0;
+            } else {
+                a = b = 0;
+            }
+        } else {
+            int i = longitud;
+            int p = offset;
+            if (i > 48) {
+                long semilla1 = semilla;
+                long semilla2 = semilla;
+                do {
+                    semilla = mezclaWy(leeLargoLittleEndian(llave, p) ^ WY_S1,
+                                       leeLargoLittleEndian(llave, p + 8) ^ semilla);
+                    semilla1 = mezclaWy(leeLargoLittleEndian(llave, p + 16) ^ WY_S2,
+                                        leeLargoLittleEndian(llave, p + 24) ^ semilla1);
+                    semilla2 = mezclaWy(leeLargoLittleEndian(llave, p + 32) ^ WY_S3,
+                                        leeLargoLittleEndian(llave, p + 40) ^ semilla2);
+                    p += 48;
+                    i -= 48;
+                } while (i > 48);
+                semilla ^= semilla1 ^ semilla2;
+            }
+            while (i > 16) {
+                semilla = mezclaWy(leeLargoLittleEndian(llave, p) ^ WY_S1,
+                                   leeLargoLittleEndian(llave, p + 8) ^ semilla);
+                i -= 16;
+                p += 16;
+            }
+            a = leeLargoLittleEndian(llave, p + i - 16);
+            b = leeLargoLittleEndian(llave, p + i - 8);
+        }
+        a ^= WY_S1;
+        b ^= semilla;
+        long bajo = a * b;
+        long alto = multiplicaAltoSinSigno(a, b);
+        return mezclaWy(bajo ^ WY_S0 ^ longitud, alto ^ WY_S1);
+    }
+
+    /**
+     * Función de dispersión SipHash-2-4, con una llave secreta de 128 bits.
+     * @param k0 los 64 bits bajos de la llave secreta.
+     * @param k1 los 64 bits altos de la llave secreta.
+     * @param llave el arreglo con la llave a dispersar.
+     * @param offset dónde comienza la llave en el arreglo.
+     * @param longitud la longitud de la llave.
+     * @return la dispersión SipHash-2-4 de la llave.
+     */
+    public static long dispersaSipHash24(long k0, long k1, byte[] llave,
+                                         int offset, int longitud) {
+        return sipHash(2, 4, k0, k1, llave, offset, longitud);
+    }
+
+    /**
+     * Función de dispersión SipHash-1-3, con una llave secreta de 128 bits. Es
+     * más rápida que SipHash-2-4, con un margen de seguridad menor.
+     * @param k0 los 64 bits bajos de la llave secreta.
+     * @param k1 los 64 bits altos de la llave secreta.
+     * @param llave el arreglo con la llave a dispersar.
+     * @param offset dónde comienza la llave en el arreglo.
+     * @param longitud la longitud de la llave.
+     * @return la dispersión SipHash-1-3 de la llave.
+     */
+    public static long dispersaSipHash13(long k0, long k1, byte[] llave,
+                                         int offset, int longitud) {
+        return sipHash(1, 3, k0, k1, llave, offset, longitud);
+    }
+
+    /* SipHash con c rondas por bloque y d rondas finales. El estado vive en
+     * cuatro variables locales para que la dispersión no asigne memoria; el
+     * último bloque, con la longitud y los bytes restantes, se procesa en el
+     * mismo ciclo que los demás. */
+    private static long sipHash(int c, int d, long k0, long k1, byte[] llave,
+                                int offset, int longitud) {
+        long v0 = k0 ^ SIP_V0;
+        long v1 = k1 ^ SIP_V1;
+        long v2 = k0 ^ SIP_V2;
+        long v3 = k1 ^ SIP_V3;
+        int fin = offset + (longitud & ~7);
+        long b = (long)longitud << 56;
+        for (int j = 0; j < (longitud & 7); j++)
+            b |= (long)(llave[fin + j] & 0xFF) << (8 * j);
+        for (int i = offset; ; i += 8) {
+            long m = (i < fin) ? leeLargoLittleEndian(llave, i) : b;
+            v3 ^= m;
+            for (int r = 0; r < c; r++) {
+                v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+                v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+                v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+                v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+            }
+            v0 ^= m;
+            if (i >= fin)
+                break;
+        }
+        v2 ^= 0xFF;
+        for (int r = 0; r < d; r++) {
+            v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+            v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+            v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+            v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+        }
+        return v0 ^ v1 ^ v2 ^ v3;
+    }
+
+    /* Multiplica dos enteros de 64 bits sin signo y combina con XOR las dos
+     * mitades del producto de 128 bits. */
+    static long mezclaWy(long a, long b) {
+        return (a * b) ^ multiplicaAltoSinSigno(a, b);
+    }
+
+    /* Regresa los 64 bits altos del producto sin signo de a y b. */
+    static long multiplicaAltoSinSigno(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+    /* Lee un entero de 32 bits Little Endian. */
+    static int leeEnteroLittleEndian(byte[] b, int i) {
+        return (int)ENTERO_LE.get(b, i);
+    }
+
+    /* Lee un entero de 32 bits Little Endian sin signo. */
+    private static long leeEnteroSinSigno(byte[] b, int i) {
+        return leeEnteroLittleEndian(b, i) & 0xFFFFFFFFL;
+    }
+
+    /* Lee un entero de 64 bits Little Endian. */
+    static long leeLargoLittleEndian(byte[] b, int i) {
+        return (long)LARGO_LE.get(b, i);
+    }
+
+    /**
+     * Función de dispersión XOR para secuencias de caracteres. El resultado es
+     * el mismo que el de dispersar los bytes de la secuencia en UTF-8, pero sin
+     * crear un arreglo nuevo en cada llamada.
+     * @param llave la llave a dispersar.
+     * @return la dispersión de XOR de la llave.
+     */
+    public static int dispersaXOR(CharSequence llave) {
+        Bufer b = codificaUTF8(llave);
+        return dispersaXOR(b.bytes, 0, b.longitud);
+    }
+
+    /**
+     * Función de dispersión de Bob Jenkins para secuencias de caracteres. El
+     * resultado es el mismo que el de dispersar los bytes de la secuencia en
+     * UTF-8, pero sin crear un arreglo nuevo en cada llamada.
+     * @param llave la llave a dispersar.
+     * @return la dispersión de Bob Jenkins de la llave.
+     */
+    public static int dispersaBJ(CharSequence llave) {
+        Bufer b = codificaUTF8(llave);
+        return dispersaBJ(b.bytes, 0, b.longitud);
+    }
+
+    /**
+     * Función de dispersión Daniel J. Bernstein para secuencias de
+     * caracteres. El resultado es el mismo que el de dispersar los bytes de la
+     * secuencia en UTF-8, pero sin crear un arreglo nuevo en cada llamada.
+     * @param llave la llave a dispersar.
+     * @return la dispersión de Daniel Bernstein de la llave.
+     */
+    public static int dispersaDJB(CharSequence llave) {
+        Bufer b = codificaUTF8(llave);
+        return dispersaDJB(b.bytes, 0, b.longitud);
+    }
+
+    /**
+     * Función de dispersión xxHash64 para secuencias de caracteres, con
+     * semilla 0. El resultado es el mismo que el de dispersar los bytes de la
+     * secuencia en UTF-8, pero sin crear un arreglo nuevo en cada llamada.
+     * @param llave la llave a dispersar.
+     * @return la dispersión xxHash64 de la llave.
+     */
+    public static long dispersaXXH64(CharSequence llave) {
+        return dispersaXXH64(llave, 0);
+    }
+
+    /**
+     * Función de dispersión xxHash64 para secuencias de caracteres.
+     * @param llave la llave a dispersar.
+     * @param semilla la semilla de la dispersión.
+     * @return la dispersión xxHash64 de la llave.
+     */
+    public static long dispersaXXH64(CharSequence llave, long semilla) {
+        Bufer b = codificaUTF8(llave);
+        return dispersaXXH64(b.bytes, 0, b.longitud, semilla);
+    }
+
+    /**
+     * Función de dispersión MurmurHash3 (x86, 32 bits) para secuencias de
+     * caracteres, con semilla 0. El resultado es el mismo que el de dispersar
+     * los bytes de la secuencia en UTF-8, pero sin crear un arreglo nuevo en
+     * cada llamada.
+     * @param llave la llave a dispersar.
+     * @return la dispersión MurmurHash3 de la llave.
+     */
+    public static int dispersaMurmur32(CharSequence llave) {
+        return dispersaMurmur32(llave, 0);
+    }
+
+    /**
+     * Función de dispersión MurmurHash3 (x86, 32 bits) para secuencias de
+     * caracteres.
+     * @param llave la llave a dispersar.
+     * @param semilla la semilla de la dispersión.
+     * @return la dispersión MurmurHash3 de la llave.
+     */
+    public static int dispersaMurmur32(CharSequence llave, int semilla) {
+        Bufer b = codificaUTF8(llave);
+        return dispersaMurmur32(b.bytes, 0, b.longitud, semilla);
+    }
+
+    /**
+     * Regresa la mitad baja de la dispersión MurmurHash3 (x64, 128 bits) de
+     * una secuencia de caracteres, con semilla 0. Es la primera mitad del
+     * arreglo que regresa {@link #dispersaMurmur128(byte[])} con los bytes
+     * de la secuencia en UTF-8, pero sin crear ningún arreglo en la llamada.
+     * @param llave la llave a dispersar.
+     * @return la mitad baja de 64 bits de la dispersión MurmurHash3 de la
+     *         llave.
+     */
+    public static long dispersaMurmur128Bajo(CharSequence llave) {
+        return dispersaMurmur128Bajo(llave, 0);
+    }
+
+    /**
+     * Regresa la mitad baja de la dispersión MurmurHash3 (x64, 128 bits) de
+     * una secuencia de caracteres. Es la primera mitad del arreglo que
+     * regresa {@link #dispersaMurmur128(byte[],int,int,long)} con los bytes
+     * de la secuencia en UTF-8.
+     * @param llave la llave a dispersar.
+     * @param semilla la semilla de la dispersión.
+     * @return la mitad baja de 64 bits de la dispersión MurmurHash3 de la
+     *         llave.
+     */
+    public static long dispersaMurmur128Bajo(CharSequence llave,
+                                             long semilla) {
+        Bufer b = codificaUTF8(llave);
+        return murmur128(b.bytes, 0, b.longitud, semilla, null);
+    }
+
+    /**
+     * Función de dispersión wyhash para secuencias de caracteres, con semilla
+     * 0. El resultado es el mismo que el de dispersar los bytes de la
+     * secuencia en UTF-8, pero sin crear un arreglo nuevo en cada llamada.
+     * @param llave la llave a dispersar.
+     * @return la dispersión wyhash de la llave.
+     */
+    public static long dispersaWyhash(CharSequence llave) {
+        return dispersaWyhash(llave, 0);
+    }
+
+    /**
+     * Función de dispersión wyhash para secuencias de caracteres.
+     * @param llave la llave a dispersar.
+     * @param semilla la semilla de la dispersión.
+     * @return la dispersión wyhash de la llave.
+     */
+    public static long dispersaWyhash(CharSequence llave, long semilla) {
+        Bufer b = codificaUTF8(llave);
+        return dispersaWyhash(b.bytes, 0, b.longitud, semilla);
+    }
+
+    /**
+     * Función de dispersión SipHash-2-4 para secuencias de caracteres. El
+     * resultado es el mismo que el de dispersar los bytes de la secuencia en
+     * UTF-8, pero sin crear un arreglo nuevo en cada llamada.
+     * @param k0 los 64 bits bajos de la llave secreta.
+     * @param k1 los 64 bits altos de la llave secreta.
+     * @param llave la llave a dispersar.
+     * @return la dispersión SipHash-2-4 de la llave.
+     */
+    public static long dispersaSipHash24(long k0, long k1, CharSequence llave) {
+        Bufer b = codificaUTF8(llave);
+        return sipHash(2, 4, k0, k1, b.bytes, 0, b.longitud);
+    }
+
+    /**
+     * Función de dispersión SipHash-1-3 para secuencias de caracteres. El
+     * resultado es el mismo que el de dispersar los bytes de la secuencia en
+     * UTF-8, pero sin crear un arreglo nuevo en cada llamada.
+     * @param k0 los 64 bits bajos de la llave secreta.
+     * @param k1 los 64 bits altos de la llave secreta.
+     * @param llave la llave a dispersar.
+     * @return la dispersión SipHash-1-3 de la llave.
+     */
+    public static long dispersaSipHash13(long k0, long k1, CharSequence llave) {
+        Bufer b = codificaUTF8(llave);
+        return sipHash(1, 3, k0, k1, b.bytes, 0, b.longitud);
+    }
+
+    /* Codifica la secuencia en UTF-8 en el búfer del hilo actual, o en uno
+     * temporal si podría no caber en MAXIMO_BUFER bytes, igual que
+     * String.getBytes(StandardCharsets.UTF_8): los sustitutos sin pareja se
+     * codifican como '?'. */
+    private static Bufer codificaUTF8(CharSequence s) {
+        int n = s.length();
+        long maximo = 3L * n;
+        Bufer b;
+        if (maximo <= MAXIMO_BUFER) {
+            b = BUFER.get();
+            if (b.bytes.length < maximo) {
+                long capacidad = Math.max(maximo, 2L * b.bytes.length);
+                b.bytes = new byte[(int)Math.min(capacidad, MAXIMO_BUFER)];
+            }
+        } else {
+            b = new Bufer((int)longitudUTF8(s));
+        }
+        byte[] d = b.bytes;
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                d[j++] = (byte)c;
+            } else if (c < 0x800) {
+                d[j++] = (byte)(0xC0 | (c >> 6));
+                d[j++] = (byte)(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n &&
+                       Character.isLowSurrogate(s.charAt(i + 1))) {
+                int p = Character.toCodePoint(c, s.charAt(++i));
+                d[j++] = (byte)(0xF0 | (p >> 18));
+                d[j++] = (byte)(0x80 | ((p >> 12) & 0x3F));
+                d[j++] = (byte)(0x80 | ((p >> 6) & 0x3F));
+                d[j++] = (byte)(0x80 | (p & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                d[j++] = (byte)'?';
+            } else {
+                d[j++] = (byte)(0xE0 | (c >> 12));
+                d[j++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+                d[j++] = (byte)(0x80 | (c & 0x3F));
+            }
+        }
+        b.longitud = j;
+        return b;
+    }
+
+    /* Regresa la longitud de la secuencia codificada en UTF-8; si no cabe en
+     * un arreglo lanza OutOfMemoryError, como String.getBytes. */
+    private static long longitudUTF8(CharSequence s) {
+        int n = s.length();
+        long longitud = 0;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                longitud++;
+            } else if (c < 0x800) {
+                longitud += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n &&
+                       Character.isLowSurrogate(s.charAt(i + 1))) {
+                longitud += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                longitud++;
+            } else {
+                longitud += 3;
+            }
+        }
+        if (longitud > Integer.MAX_VALUE - 8)
+            throw new OutOfMemoryError("Secuencia demasiado larga: " + n);
+        return longitud;
+    }
 }
@@ -0,0 +1,617 @@
+package mx.unam.ciencias.edd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>Clase para dispersores incrementales y métodos estáticos que los
+ * alimentan desde flujos, canales y archivos.</p>
+ *
+ * <p>Los dispersores se obtienen con {@link
+ * FabricaDispersores#dispersorIncremental(AlgoritmoDispersor)}. Cada uno
+ * guarda a lo más un bloque incompleto de su algoritmo, así que la memoria
+ * que usa no depende del tamaño de la entrada; wyhash guarda además los
+ * últimos 16 bytes procesados, que vuelve a leer al finalizar.</p>
+ */
+public class DispersoresIncrementales {
+
+    /* Tamaño del búfer para leer flujos y canales. */
+    private static final int TAMANO_BUFER = 1 << 16;
+    /* Tamaño de las ventanas al mapear archivos en memoria. */
+    private static final long TAMANO_VENTANA = 1L << 28;
+
+    /* Clase abstracta para dispersores que procesan bloques de tamaño fijo. */
+    abstract static class Bloques implements DispersorIncremental {
+
+        /* El bloque incompleto. */
+        protected byte[] bloque;
+        /* El número de bytes en el bloque incompleto. */
+        protected int pendientes;
+        /* El número total de bytes agregados. */
+        protected long total;
+        /* Arreglo para copiar búferes sin arreglo. */
+        private byte[] copia;
+
+        /* Inicializa el dispersor con el tamaño de bloque recibido. */
+        protected Bloques(int tamanoBloque) {
+            bloque = new byte[tamanoBloque];
+        }
+
+        /* Procesa un bloque completo que comienza en el offset recibido. */
+        protected abstract void procesa(byte[] datos, int offset);
+
+        /* Agrega bytes a la entrada del dispersor. */
+        @Override public void actualiza(byte[] datos, int offset,
+                                        int longitud) {
+            if (offset < 0 || longitud < 0 || offset + longitud > datos.length)
+                throw new IndexOutOfBoundsException();
+            total += longitud;
+            if (pendientes > 0) {
+                int n = Math.min(bloque.length - pendientes, longitud);
+                System.arraycopy(datos, offset, bloque, pendientes, n);
+                pendientes += n;
+                offset += n;
+                longitud -= n;
+                if (pendientes < bloque.length)
+                    return;
+                procesa(bloque, 0);
+                pendientes = 0;
+            }
+            while (longitud >= bloque.length) {
+                procesa(datos, offset);
+                offset += bloque.length;
+                longitud -= bloque.length;
+            }
+            System.arraycopy(datos, offset, bloque, 0, longitud);
+            pendientes = longitud;
+        }
+
+        /* Agrega los bytes restantes del búfer. */
+        @Override public void actualiza(ByteBuffer datos) {
+            if (datos.hasArray()) {
+                actualiza(datos.array(), datos.arrayOffset() + datos.position(),
+                          datos.remaining());
+                datos.position(datos.limit());
+                return;
+            }
+            if (copia == null)
+                copia = new byte[TAMANO_BUFER >> 3];
+            while (datos.hasRemaining()) {
+                int n = Math.min(copia.length, datos.remaining());
+                datos.get(copia, 0, n);
+                actualiza(copia, 0, n);
+            }
+        }
+
+        /* Reinicia el bloque incompleto y el total. */
+        @Override public void reinicia() {
+            pendientes = 0;
+            total = 0;
+        }
+    }
+
+    /* Dispersor incremental XOR. */
+    static final class XOR extends Bloques {
+
+        /* El estado. */
+        private int r;
+
+        /* Construye el dispersor. */
+        XOR() {
+            super(4);
+        }
+
+        @Override protected void procesa(byte[] datos, int offset) {
+            r ^= Dispersores.dispersaXOR(datos, offset, 4);
+        }
+
+        @Override public long finaliza() {
+            return (r ^ Dispersores.dispersaXOR(bloque, 0, pendientes))
+                & 0xFFFFFFFFL;
+        }
+
+        @Override public void reinicia() {
+            super.reinicia();
+            r = 0;
+        }
+    }
+
+    /* Dispersor incremental de Bob Jenkins. */
+    static final class BJ extends Bloques {
+
+        /* El estado. */
+        private int a, b, c;
+
+        /* Construye el dispersor. */
+        BJ() {
+            super(12);
+            reinicia();
+        }
+
+        @Override protected void procesa(byte[] d, int o) {
+            a += Dispersores.leeEnteroLittleEndian(d, o);
+            b += Dispersores.leeEnteroLittleEndian(d, o + 4);
+            c += Dispersores.leeEnteroLittleEndian(d, o + 8);
+            mezcla();
+        }
+
+        @Override public long finaliza() {
+            int a0 = a, b0 = b, c0 = c;
+            byte[] d = bloque;
+            c += (int)total;
+            switch (pendientes) {
+                case 11: c += ((d[10] & 0xFF) << 24);
+                case 10: c += ((d[9] & 0xFF) << 16);
+                case  9: c += ((d[8] & 0xFF) << 8);
+                case  8: b += ((d[7] & 0xFF) << 24);
+                case  7: b += ((d[6] & 0xFF) << 16);
+                case  6: b += ((d[5] & 0xFF) << 8);
+                case  5: b += (d[4] & 0xFF);
+                case  4: a += ((d[3] & 0xFF) << 24);
+                case  3: a += ((d[2] & 0xFF) << 16);
+                case  2: a += ((d[1] & 0xFF) << 8);
+                case  1: a += (d[0] & 0xFF);
+            }
+            mezcla();
+            long h = c & 0xFFFFFFFFL;
+            a = a0;
+            b = b0;
+            c = c0;
+            return h;
+        }
+
+        @Override public void reinicia() {
+            super.reinicia();
+            a = b = 0x9E3779B9;
+            c = 0xFFFFFFFF;
+        }
+
+        /* La mezcla de Bob Jenkins. */
+        private void mezcla() {
+            a -= b; a -= c; a ^= (c >>> 13);
+            b -= c; b -= a; b ^= (a << 8);
+            c -= a; c -= b; c ^= (b >>> 13);
+
+            a -= b; a -= c; a ^= (c >>> 12);
+            b -= c; b -= a; b ^= (a << 16);
+            c -= a; c -= b; c ^= (b >>> 5);
+
+            a -= b; a -= c; a ^= (c >>> 3);
+            b -= c; b -= a; b ^= (a << 10);
+            c -= a; c -= b; c ^= (b >>> 15);
+        }
+    }
+
+    /* Dispersor incremental de Daniel J. Bernstein. */
+    static final class DJB extends Bloques {
+
+        /* El estado. */
+        private int h;
+
+        /* Construye el dispersor. */
+        DJB() {
+            super(1);
+            h = 5381;
+        }
+
+        @Override public void actualiza(byte[] datos, int offset,
+                                        int longitud) {
+            if (offset < 0 || longitud < 0 || offset + longitud > datos.length)
+                throw new IndexOutOfBoundsException();
+            for (int x = offset; x < offset + longitud; x++)
+                h += (h << 5) + (datos[x] & 0xFF);
+        }
+
+        @Override protected void procesa(byte[] datos, int offset) {
+            h += (h << 5) + (datos[offset] & 0xFF);
+        }
+
+        @Override public long finaliza() {
+            return h & 0xFFFFFFFFL;
+        }
+
+        @Override public void reinicia() {
+            super.reinicia();
+            h = 5381;
+        }
+    }
+
+    /* Dispersor incremental xxHash64. */
+    static final class XXH64 extends Bloques {
+
+        /* La semilla. */
+        private long semilla;
+        /* Los acumuladores. */
+        private long v1, v2, v3, v4;
+
+        /* Construye el dispersor con la semilla recibida. */
+        XXH64(long semilla) {
+            super(32);
+            this.semilla = semilla;
+            reinicia();
+        }
+
+        @Override protected void procesa(byte[] d, int o) {
+            v1 = Dispersores.rondaXXH64(v1, Dispersores.leeLargoLittleEndian(d, o));
+            v2 = Dispersores.rondaXXH64(v2, Dispersores.leeLargoLittleEndian(d, o + 8));
+            v3 = Dispersores.rondaXXH64(v3, Dispersores.leeLargoLittleEndian(d, o + 16));
+            v4 = Dispersores.rondaXXH64(v4, Dispersores.leeLargoLittleEndian(d, o + 24));
+        }
+
+        @Override public long finaliza() {
+            long h;
+            if (total >= 32) {
+                h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) +
+                    Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                h = Dispersores.combinaXXH64(h, v1);
+                h = Dispersores.combinaXXH64(h, v2);
+                h = Dispersores.combinaXXH64(h, v3);
+                h = Dispersores.combinaXXH64(h, v4);
+            } else {
+                h = semilla + Dispersores.XXH_P5;
+            }
+            h += total;
+            return Dispersores.finalXXH64(h, bloque, 0, pendientes);
+        }
+
+        @Override public void reinicia() {
+            super.reinicia();
+            v1 = semilla + Dispersores.XXH_P1 + Dispersores.XXH_P2;
+            v2 = semilla + Dispersores.XXH_P2;
+            v3 = semilla;
+            v4 = semilla - Dispersores.XXH_P1;
+        }
+    }
+
+    /* Dispersor incremental MurmurHash3 de 32 bits. */
+    static final class Murmur32 extends Bloques {
+
+        /* La semilla. */
+        private int semilla;
+        /* El estado. */
+        private int h;
+
+        /* Construye el dispersor con la semilla recibida. */
+        Murmur32(int semilla) {
+            super(4);
+            this.semilla = semilla;
+            h = semilla;
+        }
+
+        @Override protected void procesa(byte[] d, int o) {
+            h ^= Dispersores.mezclaBloqueMurmur32(
+                Dispersores.leeEnteroLittleEndian(d, o));
+            h = Integer.rotateLeft(h, 13);
+            h = h * 5 + 0xE6546B64;
+        }
+
+        @Override public long finaliza() {
+            int r = h;
+            int k = 0;
+            switch (pendientes) {
+                case 3: k ^= (bloque[2] & 0xFF) << 16;
+                case 2: k ^= (bloque[1] & 0xFF) << 8;
+                case 1: k ^= (bloque[0] & 0xFF);
+                        r ^= Dispersores.mezclaBloqueMurmur32(k);
+            }
+            r ^= (int)total;
+            return Dispersores.mezcla32(r) & 0xFFFFFFFFL;
+        }
+
+        @Override public void reinicia() {
+            super.reinicia();
+            h = semilla;
+        }
+    }
+
+    /* Dispersor incremental MurmurHash3 de 128 bits. */
+    static final class Murmur128 extends Bloques
+        implements DispersorIncremental128 {
+
+        /* La semilla. */
+        private long semilla;
+        /* El estado. */
+        private long h1, h2;
+
+        /* Construye el dispersor con la semilla recibida. */
+        Murmur128(long semilla) {
+            super(16);
+            this.semilla = semilla;
+            h1 = h2 = semilla;
+        }
+
+        @Override protected void procesa(byte[] d, int o) {
+            long k1 = Dispersores.leeLargoLittleEndian(d, o);
+            long k2 = Dispersores.leeLargoLittleEndian(d, o + 8);
+            h1 ^= Dispersores.mezclaK1Murmur128(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52DCE729;
+            h2 ^= Dispersores.mezclaK2Murmur128(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495AB5;
+        }
+
+        @Override public long finaliza() {
+            return Dispersores.finalMurmur128(h1, h2, bloque, 0, pendientes,
+                                              total, null);
+        }
+
+        @Override public long[] finaliza128() {
+            long[] salida = new long[2];
+            Dispersores.finalMurmur128(h1, h2, bloque, 0, pendientes, total,
+                                       salida);
+            return salida;
+        }
+
+        @Override public void reinicia() {
+            super.reinicia();
+            h1 = h2 = semilla;
+        }
+    }
+
+    /* Dispersor incremental SipHash. */
+    static final class SipHash extends Bloques {
+
+        /* Las rondas por bloque y finales. */
+        private int c, d;
+        /* La llave secreta. */
+        private long k0, k1;
+        /* El estado. */
+        private long[] v;
+        /* Copia del estado para finalizar sin modificarlo. */
+        private long[] s;
+
+        /* Construye el dispersor con las rondas y la llave recibidas. */
+        SipHash(int c, int d, long k0, long k1) {
+            super(8);
+            v = new long[4];
+            s = new long[4];
+            this.c = c;
+            this.d = d;
+            this.k0 = k0;
+            this.k1 = k1;
+            reinicia();
+        }
+
+        @Override protected void procesa(byte[] datos, int offset) {
+            long m = Dispersores.leeLargoLittleEndian(datos, offset);
+            v[3] ^= m;
+            rondas(v, c);
+            v[0] ^= m;
+        }
+
+        @Override public long finaliza() {
+            System.arraycopy(v, 0, s, 0, 4);
+            long b = total << 56;
+            for (int j = 0; j < pendientes; j++)
+                b |= (long)(bloque[j] & 0xFF) << (8 * j);
+            s[3] ^= b;
+            rondas(s, c);
+            s[0] ^= b;
+            s[2] ^= 0xFF;
+            rondas(s, d);
+            return s[0] ^ s[1] ^ s[2] ^ s[3];
+        }
+
+        @Override public void reinicia() {
+            super.reinicia();
+            v[0] = k0 ^ Dispersores.SIP_V0;
+            v[1] = k1 ^ Dispersores.SIP_V1;
+            v[2] = k0 ^ Dispersores.SIP_V2;
+            v[3] = k1 ^ Dispersores.SIP_V3;
+        }
+
+        /* Aplica n rondas de SipHash al estado v0, v1, v2, v3 del
+         * arreglo. */
+        private static void rondas(long[] v, int n) {
+            long v0 = v[0], v1 = v[1], v2 = v[2], v3 = v[3];
+            for (int r = 0; r < n; r++) {
+                v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+                v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+                v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+                v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+            }
+            v[0] = v0;
+            v[1] = v1;
+            v[2] = v2;
+            v[3] = v3;
+        }
+    }
+
+    /* Dispersor incremental wyhash. El algoritmo procesa bloques de 48 bytes
+     * mientras queden más de 48, y al final vuelve a leer los últimos 16
+     * bytes de la entrada, que pueden incluir hasta 15 de un bloque ya
+     * procesado. Por eso un bloque completo sólo se procesa cuando llegan
+     * más bytes, y la cola guarda los 16 bytes anteriores a los pendientes:
+     * con 64 bytes basta para cualquier longitud de la entrada. */
+    static final class Wyhash implements DispersorIncremental {
+
+        /* Bytes de un bloque. */
+        private static final int BLOQUE = 48;
+        /* Bytes que se guardan antes de los pendientes. */
+        private static final int ATRAS = 16;
+
+        /* La semilla recibida. */
+        private long semilla;
+        /* El estado de los tres carriles. */
+        private long s0, s1, s2;
+        /* Los últimos 16 bytes procesados, seguidos de los pendientes. */
+        private byte[] cola;
+        /* El número de bytes pendientes. */
+        private int pendientes;
+        /* El número total de bytes agregados. */
+        private long total;
+        /* Arreglo para copiar búferes sin arreglo. */
+        private byte[] copia;
+
+        /* Construye el dispersor con la semilla recibida. */
+        Wyhash(long semilla) {
+            this.semilla = semilla;
+            cola = new byte[ATRAS + BLOQUE];
+            reinicia();
+        }
+
+        @Override public void actualiza(byte[] datos, int offset,
+                                        int longitud) {
+            if (offset < 0 || longitud < 0 || offset + longitud > datos.length)
+                throw new IndexOutOfBoundsException();
+            if (longitud == 0)
+                return;
+            total += longitud;
+            if (pendientes > 0) {
+                int n = Math.min(BLOQUE - pendientes, longitud);
+                System.arraycopy(datos, offset, cola, ATRAS + pendientes, n);
+                pendientes += n;
+                offset += n;
+                longitud -= n;
+                if (longitud == 0)
+                    return;
+                procesa(cola, ATRAS);
+                System.arraycopy(cola, BLOQUE, cola, 0, ATRAS);
+                pendientes = 0;
+            }
+            if (longitud > BLOQUE) {
+                do {
+                    procesa(datos, offset);
+                    offset += BLOQUE;
+                    longitud -= BLOQUE;
+                } while (longitud > BLOQUE);
+                System.arraycopy(datos, offset - ATRAS, cola, 0, ATRAS);
+            }
+            System.arraycopy(datos, offset, cola, ATRAS, longitud);
+            pendientes = longitud;
+        }
+
+        @Override public void actualiza(ByteBuffer datos) {
+            if (datos.hasArray()) {
+                actualiza(datos.array(), datos.arrayOffset() + datos.position(),
+                          datos.remaining());
+                datos.position(datos.limit());
+                return;
+            }
+            if (copia == null)
+                copia = new byte[TAMANO_BUFER >> 3];
+            while (datos.hasRemaining()) {
+                int n = Math.min(copia.length, datos.remaining());
+                datos.get(copia, 0, n);
+                actualiza(copia, 0, n);
+            }
+        }
+
+        @Override public long finaliza() {
+            if (total <= 16)
+                return Dispersores.dispersaWyhash(cola, ATRAS, (int)total,
+                                                  semilla);
+            long s = s0;
+            if (total > BLOQUE)
+                s ^= s1 ^ s2;
+            int i = pendientes;
+            int p = ATRAS;
+            while (i > 16) {
+                long m = Dispersores.leeLargoLittleEndian(cola, p);
+                long n = Dispersores.leeLargoLittleEndian(cola, p + 8);
+                s = Dispersores.mezclaWy(m ^ Dispersores.WY_S1, n ^ s);
+                i -= 16;
+                p += 16;
+            }
+            long a = Dispersores.leeLargoLittleEndian(cola, p + i - 16) ^
+                Dispersores.WY_S1;
+            long b = Dispersores.leeLargoLittleEndian(cola, p + i - 8) ^ s;
+            long alto = Dispersores.multiplicaAltoSinSigno(a, b);
+            return Dispersores.mezclaWy(a * b ^ Dispersores.WY_S0 ^ total,
+                                        alto ^ Dispersores.WY_S1);
+        }
+
+        @Override public void reinicia() {
+            s0 = semilla ^ Dispersores.mezclaWy(semilla ^ Dispersores.WY_S0,
+                                                Dispersores.WY_S1);
+            s1 = s2 = s0;
+            pendientes = 0;
+            total = 0;
+        }
+
+        /* Procesa un bloque de 48 bytes que comienza en el offset recibido. */
+        private void procesa(byte[] d, int o) {
+            s0 = Dispersores.mezclaWy(
+                Dispersores.leeLargoLittleEndian(d, o) ^ Dispersores.WY_S1,
+                Dispersores.leeLargoLittleEndian(d, o + 8) ^ s0);
+            s1 = Dispersores.mezclaWy(
+                Dispersores.leeLargoLittleEndian(d, o + 16) ^ Dispersores.WY_S2,
+                Dispersores.leeLargoLittleEndian(d, o + 24) ^ s1);
+            s2 = Dispersores.mezclaWy(
+                Dispersores.leeLargoLittleEndian(d, o + 32) ^ Dispersores.WY_S3,
+                Dispersores.leeLargoLittleEndian(d, o + 40) ^ s2);
+        }
+    }
+
+    /* Constructor privado para evitar instanciación. */
+    private DispersoresIncrementales() {}
+
+    /**
+     * Agrega al dispersor todos los bytes del flujo, hasta su final, y
+     * regresa la dispersión. El flujo no se cierra.
+     * @param dispersor el dispersor a alimentar.
+     * @param entrada el flujo a leer.
+     * @return la dispersión de los bytes agregados al dispersor.
+     * @throws IOException si ocurre un error al leer.
+     */
+    public static long dispersa(DispersorIncremental dispersor,
+                                InputStream entrada) throws IOException {
+        byte[] bufer = new byte[TAMANO_BUFER];
+        int n;
+        while ((n = entrada.read(bufer)) >= 0)
+            dispersor.actualiza(bufer, 0, n);
+        return dispersor.finaliza();
+    }
+
+    /**
+     * Agrega al dispersor todos los bytes del canal, hasta su final, y
+     * regresa la dispersión. El canal no se cierra.
+     * @param dispersor el dispersor a alimentar.
+     * @param canal el canal a leer.
+     * @return la dispersión de los bytes agregados al dispersor.
+     * @throws IOException si ocurre un error al leer.
+     */
+    public static long dispersa(DispersorIncremental dispersor,
+                                ReadableByteChannel canal) throws IOException {
+        ByteBuffer bufer = ByteBuffer.allocate(TAMANO_BUFER);
+        while (canal.read(bufer) >= 0) {
+            bufer.flip();
+            dispersor.actualiza(bufer);
+            bufer.clear();
+        }
+        return dispersor.finaliza();
+    }
+
+    /**
+     * Agrega al dispersor todos los bytes del archivo, mapeándolo a memoria
+     * por ventanas, y regresa la dispersión. Los bytes se toman directamente
+     * de las páginas del archivo, sin llamadas de lectura al sistema.
+     * @param dispersor el dispersor a alimentar.
+     * @param archivo el archivo a dispersar.
+     * @return la dispersión de los bytes agregados al dispersor.
+     * @throws IOException si ocurre un error al leer.
+     */
+    public static long dispersaArchivo(DispersorIncremental dispersor,
+                                       Path archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo,
+                                                  StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            for (long p = 0; p < tamano; p += TAMANO_VENTANA) {
+                long n = Math.min(TAMANO_VENTANA, tamano - p);
+                MappedByteBuffer ventana =
+                    canal.map(FileChannel.MapMode.READ_ONLY, p, n);
+                dispersor.actualiza(ventana);
+            }
+        }
+        return dispersor.finaliza();
+    }
+}
@@ -1,15 +1,23 @@
 package mx.unam.ciencias.edd;
 
+import java.security.SecureRandom;
+
 /**
  * Clase para fabricar dispersores.
  */
 public class FabricaDispersores {
 
+    /* Fuente de llaves secretas para los dispersores con llave. */
+    private static final SecureRandom ALEATORIO = new SecureRandom();
+
     /* Constructor privado para evitar instanciación. */
     private FabricaDispersores() {}
 
     /**
-     * Regresa una instancia de {@link Dispersor} para cadenas.
+     * Regresa una instancia de {@link Dispersor} para cadenas. Los dispersores
+     * dispersan los bytes UTF-8 de las cadenas sin crear arreglos en cada
+     * llamada. Los algoritmos SipHash usan una llave secreta aleatoria
+     * distinta para cada dispersor regresado.
      * @param algoritmo el algoritmo de dispersor que se desea.
      * @return una instancia de {@link Dispersor} para cadenas.
      * @throws IllegalArgumentException si recibe un identificador no
@@ -19,12 +27,171 @@ public class FabricaDispersores {
     dispersorCadena(AlgoritmoDispersor algoritmo) {
         switch (algoritmo) {
         case XOR_STRING:
-            return c -> Dispersores.dispersaXOR(c.getBytes());
+            return c -> Dispersores.dispersaXOR(c);
         case BJ_STRING:
-            return c -> Dispersores.dispersaBJ(c.getBytes());
+            return c -> Dispersores.dispersaBJ(c);
         case DJB_STRING:
-            return c -> Dispersores.dispersaDJB(c.getBytes());
+            return c -> Dispersores.dispersaDJB(c);
+        case XXH64_STRING:
+            return c -> pliega(Dispersores.dispersaXXH64(c));
+        case MURMUR3_32_STRING:
+            return c -> Dispersores.dispersaMurmur32(c);
+        case MURMUR3_128_STRING:
+            return c -> pliega(Dispersores.dispersaMurmur128Bajo(c));
+        case WYHASH_STRING:
+            return c -> pliega(Dispersores.dispersaWyhash(c));
+        case SIPHASH_13_STRING:
+        case SIPHASH_24_STRING:
+            DispersorConSemilla<String> d = dispersorCadenaConSemilla(algoritmo);
+            long k0 = ALEATORIO.nextLong();
+            long k1 = ALEATORIO.nextLong();
+            return c -> d.dispersa(c, k0, k1);
+        default: throw new IllegalArgumentException("Algoritmo inválido");
+        }
+    }
+
+    /**
+     * Regresa una instancia de {@link DispersorConSemilla} para cadenas. Sólo
+     * los algoritmos SipHash están diseñados para resistir a quien busca
+     * colisiones conociendo el algoritmo; xxHash64, MurmurHash3 y wyhash
+     * únicamente usan los 64 bits bajos de la semilla como su semilla.
+     * @param algoritmo el algoritmo de dispersor que se desea.
+     * @return una instancia de {@link DispersorConSemilla} para cadenas.
+     * @throws IllegalArgumentException si recibe un identificador no
+     *         reconocido, o de un algoritmo sin semilla.
+     */
+    public static DispersorConSemilla<String>
+    dispersorCadenaConSemilla(AlgoritmoDispersor algoritmo) {
+        switch (algoritmo) {
+        case XXH64_STRING:
+            return (c, k0, k1) -> pliega(Dispersores.dispersaXXH64(c, k0));
+        case MURMUR3_32_STRING:
+            return (c, k0, k1) -> Dispersores.dispersaMurmur32(c, (int)k0);
+        case MURMUR3_128_STRING:
+            return (c, k0, k1) -> pliega(Dispersores.dispersaMurmur128Bajo(c, k0));
+        case WYHASH_STRING:
+            return (c, k0, k1) -> pliega(Dispersores.dispersaWyhash(c, k0));
+        case SIPHASH_13_STRING:
+            return (c, k0, k1) -> pliega(Dispersores.dispersaSipHash13(k0, k1, c));
+        case SIPHASH_24_STRING:
+            return (c, k0, k1) -> pliega(Dispersores.dispersaSipHash24(k0, k1, c));
+        default: throw new IllegalArgumentException("Algoritmo inválido");
+        }
+    }
+
+    /**
+     * Regresa una instancia de {@link Dispersor64} para cadenas, para
+     * estructuras que necesitan los 64 bits de la dispersión. Los algoritmos
+     * SipHash usan una llave secreta aleatoria distinta para cada dispersor
+     * regresado.
+     * @param algoritmo el algoritmo de dispersor que se desea.
+     * @return una instancia de {@link Dispersor64} para cadenas.
+     * @throws IllegalArgumentException si recibe un identificador no
+     *         reconocido, o de un algoritmo de menos de 64 bits.
+     */
+    public static Dispersor64<String>
+    dispersorCadena64(AlgoritmoDispersor algoritmo) {
+        switch (algoritmo) {
+        case XXH64_STRING:
+            return c -> Dispersores.dispersaXXH64(c);
+        case MURMUR3_128_STRING:
+            return c -> Dispersores.dispersaMurmur128Bajo(c);
+        case WYHASH_STRING:
+            return c -> Dispersores.dispersaWyhash(c);
+        case SIPHASH_13_STRING:
+            long a0 = ALEATORIO.nextLong();
+            long a1 = ALEATORIO.nextLong();
+            return c -> Dispersores.dispersaSipHash13(a0, a1, c);
+        case SIPHASH_24_STRING:
+            long b0 = ALEATORIO.nextLong();
+            long b1 = ALEATORIO.nextLong();
+            return c -> Dispersores.dispersaSipHash24(b0, b1, c);
         default: throw new IllegalArgumentException("Algoritmo inválido");
         }
     }
+
+    /**
+     * Regresa un {@link DispersorIncremental} nuevo. Los algoritmos con
+     * semilla usan semilla 0, y los algoritmos SipHash usan una llave secreta
+     * aleatoria; para obtener dispersiones reproducibles con SipHash debe
+     * usarse {@link #dispersorIncremental(AlgoritmoDispersor,long,long)}.
+     * @param algoritmo el algoritmo de dispersor que se desea.
+     * @return un {@link DispersorIncremental} nuevo.
+     * @throws IllegalArgumentException si recibe un identificador no
+     *         reconocido, o de un algoritmo que no puede calcularse
+     *         incrementalmente.
+     */
+    public static DispersorIncremental
+    dispersorIncremental(AlgoritmoDispersor algoritmo) {
+        switch (algoritmo) {
+        case XOR_STRING:
+            return new DispersoresIncrementales.XOR();
+        case BJ_STRING:
+            return new DispersoresIncrementales.BJ();
+        case DJB_STRING:
+            return new DispersoresIncrementales.DJB();
+        case SIPHASH_13_STRING:
+        case SIPHASH_24_STRING:
+            return dispersorIncremental(algoritmo, ALEATORIO.nextLong(),
+                                        ALEATORIO.nextLong());
+        default:
+            return dispersorIncremental(algoritmo, 0, 0);
+        }
+    }
+
+    /**
+     * Regresa un {@link DispersorIncremental} nuevo con la semilla recibida.
+     * Los algoritmos SipHash la usan como su llave secreta; xxHash64 y
+     * MurmurHash3 y wyhash únicamente usan los 64 bits bajos como su
+     * semilla.
+     * @param algoritmo el algoritmo de dispersor que se desea.
+     * @param k0 los 64 bits bajos de la semilla.
+     * @param k1 los 64 bits altos de la semilla.
+     * @return un {@link DispersorIncremental} nuevo.
+     * @throws IllegalArgumentException si recibe un identificador no
+     *         reconocido, de un algoritmo sin semilla, o de un algoritmo que
+     *         no puede calcularse incrementalmente.
+     */
+    public static DispersorIncremental
+    dispersorIncremental(AlgoritmoDispersor algoritmo, long k0, long k1) {
+        switch (algoritmo) {
+        case XXH64_STRING:
+            return new DispersoresIncrementales.XXH64(k0);
+        case MURMUR3_32_STRING:
+            return new DispersoresIncrementales.Murmur32((int)k0);
+        case MURMUR3_128_STRING:
+            return new DispersoresIncrementales.Murmur128(k0);
+        case WYHASH_STRING:
+            return new DispersoresIncrementales.Wyhash(k0);
+        case SIPHASH_13_STRING:
+            return new DispersoresIncrementales.SipHash(1, 3, k0, k1);
+        case SIPHASH_24_STRING:
+            return new DispersoresIncrementales.SipHash(2, 4, k0, k1);
+        default: throw new IllegalArgumentException("Algoritmo inválido");
+        }
+    }
+
+    /**
+     * Regresa un {@link DispersorIncremental128} nuevo con la semilla
+     * recibida.
+     * @param algoritmo el algoritmo de dispersor que se desea.
+     * @param semilla la semilla del dispersor.
+     * @return un {@link DispersorIncremental128} nuevo.
+     * @throws IllegalArgumentException si recibe un identificador no
+     *         reconocido, o de un algoritmo que no produce dispersiones de 128
+     *         bits.
+     */
+    public static DispersorIncremental128
+    dispersorIncremental128(AlgoritmoDispersor algoritmo, long semilla) {
+        switch (algoritmo) {
+        case MURMUR3_128_STRING:
+            return new DispersoresIncrementales.Murmur128(semilla);
+        default: throw new IllegalArgumentException("Algoritmo inválido");
+        }
+    }
+
+    /* Pliega una dispersión de 64 bits en 32 bits. */
+    private static int pliega(long h) {
+        return (int)(h ^ (h >>> 32));
+    }
 }
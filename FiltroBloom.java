@@ -0,0 +1,261 @@
+package mx.unam.ciencias.edd;
+
+/**
+ * <p>Clase para filtros de Bloom. Un filtro de Bloom responde si un elemento
+ * <em>puede</em> estar en un conjunto: si responde que no, el elemento
+ * definitivamente no fue agregado; si responde que sí, el elemento fue
+ * agregado o es un falso positivo.</p>
+ *
+ * <p>El filtro usa un {@link Dispersor64} para obtener una dispersión de 64
+ * bits de cada elemento, por ejemplo uno de {@link
+ * FabricaDispersores#dispersorCadena64}. Sus dos mitades de 32 bits son dos
+ * dispersiones independientes <em>h</em><sub>1</sub> y
+ * <em>h</em><sub>2</sub>, y el filtro usa los índices
+ * <em>h</em><sub>1</sub> + <em>i</em> <em>h</em><sub>2</sub> para
+ * <em>i</em> = 0, …, <em>k</em>-1 (dispersión doble, de Kirsch y
+ * Mitzenmacher), por lo que sólo calcula una dispersión por operación. Dos
+ * elementos con la misma dispersión siempre chocan, así que la tasa de
+ * falsos positivos no baja de <em>n</em>/2<sup>64</sup> para <em>n</em>
+ * elementos; con una dispersión de 32 bits ese piso sería
+ * <em>n</em>/2<sup>32</sup>, que para cien millones de elementos ya es de
+ * 2%.</p>
+ *
+ * <p>En la distribución por bloques, los <em>k</em> bits de cada elemento
+ * caen en un mismo bloque de 512 bits, el tamaño de una línea de caché, por lo
+ * que cada consulta toca una sola línea de memoria. Dentro del bloque los
+ * bits se escogen con un generador congruencial, porque la dispersión doble
+ * en un rango tan pequeño repite demasiados patrones. Como los bloques no
+ * reciben todos el mismo número de elementos, el filtro por bloques usa algo
+ * más de bits que el clásico para la misma tasa de falsos positivos.</p>
+ *
+ * <p>Para evitar búsquedas inútiles en un {@link Diccionario}, basta con
+ * consultar <code>filtro.puedeContener(llave)</code> antes que
+ * <code>diccionario.contiene(llave)</code>; para colecciones existe {@link
+ * ColeccionFiltrada}.</p>
+ */
+public class FiltroBloom<T> {
+
+    /* Bits por bloque en la distribución por bloques. */
+    private static final int BITS_BLOQUE = 512;
+    /* Palabras por bloque en la distribución por bloques. */
+    private static final int PALABRAS_BLOQUE = BITS_BLOQUE / 64;
+    /* Multiplicador del generador congruencial que escoge los bits dentro
+     * de un bloque. */
+    private static final long MULTIPLICADOR_BLOQUE = 0xD1342543DE82EF95L;
+    /* Máximo número de bits del filtro. */
+    private static final long MAXIMO_BITS = 1L << 32;
+
+    /* El dispersor de los elementos. */
+    private Dispersor64<T> dispersor;
+    /* Los bits del filtro. */
+    private long[] bits;
+    /* El número de bits del filtro. */
+    private long m;
+    /* El número de índices por elemento. */
+    private int k;
+    /* Si el filtro usa la distribución por bloques. */
+    private boolean bloques;
+    /* El número de elementos agregados. */
+    private long elementos;
+
+    /**
+     * Construye un filtro de Bloom clásico para la capacidad y la tasa de
+     * falsos positivos recibidas.
+     * @param capacidad el número esperado de elementos.
+     * @param tasa la tasa de falsos positivos deseada con ese número de
+     *             elementos.
+     * @param dispersor el dispersor de los elementos.
+     * @throws IllegalArgumentException si la capacidad no es positiva, si la
+     *         tasa no está entre 0 y 1, o si el filtro necesitaría más de
+     *         2<sup>32</sup> bits.
+     */
+    public FiltroBloom(int capacidad, double tasa, Dispersor64<T> dispersor) {
+        this(capacidad, tasa, dispersor, false);
+    }
+
+    /**
+     * Construye un filtro de Bloom para la capacidad y la tasa de falsos
+     * positivos recibidas, con la distribución clásica o por bloques.
+     * @param capacidad el número esperado de elementos.
+     * @param tasa la tasa de falsos positivos deseada con ese número de
+     *             elementos.
+     * @param dispersor el dispersor de los elementos.
+     * @param bloques si el filtro debe usar la distribución por bloques.
+     * @throws IllegalArgumentException si la capacidad no es positiva, si la
+     *         tasa no está entre 0 y 1, o si el filtro necesitaría más de
+     *         2<sup>32</sup> bits.
+     */
+    public FiltroBloom(int capacidad, double tasa, Dispersor64<T> dispersor,
+                       boolean bloques) {
+        if (capacidad <= 0)
+            throw new IllegalArgumentException("Capacidad inválida: " +
+                                               capacidad);
+        if (!(tasa > 0 && tasa < 1))
+            throw new IllegalArgumentException("Tasa inválida: " + tasa);
+        double ln2 = Math.log(2);
+        k = Math.max(1, (int)Math.round(-Math.log(tasa) / ln2));
+        double n = -capacidad * Math.log(tasa) / (ln2 * ln2);
+        /* Como los bloques no reciben el mismo número de elementos, la
+         * distribución por bloques necesita más bits para la misma tasa. */
+        if (bloques)
+            while (n < MAXIMO_BITS &&
+                   tasaBloques(capacidad * (double)BITS_BLOQUE / n, k) > tasa)
+                n *= 1.02;
+        long bitsNecesarios = Math.max(BITS_BLOQUE, (long)Math.ceil(n));
+        bitsNecesarios = (bitsNecesarios + BITS_BLOQUE - 1) /
+            BITS_BLOQUE * BITS_BLOQUE;
+        if (bitsNecesarios > MAXIMO_BITS)
+            throw new IllegalArgumentException("Demasiados bits: " +
+                                               bitsNecesarios);
+        this.dispersor = dispersor;
+        this.bloques = bloques;
+        m = bitsNecesarios;
+        bits = new long[(int)(m / 64)];
+    }
+
+    /**
+     * Agrega un elemento al filtro.
+     * @param elemento el elemento a agregar.
+     * @throws IllegalArgumentException si el elemento es <code>null</code>.
+     */
+    public void agrega(T elemento) {
+        if (elemento == null)
+            throw new IllegalArgumentException();
+        long h = Dispersores.mezcla64(dispersor.dispersa(elemento));
+        int h1 = (int)h;
+        if (bloques) {
+            int base = bloque(h1) * PALABRAS_BLOQUE;
+            long s = h;
+            for (int i = 0; i < k; i++) {
+                s = s * MULTIPLICADOR_BLOQUE + 1;
+                int b = (int)(s >>> 55);
+                bits[base + (b >>> 6)] |= 1L << b;
+            }
+        } else {
+            int h2 = (int)(h >>> 32) | 1;
+            for (int i = 0; i < k; i++) {
+                long b = indice(h1 + i * h2);
+                bits[(int)(b >>> 6)] |= 1L << b;
+            }
+        }
+        elementos++;
+    }
+
+    /**
+     * Nos dice si el elemento puede estar en el filtro.
+     * @param elemento el elemento a buscar.
+     * @return <code>false</code> si el elemento definitivamente no fue
+     *         agregado al filtro; <code>true</code> si fue agregado o es un
+     *         falso positivo.
+     */
+    public boolean puedeContener(T elemento) {
+        if (elemento == null)
+            return false;
+        long h = Dispersores.mezcla64(dispersor.dispersa(elemento));
+        int h1 = (int)h;
+        if (bloques) {
+            int base = bloque(h1) * PALABRAS_BLOQUE;
+            long s = h;
+            for (int i = 0; i < k; i++) {
+                s = s * MULTIPLICADOR_BLOQUE + 1;
+                int b = (int)(s >>> 55);
+                if ((bits[base + (b >>> 6)] & (1L << b)) == 0)
+                    return false;
+            }
+        } else {
+            int h2 = (int)(h >>> 32) | 1;
+            for (int i = 0; i < k; i++) {
+                long b = indice(h1 + i * h2);
+                if ((bits[(int)(b >>> 6)] & (1L << b)) == 0)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Agrega al filtro todos los elementos del filtro recibido, combinando
+     * sus bits con OR. Ambos filtros deben haberse construido con los mismos
+     * parámetros y dispersores equivalentes.
+     * @param filtro el filtro a combinar con éste.
+     * @throws IllegalArgumentException si los filtros tienen distinto número
+     *         de bits, de índices o distribución.
+     */
+    public void combina(FiltroBloom<T> filtro) {
+        if (filtro.m != m || filtro.k != k || filtro.bloques != bloques)
+            throw new IllegalArgumentException("Filtros incompatibles");
+        for (int i = 0; i < bits.length; i++)
+            bits[i] |= filtro.bits[i];
+        elementos += filtro.elementos;
+    }
+
+    /**
+     * Regresa la tasa de falsos positivos estimada a partir de la fracción
+     * de bits prendidos.
+     * @return la tasa de falsos positivos estimada.
+     */
+    public double tasaEstimada() {
+        long prendidos = 0;
+        for (long palabra : bits)
+            prendidos += Long.bitCount(palabra);
+        return Math.pow((double)prendidos / m, k);
+    }
+
+    /**
+     * Regresa el número de veces que se ha agregado un elemento al filtro;
+     * los elementos repetidos se cuentan cada vez.
+     * @return el número de elementos agregados.
+     */
+    public long getElementos() {
+        return elementos;
+    }
+
+    /**
+     * Regresa el número de bits del filtro.
+     * @return el número de bits del filtro.
+     */
+    public long getBits() {
+        return m;
+    }
+
+    /**
+     * Regresa el número de índices que se prenden por elemento.
+     * @return el número de índices por elemento.
+     */
+    public int getIndices() {
+        return k;
+    }
+
+    /**
+     * Limpia el filtro, dejándolo vacío.
+     */
+    public void limpia() {
+        bits = new long[bits.length];
+        elementos = 0;
+    }
+
+    /* Regresa la tasa de falsos positivos de la distribución por bloques
+     * cuando cada bloque recibe en promedio lambda elementos; el número de
+     * elementos de un bloque sigue una distribución de Poisson. */
+    private static double tasaBloques(double lambda, int k) {
+        double tasa = 0;
+        double p = Math.exp(-lambda);
+        int maximo = (int)(lambda + 10 * Math.sqrt(lambda) + 20);
+        for (int j = 0; j <= maximo; j++) {
+            double vacio = Math.pow(1 - 1.0 / BITS_BLOQUE, (double)k * j);
+            tasa += p * Math.pow(1 - vacio, k);
+            p *= lambda / (j + 1);
+        }
+        return tasa;
+    }
+
+    /* Reduce una dispersión de 32 bits a un índice de bit en [0, m). */
+    private long indice(int g) {
+        return ((g & 0xFFFFFFFFL) * m) >>> 32;
+    }
+
+    /* Reduce una dispersión de 32 bits a un índice de bloque. */
+    private int bloque(int g) {
+        return (int)(((g & 0xFFFFFFFFL) * (m / BITS_BLOQUE)) >>> 32);
+    }
+}
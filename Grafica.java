@@ -269,10 +269,7 @@ public class Grafica<T> implements Coleccion<T> {
      *         <tt>false</tt> en otro caso.
      */
     @Override public boolean contiene(T elemento) {
-        for (Vertice aux : vertices)
-          if (aux.elemento.equals(elemento))
-            return true;
-        return false;
+        return vertices.contiene(elemento);
     }
 
     /**
@@ -372,9 +369,21 @@ public class Grafica<T> implements Coleccion<T> {
      * @return el vértice correspondiente el elemento recibido.
      */
     public VerticeGrafica<T> vertice(T elemento) {
-        for(Vertice aux : vertices)
-          if(aux.elemento.equals(elemento))  return aux;
-        throw new NoSuchElementException();
+        Vertice v = vertices.busca(elemento);
+        if (v == null)
+          throw new NoSuchElementException();
+        return v;
+    }
+
+    /**
+     * Busca el vértice correspondiente al elemento recibido, sin lanzar
+     * excepciones si no está en la gráfica.
+     * @param elemento el elemento del que queremos el vértice.
+     * @return el vértice correspondiente al elemento recibido, o
+     *         <code>null</code> si el elemento no está en la gráfica.
+     */
+    public VerticeGrafica<T> buscaVertice(T elemento) {
+        return vertices.busca(elemento);
     }
 
     /**
@@ -532,9 +541,9 @@ public class Grafica<T> implements Coleccion<T> {
         boolean p = false;
         Vertice v;
         for(Vertice u : vertices){
-          if(!(grafica.contiene(u.elemento)))
+          v = verticeAudicion(grafica.buscaVertice(u.elemento));
+          if(v == null)
             return false;
-          v = verticeAudicion(grafica.vertice(u.elemento));
           for(Vecino n : u.vecinos)
             for(Vecino a : v.vecinos)
               if(n.vecino.elemento == a.vecino.elemento){
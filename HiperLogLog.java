@@ -0,0 +1,430 @@
+package mx.unam.ciencias.edd;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * <p>Clase para estimadores de cardinalidad HyperLogLog. Un estimador cuenta
+ * aproximadamente cuántos elementos distintos se le han agregado, usando
+ * unos cuantos kilobytes sin importar cuántos sean; guardar los elementos en
+ * un {@link Conjunto} sólo para llamar {@link Conjunto#getElementos} ocupa
+ * memoria proporcional a su número.</p>
+ *
+ * <p>Cada elemento se dispersa a 64 bits con un {@link Dispersor64}. Con
+ * precisión <em>p</em>, los <em>p</em> bits altos de la dispersión escogen
+ * uno de <em>m</em> = 2<sup><em>p</em></sup> registros, y el registro guarda
+ * el máximo número de ceros al principio de los bits restantes, más uno. El
+ * error relativo típico de la estimación es 1.04/√<em>m</em>: 1.6% con
+ * <em>p</em> = 12, 0.8% con <em>p</em> = 14.</p>
+ *
+ * <p>Como en HyperLogLog++, el estimador comienza con una representación
+ * dispersa que sólo guarda los registros tocados, con índices de 25 bits, y
+ * que estima con conteo lineal; así es exacto en la práctica con pocos
+ * elementos y ocupa poco. Cuando la representación dispersa ocuparía más que
+ * los registros, se cambia a la densa. En lugar de las tablas empíricas de
+ * corrección de sesgo de HyperLogLog++, la representación densa usa el
+ * estimador mejorado de Ertl, que no tiene sesgo apreciable en ningún
+ * rango.</p>
+ *
+ * <p>Los estimadores con la misma precisión y el mismo dispersor se
+ * combinan con {@link #combina}; así se cuentan elementos desde varios
+ * hilos, con un estimador por hilo, o a partir de estimadores guardados en
+ * archivos con {@link #serializa}. Los estimadores no están sincronizados.</p>
+ */
+public class HiperLogLog<T> {
+
+    /** Precisión mínima de un estimador. */
+    public static final int PRECISION_MINIMA = 4;
+    /** Precisión máxima de un estimador. */
+    public static final int PRECISION_MAXIMA = 18;
+
+    /* Precisión de los índices de la representación dispersa. */
+    private static final int PRECISION_DISPERSA = 25;
+    /* Los formatos serializados. */
+    private static final byte FORMATO_DISPERSO = 1;
+    private static final byte FORMATO_DENSO = 2;
+    /* La constante del estimador de Ertl, 1/(2 ln 2). */
+    private static final double ALFA_INFINITO = 0.5 / Math.log(2);
+
+    /* El dispersor de los elementos. */
+    private Dispersor64<T> dispersor;
+    /* La precisión. */
+    private int precision;
+    /* Los registros; null mientras la representación es dispersa. */
+    private byte[] registros;
+    /* Las entradas de la representación dispersa, ordenadas y sin índices
+     * repetidos. Cada entrada tiene el índice de 25 bits seguido de 6 bits
+     * con el número de ceros más uno. */
+    private int[] disperso;
+    /* El número de entradas dispersas. */
+    private int tamanoDisperso;
+    /* Las entradas dispersas recién agregadas, sin ordenar. */
+    private int[] temporal;
+    /* El número de entradas recién agregadas. */
+    private int tamanoTemporal;
+
+    /**
+     * Construye un estimador vacío con la precisión recibida.
+     * @param precision la precisión; el estimador tiene
+     *                  2<sup>precision</sup> registros.
+     * @param dispersor el dispersor de 64 bits de los elementos.
+     * @throws IllegalArgumentException si la precisión no está entre {@link
+     *         #PRECISION_MINIMA} y {@link #PRECISION_MAXIMA}.
+     */
+    public HiperLogLog(int precision, Dispersor64<T> dispersor) {
+        if (precision < PRECISION_MINIMA || precision > PRECISION_MAXIMA)
+            throw new IllegalArgumentException("Precisión inválida: " +
+                                               precision);
+        this.precision = precision;
+        this.dispersor = dispersor;
+        limpia();
+    }
+
+    /**
+     * Agrega un elemento al estimador.
+     * @param elemento el elemento a agregar.
+     * @throws IllegalArgumentException si el elemento es <code>null</code>.
+     */
+    public void agrega(T elemento) {
+        if (elemento == null)
+            throw new IllegalArgumentException();
+        agregaDispersion(dispersor.dispersa(elemento));
+    }
+
+    /**
+     * Agrega al estimador un elemento ya dispersado. La dispersión debe
+     * haberse calculado con el mismo dispersor que el estimador usa.
+     * @param dispersion la dispersión de 64 bits del elemento.
+     */
+    public void agregaDispersion(long dispersion) {
+        if (registros != null) {
+            int i = (int)(dispersion >>> (64 - precision));
+            int r = rango(dispersion << precision, 64 - precision);
+            if (r > registros[i])
+                registros[i] = (byte)r;
+            return;
+        }
+        int indice = (int)(dispersion >>> (64 - PRECISION_DISPERSA));
+        agregaEntrada(indice << 6 | rango(dispersion << PRECISION_DISPERSA,
+                                          64 - PRECISION_DISPERSA));
+    }
+
+    /**
+     * Regresa la estimación del número de elementos distintos agregados.
+     * @return la estimación del número de elementos distintos.
+     */
+    public long estimacion() {
+        if (registros == null) {
+            vacia();
+            double m = 1 << PRECISION_DISPERSA;
+            return Math.round(m * Math.log(m / (m - tamanoDisperso)));
+        }
+        int m = 1 << precision;
+        int q = 64 - precision;
+        int[] cuenta = new int[q + 2];
+        for (byte r : registros)
+            cuenta[r]++;
+        double z = m * tau(1 - (double)cuenta[q + 1] / m);
+        for (int k = q; k >= 1; k--)
+            z = 0.5 * (z + cuenta[k]);
+        z += m * sigma((double)cuenta[0] / m);
+        return Math.round(ALFA_INFINITO * m * m / z);
+    }
+
+    /**
+     * Agrega a este estimador los elementos del estimador recibido. El
+     * resultado es el estimador que se obtendría agregando los elementos de
+     * ambos a uno solo.
+     * @param estimador el estimador a combinar con éste.
+     * @throws IllegalArgumentException si los estimadores tienen distinta
+     *         precisión.
+     */
+    public void combina(HiperLogLog<T> estimador) {
+        if (estimador.precision != precision)
+            throw new IllegalArgumentException("Precisiones distintas");
+        if (estimador == this)
+            return;
+        if (estimador.registros == null) {
+            for (int i = 0; i < estimador.tamanoDisperso; i++)
+                agregaEntrada(estimador.disperso[i]);
+            for (int i = 0; i < estimador.tamanoTemporal; i++)
+                agregaEntrada(estimador.temporal[i]);
+            return;
+        }
+        if (registros == null)
+            densifica();
+        for (int i = 0; i < registros.length; i++)
+            if (estimador.registros[i] > registros[i])
+                registros[i] = estimador.registros[i];
+    }
+
+    /**
+     * Regresa la precisión del estimador.
+     * @return la precisión del estimador.
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Regresa el error relativo típico de las estimaciones, 1.04/√m para
+     * <em>m</em> registros.
+     * @return el error relativo típico de las estimaciones.
+     */
+    public double getErrorEstandar() {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    /**
+     * Nos dice si el estimador usa la representación dispersa.
+     * @return <code>true</code> si el estimador usa la representación
+     *         dispersa, <code>false</code> si usa la densa.
+     */
+    public boolean esDisperso() {
+        return registros == null;
+    }
+
+    /**
+     * Limpia el estimador, dejándolo vacío y con la representación dispersa.
+     */
+    public void limpia() {
+        registros = null;
+        disperso = new int[0];
+        tamanoDisperso = 0;
+        temporal = new int[Math.max(4, (1 << precision) / 16)];
+        tamanoTemporal = 0;
+    }
+
+    /**
+     * Serializa el estimador. La representación dispersa guarda las
+     * diferencias entre entradas consecutivas con enteros de longitud
+     * variable, y la densa guarda cada registro en 6 bits, así que un
+     * estimador denso ocupa 3·2<sup>precision</sup>/4 bytes más dos de
+     * encabezado.
+     * @return un arreglo con el estimador serializado.
+     */
+    public byte[] serializa() {
+        if (registros != null) {
+            byte[] bytes = new byte[2 + registros.length / 4 * 3];
+            bytes[0] = FORMATO_DENSO;
+            bytes[1] = (byte)precision;
+            for (int i = 0, j = 2; i < registros.length; i += 4) {
+                int v = registros[i] | registros[i + 1] << 6 |
+                    registros[i + 2] << 12 | registros[i + 3] << 18;
+                bytes[j++] = (byte)v;
+                bytes[j++] = (byte)(v >>> 8);
+                bytes[j++] = (byte)(v >>> 16);
+            }
+            return bytes;
+        }
+        vacia();
+        int t = 6;
+        for (int i = 0, anterior = 0; i < tamanoDisperso; i++) {
+            t += longitudVariable(disperso[i] - anterior);
+            anterior = disperso[i];
+        }
+        ByteBuffer salida = ByteBuffer.allocate(t)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        salida.put(FORMATO_DISPERSO);
+        salida.put((byte)precision);
+        salida.putInt(tamanoDisperso);
+        for (int i = 0, anterior = 0; i < tamanoDisperso; i++) {
+            int v = disperso[i] - anterior;
+            while ((v & ~0x7F) != 0) {
+                salida.put((byte)(v & 0x7F | 0x80));
+                v >>>= 7;
+            }
+            salida.put((byte)v);
+            anterior = disperso[i];
+        }
+        return salida.array();
+    }
+
+    /**
+     * Deserializa un estimador a partir de la posición del búfer. Al
+     * terminar, la posición del búfer queda después del estimador.
+     * @param <T> el tipo de los elementos del estimador.
+     * @param datos el búfer con el estimador serializado.
+     * @param dispersor el dispersor con el que se construyó el estimador.
+     * @return el estimador deserializado.
+     * @throws IllegalArgumentException si los datos no son un estimador
+     *         serializado válido.
+     */
+    public static <T> HiperLogLog<T> deserializa(ByteBuffer datos,
+                                                 Dispersor64<T> dispersor) {
+        ByteBuffer entrada = datos.slice().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            byte formato = entrada.get();
+            int precision = entrada.get();
+            HiperLogLog<T> h = new HiperLogLog<>(precision, dispersor);
+            if (formato == FORMATO_DENSO) {
+                int maximo = 65 - precision;
+                byte[] registros = new byte[1 << precision];
+                for (int i = 0; i < registros.length; i += 4) {
+                    int v = (entrada.get() & 0xFF) |
+                        (entrada.get() & 0xFF) << 8 |
+                        (entrada.get() & 0xFF) << 16;
+                    for (int k = 0; k < 4; k++) {
+                        registros[i + k] = (byte)(v >>> (6 * k) & 0x3F);
+                        if (registros[i + k] > maximo)
+                            throw new IllegalArgumentException("Registro " +
+                                                               "inválido");
+                    }
+                }
+                h.registros = registros;
+                h.disperso = h.temporal = null;
+            } else if (formato == FORMATO_DISPERSO) {
+                int n = entrada.getInt();
+                if (n < 0 || n > 1 << PRECISION_DISPERSA)
+                    throw new IllegalArgumentException("Número de entradas " +
+                                                       "inválido: " + n);
+                int[] disperso = new int[n];
+                int anterior = 0;
+                for (int i = 0; i < n; i++) {
+                    int v = 0;
+                    for (int c = 0; ; c += 7) {
+                        byte b = entrada.get();
+                        if (c == 28 && (b & 0xF0) != 0)
+                            throw new IllegalArgumentException("Entero " +
+                                                               "inválido");
+                        v |= (b & 0x7F) << c;
+                        if (b >= 0)
+                            break;
+                    }
+                    int e = anterior + v;
+                    int r = e & 0x3F;
+                    if (v <= 0 || e < 0 || r == 0 ||
+                        r > 65 - PRECISION_DISPERSA ||
+                        (i > 0 && (e >>> 6) == (anterior >>> 6)))
+                        throw new IllegalArgumentException("Entradas " +
+                                                           "inválidas");
+                    disperso[i] = anterior = e;
+                }
+                h.disperso = disperso;
+                h.tamanoDisperso = n;
+            } else {
+                throw new IllegalArgumentException("Formato inválido: " +
+                                                   formato);
+            }
+            datos.position(datos.position() + entrada.position());
+            return h;
+        } catch (BufferUnderflowException bue) {
+            throw new IllegalArgumentException("Datos incompletos");
+        }
+    }
+
+    /* Agrega una entrada dispersa, o la aplica a los registros si la
+     * representación ya es densa. */
+    private void agregaEntrada(int entrada) {
+        if (registros != null) {
+            aplicaEntrada(entrada);
+            return;
+        }
+        temporal[tamanoTemporal++] = entrada;
+        if (tamanoTemporal < temporal.length)
+            return;
+        vacia();
+        /* Cada entrada ocupa 4 bytes y cada registro uno. */
+        if (tamanoDisperso > (1 << precision) / 4)
+            densifica();
+    }
+
+    /* Ordena las entradas recién agregadas y las mezcla con las dispersas,
+     * dejando para cada índice la entrada con más ceros. */
+    private void vacia() {
+        if (tamanoTemporal == 0)
+            return;
+        Arrays.sort(temporal, 0, tamanoTemporal);
+        int[] mezcla = new int[tamanoDisperso + tamanoTemporal];
+        int i = 0, j = 0, n = 0;
+        while (i < tamanoDisperso || j < tamanoTemporal) {
+            int e;
+            if (j == tamanoTemporal ||
+                (i < tamanoDisperso && disperso[i] <= temporal[j]))
+                e = disperso[i++];
+            else
+                e = temporal[j++];
+            /* Con el mismo índice, las entradas ordenadas van de menos a más
+             * ceros. */
+            if (n > 0 && (mezcla[n - 1] >>> 6) == (e >>> 6))
+                mezcla[n - 1] = e;
+            else
+                mezcla[n++] = e;
+        }
+        disperso = mezcla;
+        tamanoDisperso = n;
+        tamanoTemporal = 0;
+    }
+
+    /* Cambia a la representación densa. */
+    private void densifica() {
+        registros = new byte[1 << precision];
+        for (int i = 0; i < tamanoDisperso; i++)
+            aplicaEntrada(disperso[i]);
+        for (int i = 0; i < tamanoTemporal; i++)
+            aplicaEntrada(temporal[i]);
+        disperso = temporal = null;
+        tamanoDisperso = tamanoTemporal = 0;
+    }
+
+    /* Aplica una entrada dispersa a los registros. Los bits del índice
+     * disperso que no caben en el índice denso son los primeros bits que
+     * siguen al índice denso en la dispersión. */
+    private void aplicaEntrada(int entrada) {
+        int corrimiento = PRECISION_DISPERSA - precision;
+        int indice = entrada >>> 6;
+        int w = indice & ((1 << corrimiento) - 1);
+        int r = (w != 0) ?
+            Integer.numberOfLeadingZeros(w) - (32 - corrimiento) + 1 :
+            corrimiento + (entrada & 0x3F);
+        int i = indice >>> corrimiento;
+        if (r > registros[i])
+            registros[i] = (byte)r;
+    }
+
+    /* Regresa el número de ceros al principio de los bits más significativos
+     * de w, más uno. */
+    private static int rango(long w, int bits) {
+        return Math.min(Long.numberOfLeadingZeros(w), bits) + 1;
+    }
+
+    /* Regresa el número de bytes del entero en longitud variable. */
+    private static int longitudVariable(int v) {
+        int n = 1;
+        while ((v & ~0x7F) != 0) {
+            v >>>= 7;
+            n++;
+        }
+        return n;
+    }
+
+    /* La función σ del estimador de Ertl. */
+    private static double sigma(double x) {
+        if (x == 1)
+            return Double.POSITIVE_INFINITY;
+        double y = 1, z = x, anterior;
+        do {
+            x *= x;
+            anterior = z;
+            z += x * y;
+            y += y;
+        } while (z != anterior);
+        return z;
+    }
+
+    /* La función τ del estimador de Ertl. */
+    private static double tau(double x) {
+        if (x == 0 || x == 1)
+            return 0;
+        double y = 1, z = 1 - x, anterior;
+        do {
+            x = Math.sqrt(x);
+            anterior = z;
+            y *= 0.5;
+            z -= (1 - x) * (1 - x) * y;
+        } while (z != anterior);
+        return z / 3;
+    }
+}
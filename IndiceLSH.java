@@ -0,0 +1,202 @@
+package mx.unam.ciencias.edd;
+
+/**
+ * <p>Clase para índices LSH (<em>locality-sensitive hashing</em>) de firmas
+ * {@link MinHash}. El índice encuentra los conjuntos parecidos a uno dado
+ * sin compararlo con todos.</p>
+ *
+ * <p>Las firmas se dividen en <em>b</em> bandas de <em>r</em> posiciones
+ * consecutivas. Para cada banda, el índice agrupa en una misma cubeta a los
+ * conjuntos cuyas firmas coinciden en toda la banda; los candidatos de una
+ * firma son los conjuntos que comparten cubeta con ella en alguna banda. Dos
+ * conjuntos con similitud <em>s</em> resultan candidatos con probabilidad 1
+ * - (1 - <em>s</em><sup><em>r</em></sup>)<sup><em>b</em></sup>, que sube
+ * abruptamente alrededor del umbral (1/<em>b</em>)<sup>1/<em>r</em></sup>:
+ * más filas por banda hacen más estricto el índice, y más bandas lo hacen
+ * más permisivo.</p>
+ *
+ * <p>El índice guarda la firma de cada conjunto, para descartar los
+ * candidatos cuya similitud estimada no alcanza el umbral pedido.</p>
+ */
+public class IndiceLSH<K> {
+
+    /* El número de bandas. */
+    private int bandas;
+    /* El número de posiciones por banda. */
+    private int filas;
+    /* Las cubetas de cada banda, por la dispersión de la banda. */
+    private Diccionario<Long, Lista<K>>[] cubetas;
+    /* La firma de cada conjunto en el índice. */
+    private Diccionario<K, int[]> firmas;
+
+    /**
+     * Construye un índice vacío. Las firmas que se agreguen deben tener por
+     * lo menos bandas × filas posiciones; las posiciones sobrantes sólo se
+     * usan para estimar similitudes.
+     * @param bandas el número de bandas.
+     * @param filas el número de posiciones por banda.
+     * @throws IllegalArgumentException si las bandas o las filas no son
+     *         positivas.
+     */
+    @SuppressWarnings("unchecked")
+    public IndiceLSH(int bandas, int filas) {
+        if (bandas <= 0 || filas <= 0)
+            throw new IllegalArgumentException("Bandas o filas inválidas");
+        this.bandas = bandas;
+        this.filas = filas;
+        cubetas = (Diccionario<Long, Lista<K>>[])new Diccionario[bandas];
+        limpia();
+    }
+
+    /**
+     * Agrega un conjunto al índice con su firma. Si el identificador ya
+     * estaba en el índice, su firma se reemplaza. El índice guarda una copia
+     * de la firma.
+     * @param id el identificador del conjunto.
+     * @param firma la firma MinHash del conjunto.
+     * @throws IllegalArgumentException si el identificador es
+     *         <code>null</code> o si la firma es muy corta.
+     */
+    public void agrega(K id, int[] firma) {
+        if (id == null)
+            throw new IllegalArgumentException();
+        revisa(firma);
+        elimina(id);
+        firma = firma.clone();
+        firmas.agrega(id, firma);
+        for (int b = 0; b < bandas; b++)
+            cubetas[b].computaSiAusente(dispersaBanda(firma, b),
+                                        h -> new Lista<K>()).agrega(id);
+    }
+
+    /**
+     * Elimina un conjunto del índice, si está.
+     * @param id el identificador del conjunto.
+     */
+    public void elimina(K id) {
+        int[] firma = firmas.busca(id);
+        if (firma == null)
+            return;
+        firmas.elimina(id);
+        for (int b = 0; b < bandas; b++) {
+            Long h = dispersaBanda(firma, b);
+            Lista<K> cubeta = cubetas[b].get(h);
+            cubeta.elimina(id);
+            if (cubeta.esVacia())
+                cubetas[b].elimina(h);
+        }
+    }
+
+    /**
+     * Nos dice si un conjunto está en el índice.
+     * @param id el identificador del conjunto.
+     * @return <code>true</code> si el conjunto está en el índice,
+     *         <code>false</code> en otro caso.
+     */
+    public boolean contiene(K id) {
+        return firmas.contiene(id);
+    }
+
+    /**
+     * Regresa una copia de la firma con la que se agregó un conjunto.
+     * @param id el identificador del conjunto.
+     * @return una copia de la firma del conjunto, o <code>null</code> si no
+     *         está en el índice.
+     */
+    public int[] getFirma(K id) {
+        int[] firma = firmas.busca(id);
+        return (firma == null) ? null : firma.clone();
+    }
+
+    /**
+     * Regresa los conjuntos que comparten cubeta con la firma en alguna
+     * banda.
+     * @param firma la firma a buscar.
+     * @return los identificadores de los candidatos.
+     * @throws IllegalArgumentException si la firma es muy corta.
+     */
+    public Conjunto<K> candidatos(int[] firma) {
+        revisa(firma);
+        Conjunto<K> candidatos = new Conjunto<>();
+        for (int b = 0; b < bandas; b++) {
+            Lista<K> cubeta = cubetas[b].busca(dispersaBanda(firma, b));
+            if (cubeta != null)
+                for (K id : cubeta)
+                    candidatos.agrega(id);
+        }
+        return candidatos;
+    }
+
+    /**
+     * Regresa los candidatos de la firma cuya similitud estimada con ella
+     * es por lo menos el umbral recibido.
+     * @param firma la firma a buscar.
+     * @param umbral la similitud mínima.
+     * @return los identificadores de los conjuntos similares.
+     * @throws IllegalArgumentException si la firma es muy corta.
+     */
+    public Lista<K> similares(int[] firma, double umbral) {
+        Lista<K> similares = new Lista<>();
+        for (K id : candidatos(firma)) {
+            int[] otra = firmas.get(id);
+            if (otra.length == firma.length &&
+                MinHash.similitud(firma, otra) >= umbral)
+                similares.agrega(id);
+        }
+        return similares;
+    }
+
+    /**
+     * Regresa el número de conjuntos en el índice.
+     * @return el número de conjuntos en el índice.
+     */
+    public int getElementos() {
+        return firmas.getElementos();
+    }
+
+    /**
+     * Regresa la similitud alrededor de la cual el índice empieza a encontrar
+     * a los conjuntos, (1/<em>b</em>)<sup>1/<em>r</em></sup>.
+     * @return el umbral aproximado del índice.
+     */
+    public double getUmbral() {
+        return Math.pow(1.0 / bandas, 1.0 / filas);
+    }
+
+    /**
+     * Regresa la probabilidad de que dos conjuntos con la similitud recibida
+     * resulten candidatos en un índice con las bandas y filas recibidas.
+     * @param similitud la similitud de Jaccard de los conjuntos.
+     * @param bandas el número de bandas.
+     * @param filas el número de posiciones por banda.
+     * @return la probabilidad de que los conjuntos resulten candidatos.
+     */
+    public static double probabilidad(double similitud, int bandas,
+                                      int filas) {
+        return 1 - Math.pow(1 - Math.pow(similitud, filas), bandas);
+    }
+
+    /**
+     * Limpia el índice, dejándolo vacío.
+     */
+    public void limpia() {
+        for (int b = 0; b < bandas; b++)
+            cubetas[b] = new Diccionario<>();
+        firmas = new Diccionario<>();
+    }
+
+    /* Revisa que la firma tenga suficientes posiciones. */
+    private void revisa(int[] firma) {
+        if (firma.length < bandas * filas)
+            throw new IllegalArgumentException("Firma muy corta: " +
+                                               firma.length);
+    }
+
+    /* Dispersa las posiciones de la firma de una banda. */
+    private Long dispersaBanda(int[] firma, int banda) {
+        long h = 0;
+        for (int i = banda * filas; i < (banda + 1) * filas; i++)
+            h = Dispersores.mezcla64(h * 31 + firma[i]);
+        return h;
+    }
+}
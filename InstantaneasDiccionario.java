@@ -0,0 +1,199 @@
+package mx.unam.ciencias.edd;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
+/**
+ * <p>Clase para métodos estáticos que guardan y recuperan instantáneas binarias
+ * de diccionarios.</p>
+ *
+ * <p>Una instantánea comienza con un encabezado (número mágico, versión del
+ * formato y número de entradas), seguido de cada entrada como la longitud y los
+ * bytes de su llave, y la longitud y los bytes de su valor. Todos los enteros
+ * se guardan en Big Endian. Las llaves y valores se convierten a bytes con
+ * {@link Codificador}es definidos por el usuario.</p>
+ *
+ * <p>La lectura construye el diccionario con capacidad suficiente para el
+ * número de entradas guardado, por lo que nunca tiene que crecer su arreglo
+ * mientras carga.</p>
+ */
+public class InstantaneasDiccionario {
+
+    /** El número mágico de las instantáneas; "EDDI" en ASCII. */
+    public static final int MAGIA = 0x45444449;
+
+    /** La versión del formato que escribe esta clase. */
+    public static final short VERSION = 1;
+
+    /* Tamaño del búfer para leer y escribir. */
+    private static final int TAMANO_BUFER = 1 << 16;
+    /* Tamaño del encabezado. */
+    private static final int TAMANO_ENCABEZADO = 10;
+
+    /* Constructor privado para evitar instanciación. */
+    private InstantaneasDiccionario() {}
+
+    /**
+     * Escribe una instantánea del diccionario en el archivo recibido. Si el
+     * archivo existe, es reemplazado.
+     * @param <K> el tipo de las llaves del diccionario.
+     * @param <V> el tipo de los valores del diccionario.
+     * @param diccionario el diccionario a guardar.
+     * @param archivo el archivo donde se guardará.
+     * @param llaves el codificador para las llaves.
+     * @param valores el codificador para los valores.
+     * @throws IOException si ocurre un error al escribir.
+     */
+    public static <K, V> void escribe(Diccionario<K, V> diccionario,
+                                      Path archivo,
+                                      Codificador<K> llaves,
+                                      Codificador<V> valores)
+        throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo,
+                                                  StandardOpenOption.CREATE,
+                                                  StandardOpenOption.WRITE,
+                                                  StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bufer = ByteBuffer.allocate(TAMANO_BUFER);
+            bufer.putInt(MAGIA);
+            bufer.putShort(VERSION);
+            bufer.putInt(diccionario.getElementos());
+            Iterator<K> iterador = diccionario.iteradorLlaves();
+            while (iterador.hasNext()) {
+                K llave = iterador.next();
+                bufer = escribeBytes(canal, bufer, llaves.codifica(llave));
+                bufer = escribeBytes(canal, bufer,
+                                     valores.codifica(diccionario.get(llave)));
+            }
+            vacia(canal, bufer);
+        }
+    }
+
+    /**
+     * Lee una instantánea del archivo recibido, usando el dispersor
+     * predeterminado para las llaves.
+     * @param <K> el tipo de las llaves del diccionario.
+     * @param <V> el tipo de los valores del diccionario.
+     * @param archivo el archivo con la instantánea.
+     * @param llaves el codificador para las llaves.
+     * @param valores el codificador para los valores.
+     * @return el diccionario guardado en la instantánea.
+     * @throws IOException si ocurre un error al leer, o si el archivo no es
+     *         una instantánea válida.
+     */
+    public static <K, V> Diccionario<K, V> lee(Path archivo,
+                                               Codificador<K> llaves,
+                                               Codificador<V> valores)
+        throws IOException {
+        return lee(archivo, llaves, valores, (K llave) -> llave.hashCode());
+    }
+
+    /**
+     * Lee una instantánea del archivo recibido, usando el dispersor recibido
+     * para las llaves.
+     * @param <K> el tipo de las llaves del diccionario.
+     * @param <V> el tipo de los valores del diccionario.
+     * @param archivo el archivo con la instantánea.
+     * @param llaves el codificador para las llaves.
+     * @param valores el codificador para los valores.
+     * @param dispersor el dispersor del diccionario resultante.
+     * @return el diccionario guardado en la instantánea.
+     * @throws IOException si ocurre un error al leer, o si el archivo no es
+     *         una instantánea válida.
+     */
+    public static <K, V> Diccionario<K, V> lee(Path archivo,
+                                               Codificador<K> llaves,
+                                               Codificador<V> valores,
+                                               Dispersor<K> dispersor)
+        throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo,
+                                                  StandardOpenOption.READ)) {
+            ByteBuffer bufer = ByteBuffer.allocate(TAMANO_BUFER);
+            bufer.flip();
+            bufer = asegura(canal, bufer, TAMANO_ENCABEZADO);
+            if (bufer.getInt() != MAGIA)
+                throw new IOException("El archivo no es una instantánea");
+            short version = bufer.getShort();
+            if (version != VERSION)
+                throw new IOException("Versión no soportada: " + version);
+            int n = bufer.getInt();
+            /* Cada entrada ocupa al menos las dos longitudes. */
+            if (n < 0 || n > (canal.size() - TAMANO_ENCABEZADO) / 8)
+                throw new IOException("Número de entradas inválido: " + n);
+            Diccionario<K, V> diccionario = new Diccionario<>(n, dispersor);
+            for (int i = 0; i < n; i++) {
+                bufer = asegura(canal, bufer, 4);
+                int longitud = bufer.getInt();
+                bufer = asegura(canal, bufer, longitud);
+                K llave = llaves.decodifica(bufer.array(), bufer.position(),
+                                            longitud);
+                bufer.position(bufer.position() + longitud);
+                bufer = asegura(canal, bufer, 4);
+                longitud = bufer.getInt();
+                bufer = asegura(canal, bufer, longitud);
+                V valor = valores.decodifica(bufer.array(), bufer.position(),
+                                             longitud);
+                bufer.position(bufer.position() + longitud);
+                diccionario.agrega(llave, valor);
+            }
+            return diccionario;
+        }
+    }
+
+    /* Escribe una secuencia de bytes precedida por su longitud; regresa el
+     * búfer a seguir usando. */
+    private static ByteBuffer escribeBytes(FileChannel canal, ByteBuffer bufer,
+                                           byte[] bytes) throws IOException {
+        if (bufer.remaining() < 4 + bytes.length)
+            vacia(canal, bufer);
+        bufer.putInt(bytes.length);
+        if (bufer.remaining() < bytes.length) {
+            vacia(canal, bufer);
+            ByteBuffer grande = ByteBuffer.wrap(bytes);
+            while (grande.hasRemaining())
+                canal.write(grande);
+        } else {
+            bufer.put(bytes);
+        }
+        return bufer;
+    }
+
+    /* Escribe todo el contenido del búfer en el canal, y lo deja vacío. */
+    private static void vacia(FileChannel canal, ByteBuffer bufer)
+        throws IOException {
+        bufer.flip();
+        while (bufer.hasRemaining())
+            canal.write(bufer);
+        bufer.clear();
+    }
+
+    /* Se asegura de que haya al menos n bytes disponibles en el búfer,
+     * creciéndolo si es necesario; regresa el búfer a seguir usando. Una
+     * longitud mayor que los bytes que quedan en el archivo se rechaza antes
+     * de crecer el búfer. */
+    private static ByteBuffer asegura(FileChannel canal, ByteBuffer bufer,
+                                      int n) throws IOException {
+        if (n < 0)
+            throw new IOException("Longitud inválida: " + n);
+        if (bufer.remaining() >= n)
+            return bufer;
+        if (n > bufer.remaining() + canal.size() - canal.position())
+            throw new EOFException("Instantánea incompleta");
+        if (bufer.capacity() < n) {
+            ByteBuffer grande = ByteBuffer.allocate(n);
+            grande.put(bufer);
+            bufer = grande;
+        } else {
+            bufer.compact();
+        }
+        while (bufer.position() < n)
+            if (canal.read(bufer) < 0)
+                throw new EOFException("Instantánea incompleta");
+        bufer.flip();
+        return bufer;
+    }
+}
@@ -0,0 +1,141 @@
+package mx.unam.ciencias.edd;
+
+/**
+ * <p>Clase para encontrar los <em>k</em> elementos más frecuentes de un
+ * flujo en memoria constante. Las cuentas se estiman con un bosquejo {@link
+ * CuentaMinima}, y los <em>k</em> elementos con mayor cuenta estimada se
+ * mantienen en un {@link MonticuloMinimo}, con el menos frecuente de ellos
+ * en la raíz: un elemento nuevo sólo entra si su estimación supera a la de
+ * la raíz, que entonces sale.</p>
+ *
+ * <p>Como las estimaciones nunca son menores que las cuentas reales, un
+ * elemento que aparece más de ε<em>N</em> veces sobre la cuenta del
+ * <em>k</em>-ésimo siempre termina entre los más frecuentes; los que salen
+ * pierden su lugar, pero no su cuenta en el bosquejo.</p>
+ */
+public class MasFrecuentes<T> {
+
+    /* El bosquejo de las cuentas. */
+    private CuentaMinima<T> bosquejo;
+    /* El número de elementos a mantener. */
+    private int k;
+    /* Los elementos más frecuentes, con su cuenta estimada. */
+    private MonticuloMinimo<Indexable<T>> monticulo;
+    /* La entrada del montículo de cada elemento más frecuente. */
+    private Diccionario<T, Indexable<T>> entradas;
+
+    /**
+     * Construye un buscador de los elementos más frecuentes.
+     * @param k el número de elementos a mantener.
+     * @param bosquejo el bosquejo con el que se cuentan los elementos.
+     * @throws IllegalArgumentException si k no es positivo.
+     */
+    public MasFrecuentes(int k, CuentaMinima<T> bosquejo) {
+        if (k <= 0)
+            throw new IllegalArgumentException("k inválido: " + k);
+        this.k = k;
+        this.bosquejo = bosquejo;
+        monticulo = new MonticuloMinimo<>();
+        entradas = new Diccionario<>(k);
+    }
+
+    /**
+     * Agrega una aparición del elemento.
+     * @param elemento el elemento a contar.
+     * @throws IllegalArgumentException si el elemento es <code>null</code>.
+     */
+    public void agrega(T elemento) {
+        agrega(elemento, 1);
+    }
+
+    /**
+     * Agrega varias apariciones del elemento.
+     * @param elemento el elemento a contar.
+     * @param cuenta el número de apariciones.
+     * @throws IllegalArgumentException si el elemento es <code>null</code> o
+     *         la cuenta es negativa.
+     */
+    public void agrega(T elemento, long cuenta) {
+        considera(elemento, bosquejo.agrega(elemento, cuenta));
+    }
+
+    /**
+     * Regresa la cuenta estimada del elemento.
+     * @param elemento el elemento a buscar.
+     * @return la cuenta estimada del elemento.
+     */
+    public long estima(T elemento) {
+        return bosquejo.estima(elemento);
+    }
+
+    /**
+     * Regresa los elementos más frecuentes con su cuenta estimada como
+     * valor, del más frecuente al menos frecuente.
+     * @return una lista con los elementos más frecuentes.
+     */
+    public Lista<Indexable<T>> getMasFrecuentes() {
+        Lista<Indexable<T>> lista = new Lista<>();
+        for (Indexable<T> e : monticulo)
+            lista.agrega(new Indexable<>(e.getElemento(), e.getValor()));
+        return MonticuloMinimo.heapSort(lista).reversa();
+    }
+
+    /**
+     * Agrega a este buscador las cuentas del buscador recibido. Los bosquejos
+     * de ambos se combinan, y los más frecuentes se escogen de entre los de
+     * ambos con las cuentas combinadas.
+     * @param buscador el buscador a combinar con éste.
+     * @throws IllegalArgumentException si los bosquejos tienen distintas
+     *         dimensiones.
+     */
+    public void combina(MasFrecuentes<T> buscador) {
+        bosquejo.combina(buscador.bosquejo);
+        Lista<T> candidatos = new Lista<>();
+        for (Indexable<T> e : monticulo)
+            candidatos.agrega(e.getElemento());
+        for (Indexable<T> e : buscador.monticulo)
+            candidatos.agrega(e.getElemento());
+        monticulo = new MonticuloMinimo<>();
+        entradas = new Diccionario<>(k);
+        for (T e : candidatos)
+            considera(e, bosquejo.estima(e));
+    }
+
+    /**
+     * Regresa el bosquejo con el que se cuentan los elementos.
+     * @return el bosquejo del buscador.
+     */
+    public CuentaMinima<T> getBosquejo() {
+        return bosquejo;
+    }
+
+    /**
+     * Limpia el buscador y su bosquejo.
+     */
+    public void limpia() {
+        bosquejo.limpia();
+        monticulo = new MonticuloMinimo<>();
+        entradas = new Diccionario<>(k);
+    }
+
+    /* Actualiza la cuenta estimada del elemento entre los más frecuentes, o
+     * lo agrega a ellos si su cuenta lo amerita. */
+    private void considera(T elemento, long cuenta) {
+        Indexable<T> entrada = entradas.busca(elemento);
+        if (entrada != null) {
+            if (cuenta > entrada.getValor()) {
+                entrada.setValor(cuenta);
+                monticulo.reordena(entrada);
+            }
+            return;
+        }
+        if (monticulo.getElementos() == k) {
+            if (cuenta <= monticulo.get(0).getValor())
+                return;
+            entradas.elimina(monticulo.elimina().getElemento());
+        }
+        entrada = new Indexable<>(elemento, cuenta);
+        monticulo.agrega(entrada);
+        entradas.agrega(elemento, entrada);
+    }
+}
@@ -0,0 +1,102 @@
+package mx.unam.ciencias.edd;
+
+/**
+ * <p>Clase para generadores de firmas MinHash. La firma de un conjunto
+ * resume al conjunto en <em>k</em> enteros, de forma que la fracción de
+ * posiciones en que coinciden las firmas de dos conjuntos estima su
+ * similitud de Jaccard, |A ∩ B| / |A ∪ B|, con error típico
+ * 1/(2√<em>k</em>) o menos, sin construir la intersección ni la unión.</p>
+ *
+ * <p>Cada elemento se dispersa una vez con un {@link Dispersor64}; la
+ * dispersión se combina con <em>k</em> semillas distintas y se mezcla con el
+ * mezclador final de MurmurHash3, obteniendo <em>k</em> permutaciones
+ * pseudoaleatorias de las dispersiones. La posición <em>i</em> de la firma
+ * guarda los 32 bits altos del mínimo de la permutación <em>i</em> sobre los
+ * elementos del conjunto.</p>
+ *
+ * <p>Las firmas sólo son comparables si se generaron con el mismo número de
+ * permutaciones, el mismo dispersor y la misma semilla. Para buscar
+ * conjuntos parecidos entre muchos, las firmas se guardan en un {@link
+ * IndiceLSH}.</p>
+ */
+public class MinHash<T> {
+
+    /* Incremento entre semillas: la parte fraccionaria de la razón áurea. */
+    private static final long AUREO = 0x9E3779B97F4A7C15L;
+
+    /* El dispersor de los elementos. */
+    private Dispersor64<T> dispersor;
+    /* La semilla de cada permutación. */
+    private long[] semillas;
+
+    /**
+     * Construye un generador de firmas.
+     * @param permutaciones el número de permutaciones, que es la longitud
+     *                      de las firmas.
+     * @param dispersor el dispersor de 64 bits de los elementos.
+     * @param semilla la semilla de la que se derivan las permutaciones.
+     * @throws IllegalArgumentException si el número de permutaciones no es
+     *         positivo.
+     */
+    public MinHash(int permutaciones, Dispersor64<T> dispersor, long semilla) {
+        if (permutaciones <= 0)
+            throw new IllegalArgumentException("Número de permutaciones " +
+                                               "inválido: " + permutaciones);
+        this.dispersor = dispersor;
+        semillas = new long[permutaciones];
+        for (int i = 0; i < permutaciones; i++)
+            semillas[i] = Dispersores.mezcla64(semilla + (i + 1) * AUREO);
+    }
+
+    /**
+     * Regresa la firma de los elementos recibidos. Los elementos repetidos
+     * no cambian la firma.
+     * @param elementos los elementos del conjunto.
+     * @return la firma del conjunto.
+     */
+    public int[] firma(Iterable<? extends T> elementos) {
+        int k = semillas.length;
+        long[] minimos = new long[k];
+        for (int i = 0; i < k; i++)
+            minimos[i] = Long.MAX_VALUE;
+        for (T e : elementos) {
+            long h = dispersor.dispersa(e);
+            for (int i = 0; i < k; i++) {
+                long v = Dispersores.mezcla64(h ^ semillas[i]);
+                if (v < minimos[i])
+                    minimos[i] = v;
+            }
+        }
+        int[] firma = new int[k];
+        for (int i = 0; i < k; i++)
+            firma[i] = (int)(minimos[i] >>> 32);
+        return firma;
+    }
+
+    /**
+     * Regresa el número de permutaciones, que es la longitud de las firmas.
+     * @return el número de permutaciones.
+     */
+    public int getPermutaciones() {
+        return semillas.length;
+    }
+
+    /**
+     * Estima la similitud de Jaccard de dos conjuntos a partir de sus
+     * firmas.
+     * @param a la firma del primer conjunto.
+     * @param b la firma del segundo conjunto.
+     * @return la fracción de posiciones en que coinciden las firmas.
+     * @throws IllegalArgumentException si las firmas tienen distinta
+     *         longitud.
+     */
+    public static double similitud(int[] a, int[] b) {
+        if (a.length != b.length)
+            throw new IllegalArgumentException("Firmas de distinta longitud");
+        int iguales = 0;
+        for (int i = 0; i < a.length; i++)
+            if (a[i] == b[i])
+                iguales++;
+        return (double)iguales / a.length;
+    }
+}
@@ -0,0 +1,58 @@
+package mx.unam.ciencias.edd;
+
+import java.util.Iterator;
+
+/**
+ * <p>Interfaz para vistas de rangos de un {@link ArbolBinarioOrdenado}. Una
+ * vista contiene los elementos del árbol que están entre sus límites, y se
+ * puede recorrer en orden ascendente o descendente.</p>
+ *
+ * <p>Las vistas no copian elementos: sus iteradores buscan el primer
+ * elemento del rango en el árbol y de ahí avanzan conforme se les piden
+ * elementos, por lo que recorrer <em>k</em> elementos de un árbol balanceado
+ * cuesta <em>O</em>(log <em>n</em> + <em>k</em>). Si el árbol se modifica
+ * mientras se itera una vista, el comportamiento del iterador no está
+ * definido.</p>
+ */
+public interface VistaRango<T> extends Iterable<T> {
+
+    /**
+     * Regresa un iterador que recorre la vista en orden ascendente.
+     * @return un iterador que recorre la vista en orden ascendente.
+     */
+    @Override public Iterator<T> iterator();
+
+    /**
+     * Regresa un iterador que recorre la vista en orden descendente.
+     * @return un iterador que recorre la vista en orden descendente.
+     */
+    public Iterator<T> iteradorDescendente();
+
+    /**
+     * Regresa la vista en orden descendente, para recorrerla con un
+     * <code>for</code>.
+     * @return un iterable que recorre la vista en orden descendente.
+     */
+    public Iterable<T> descendente();
+
+    /**
+     * Nos dice si un elemento está en la vista.
+     * @param elemento el elemento a buscar.
+     * @return <code>true</code> si el elemento está entre los límites de la
+     *         vista y en el árbol; <code>false</code> en otro caso.
+     */
+    public boolean contiene(T elemento);
+
+    /**
+     * Regresa el número de elementos en la vista.
+     * @return el número de elementos en la vista.
+     */
+    public int getElementos();
+
+    /**
+     * Nos dice si la vista es vacía.
+     * @return <code>true</code> si la vista es vacía, <code>false</code> en
+     *         otro caso.
+     */
+    public boolean esVacia();
+}
@@ -0,0 +1,270 @@
+package mx.unam.ciencias.edd.herramientas;
+
+import java.util.Random;
+import java.util.UUID;
+import mx.unam.ciencias.edd.AlgoritmoDispersor;
+import mx.unam.ciencias.edd.Diccionario;
+import mx.unam.ciencias.edd.Dispersor;
+import mx.unam.ciencias.edd.FabricaDispersores;
+
+/**
+ * <p>Clase para métodos estáticos que evalúan la calidad y la velocidad de
+ * dispersores para cadenas.</p>
+ *
+ * <p>Se miden el rendimiento en bytes por segundo para distintas longitudes
+ * de llave, el sesgo de avalancha (qué tan lejos está cada bit de la salida
+ * de cambiar con probabilidad 1/2 cuando cambia un bit de la entrada), la
+ * uniformidad por la prueba de χ² sobre cubetas, y las colisiones que
+ * reporta un {@link Diccionario} con el dispersor. Las llaves de prueba son
+ * enteros consecutivos, URLs y UUIDs, generados con una semilla fija para
+ * que las ejecuciones sean comparables.</p>
+ *
+ * <p>El método {@link #main} evalúa todos los algoritmos de {@link
+ * AlgoritmoDispersor}, incluyendo cualquiera que se agregue después. Es una
+ * herramienta aparte de la biblioteca; se compila y ejecuta con ella en el
+ * classpath:</p>
+ *
+ * <pre>
+ *   javac -d clases *.java herramientas/*.java
+ *   java -cp clases mx.unam.ciencias.edd.herramientas.EvaluadorDispersores
+ * </pre>
+ */
+public class EvaluadorDispersores {
+
+    /** Las longitudes de llave para las que se mide el rendimiento. */
+    public static final int[] LONGITUDES = { 4, 8, 16, 32, 64, 256, 1024, 4096 };
+
+    /** Los números de llaves con los que se llenan diccionarios. */
+    public static final int[] TAMANOS = { 1000, 10000, 100000 };
+
+    /* La semilla de las llaves de prueba. */
+    private static final long SEMILLA = 0x45444449L;
+    /* Bytes a dispersar en cada medición de rendimiento. */
+    private static final long BYTES_MEDICION = 1L << 25;
+    /* Muestras por bit de entrada en la prueba de avalancha. */
+    private static final int MUESTRAS_AVALANCHA = 2000;
+    /* Número de llaves y de cubetas de la prueba de χ². */
+    private static final int LLAVES_CHI = 1 << 16;
+    private static final int CUBETAS_CHI = 1 << 12;
+
+    /* Las dispersiones de cada medición se escriben aquí; como es volátil,
+     * el compilador no puede descartarlas. */
+    private static volatile int sumidero;
+
+    /* Constructor privado para evitar instanciación. */
+    private EvaluadorDispersores() {}
+
+    /**
+     * Regresa <em>n</em> llaves con los enteros consecutivos de 0 a
+     * <em>n</em>-1 en decimal.
+     * @param n el número de llaves.
+     * @return un arreglo con las llaves.
+     */
+    public static String[] llavesEnteras(int n) {
+        String[] llaves = new String[n];
+        for (int i = 0; i < n; i++)
+            llaves[i] = Integer.toString(i);
+        return llaves;
+    }
+
+    /**
+     * Regresa <em>n</em> llaves distintas con forma de URL, con prefijos
+     * largos en común.
+     * @param n el número de llaves.
+     * @return un arreglo con las llaves.
+     */
+    public static String[] llavesURL(int n) {
+        String[] dominios = { "www.ejemplo.com", "api.ejemplo.mx",
+                              "ciencias.unam.mx", "cdn.ejemplo.org" };
+        String[] rutas = { "/productos/", "/usuarios/", "/v2/recursos/",
+                           "/static/img/", "/buscar?q=" };
+        Random r = new Random(SEMILLA);
+        String[] llaves = new String[n];
+        for (int i = 0; i < n; i++)
+            llaves[i] = "https://" + dominios[r.nextInt(dominios.length)] +
+                rutas[r.nextInt(rutas.length)] + i + "?sesion=" +
+                Integer.toHexString(r.nextInt());
+        return llaves;
+    }
+
+    /**
+     * Regresa <em>n</em> llaves con UUIDs aleatorios en su forma canónica.
+     * @param n el número de llaves.
+     * @return un arreglo con las llaves.
+     */
+    public static String[] llavesUUID(int n) {
+        Random r = new Random(SEMILLA);
+        String[] llaves = new String[n];
+        for (int i = 0; i < n; i++)
+            llaves[i] = new UUID(r.nextLong(), r.nextLong()).toString();
+        return llaves;
+    }
+
+    /**
+     * Mide el rendimiento del dispersor con llaves ASCII de la longitud
+     * recibida.
+     * @param dispersor el dispersor a medir.
+     * @param longitud la longitud de las llaves.
+     * @return los bytes por segundo que dispersa el dispersor.
+     */
+    public static double rendimiento(Dispersor<String> dispersor,
+                                     int longitud) {
+        Random r = new Random(SEMILLA);
+        String[] llaves = new String[Math.max(16, (1 << 16) / longitud)];
+        for (int i = 0; i < llaves.length; i++)
+            llaves[i] = cadenaASCII(r, longitud);
+        long bytesPorVuelta = (long)llaves.length * longitud;
+        long vueltas = Math.max(1, BYTES_MEDICION / bytesPorVuelta);
+        int s = 0;
+        /* Calentamiento, para medir el código compilado. */
+        for (long v = 0; v < vueltas; v++)
+            for (String llave : llaves)
+                s += dispersor.dispersa(llave);
+        long inicio = System.nanoTime();
+        for (long v = 0; v < vueltas; v++)
+            for (String llave : llaves)
+                s += dispersor.dispersa(llave);
+        long tiempo = Math.max(1, System.nanoTime() - inicio);
+        sumidero = s;
+        return vueltas * bytesPorVuelta * 1e9 / tiempo;
+    }
+
+    /**
+     * Mide el sesgo de avalancha del dispersor con llaves ASCII de la
+     * longitud recibida. Para cada bit de entrada y cada bit de salida se
+     * calcula la probabilidad de que el bit de salida cambie al cambiar el de
+     * entrada; el sesgo es la mayor distancia de esa probabilidad a 1/2,
+     * multiplicada por 2. Un dispersor ideal tiene sesgo cercano a 0, y uno
+     * en el que algún bit de salida nunca o siempre cambia tiene sesgo 1.
+     * Por el tamaño de la muestra, aun un dispersor ideal da alrededor de
+     * 0.09; sólo valores claramente mayores indican un sesgo real.
+     * @param dispersor el dispersor a medir.
+     * @param longitud la longitud de las llaves.
+     * @return el sesgo de avalancha, entre 0 y 1.
+     */
+    public static double sesgoAvalancha(Dispersor<String> dispersor,
+                                        int longitud) {
+        Random r = new Random(SEMILLA);
+        int bitsEntrada = 7 * longitud;
+        int[][] cambios = new int[bitsEntrada][32];
+        char[] c = new char[longitud];
+        for (int m = 0; m < MUESTRAS_AVALANCHA; m++) {
+            for (int i = 0; i < longitud; i++)
+                c[i] = (char)r.nextInt(128);
+            int h = dispersor.dispersa(new String(c));
+            for (int b = 0; b < bitsEntrada; b++) {
+                /* Sólo se cambian los siete bits bajos, para que cada
+                 * carácter siga siendo un solo byte en UTF-8. */
+                c[b / 7] ^= (char)(1 << (b % 7));
+                int d = h ^ dispersor.dispersa(new String(c));
+                c[b / 7] ^= (char)(1 << (b % 7));
+                for (int j = 0; j < 32; j++)
+                    cambios[b][j] += (d >>> j) & 1;
+            }
+        }
+        double sesgo = 0;
+        for (int b = 0; b < bitsEntrada; b++)
+            for (int j = 0; j < 32; j++) {
+                double p = (double)cambios[b][j] / MUESTRAS_AVALANCHA;
+                sesgo = Math.max(sesgo, Math.abs(2 * p - 1));
+            }
+        return sesgo;
+    }
+
+    /**
+     * Calcula el estadístico χ² de las llaves repartidas en cubetas con los
+     * bits bajos de su dispersión, como lo hace {@link Diccionario}, dividido
+     * entre sus grados de libertad. Un dispersor uniforme da valores cercanos
+     * a 1; valores mucho mayores indican que algunas cubetas reciben más
+     * llaves de las que deberían.
+     * @param dispersor el dispersor a medir.
+     * @param llaves las llaves a repartir.
+     * @param cubetas el número de cubetas; debe ser potencia de 2.
+     * @return el estadístico χ² entre sus grados de libertad.
+     * @throws IllegalArgumentException si el número de cubetas no es una
+     *         potencia de 2 mayor que 1.
+     */
+    public static double chiCuadrada(Dispersor<String> dispersor,
+                                     String[] llaves, int cubetas) {
+        if (cubetas < 2 || Integer.bitCount(cubetas) != 1)
+            throw new IllegalArgumentException("Número de cubetas inválido");
+        int[] cuenta = new int[cubetas];
+        for (String llave : llaves)
+            cuenta[dispersor.dispersa(llave) & (cubetas - 1)]++;
+        double esperado = (double)llaves.length / cubetas;
+        double chi = 0;
+        for (int n : cuenta)
+            chi += (n - esperado) * (n - esperado) / esperado;
+        return chi / (cubetas - 1);
+    }
+
+    /**
+     * Regresa un reporte en texto de todas las mediciones del dispersor.
+     * @param nombre el nombre con el que se identifica el dispersor.
+     * @param dispersor el dispersor a medir.
+     * @return el reporte de las mediciones.
+     */
+    public static String reporte(String nombre, Dispersor<String> dispersor) {
+        String[] tipos = { "enteros", "URLs", "UUIDs" };
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("== %s ==%n", nombre));
+        sb.append("  MB/s por longitud:");
+        for (int longitud : LONGITUDES)
+            sb.append(String.format(" %d:%.0f", longitud,
+                                    rendimiento(dispersor, longitud) / 1e6));
+        sb.append(String.format("%n  sesgo de avalancha: 8B %.3f, 32B %.3f%n",
+                                sesgoAvalancha(dispersor, 8),
+                                sesgoAvalancha(dispersor, 32)));
+        for (int t = 0; t < tipos.length; t++) {
+            sb.append(String.format("  %-8s chi2/gl %.2f; colisiones/maxima:",
+                                    tipos[t],
+                                    chiCuadrada(dispersor,
+                                                llaves(t, LLAVES_CHI),
+                                                CUBETAS_CHI)));
+            for (int n : TAMANOS) {
+                Diccionario<String, String> d = new Diccionario<>(dispersor);
+                for (String llave : llaves(t, n))
+                    d.agrega(llave, llave);
+                sb.append(String.format(" %d:%d/%d", n, d.colisiones(),
+                                        d.colisionMaxima()));
+            }
+            sb.append(String.format("%n"));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Imprime el reporte de cada algoritmo de {@link AlgoritmoDispersor}.
+     * @param args no se usan.
+     */
+    public static void main(String[] args) {
+        for (AlgoritmoDispersor algoritmo : AlgoritmoDispersor.values()) {
+            Dispersor<String> dispersor;
+            try {
+                dispersor = FabricaDispersores.dispersorCadena(algoritmo);
+            } catch (IllegalArgumentException iae) {
+                System.out.printf("== %s == sin dispersor para cadenas%n",
+                                  algoritmo);
+                continue;
+            }
+            System.out.print(reporte(algoritmo.toString(), dispersor));
+        }
+    }
+
+    /* Regresa n llaves del tipo recibido. */
+    private static String[] llaves(int tipo, int n) {
+        switch (tipo) {
+        case 0: return llavesEnteras(n);
+        case 1: return llavesURL(n);
+        default: return llavesUUID(n);
+        }
+    }
+
+    /* Regresa una cadena ASCII aleatoria de la longitud recibida. */
+    private static String cadenaASCII(Random r, int longitud) {
+        char[] c = new char[longitud];
+        for (int i = 0; i < longitud; i++)
+            c[i] = (char)(32 + r.nextInt(95));
+        return new String(c);
+    }
+}